@@ -0,0 +1,38 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.bench;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the benchmarks with the GC and vertex allocation profilers enabled. This takes the same arguments as the 
+ * JMH command line, for example: java -jar benchmarks.jar BufferWriteBench -p size=1000
+ * @author Chad Juliano
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions _cmdOptions = new CommandLineOptions(args);
+        if(_cmdOptions.shouldHelp() || _cmdOptions.shouldList() || _cmdOptions.shouldListWithParams()
+                || _cmdOptions.shouldListProfilers() || _cmdOptions.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+        
+        Options _options = new OptionsBuilder()
+                .parent(_cmdOptions)
+                .addProfiler(GCProfiler.class)
+                .addProfiler(VertexAllocProfiler.class)
+                .build();
+        new Runner(_options).run();
+    }
+}
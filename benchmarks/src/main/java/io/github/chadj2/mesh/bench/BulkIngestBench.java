@@ -0,0 +1,131 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.bench;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.TimeUnit;
+
+import javax.vecmath.Point2f;
+import javax.vecmath.Point3f;
+import javax.vecmath.Vector3f;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.chadj2.mesh.Color;
+import io.github.chadj2.mesh.MeshVertex;
+import io.github.chadj2.mesh.TriangleBuilder;
+
+/**
+ * Add a textured and colored grid of GridBench.TILE_SIZE points that is already in arrays
+ * to a TriangleBuilder. The perVertex benchmark creates a MeshVertex for each point and
+ * the bulk benchmark passes the arrays to addVertices() and addTriangles(). The grid is
+ * scaled if the transform is not identity.
+ * @author Chad Juliano
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class BulkIngestBench {
+
+    private static final int SIZE = GridBench.TILE_SIZE;
+
+    @Param({ "true", "false" })
+    public boolean identity;
+
+    private float[] _xyz;
+    private float[] _uv;
+    private int[] _argb;
+    private int[] _indices;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this._xyz = new float[SIZE * SIZE * 3];
+        this._uv = new float[SIZE * SIZE * 2];
+        this._argb = new int[SIZE * SIZE];
+        for(int _xIdx = 0; _xIdx < SIZE; _xIdx++) {
+            for(int _yIdx = 0; _yIdx < SIZE; _yIdx++) {
+                int _vIdx = _xIdx * SIZE + _yIdx;
+                this._xyz[_vIdx * 3] = _xIdx;
+                this._xyz[_vIdx * 3 + 1] = _yIdx;
+                this._xyz[_vIdx * 3 + 2] = (float)(Math.sin(_xIdx * 0.05) * Math.cos(_yIdx * 0.05));
+                this._uv[_vIdx * 2] = _xIdx / (SIZE - 1f);
+                this._uv[_vIdx * 2 + 1] = _yIdx / (SIZE - 1f);
+                this._argb[_vIdx] = 0xFF000000 | (_xIdx << 16) | (_yIdx << 8);
+            }
+        }
+
+        this._indices = new int[(SIZE - 1) * (SIZE - 1) * 6];
+        int _pos = 0;
+        for(int _xIdx = 0; _xIdx < SIZE - 1; _xIdx++) {
+            for(int _yIdx = 0; _yIdx < SIZE - 1; _yIdx++) {
+                int _vIdx = _xIdx * SIZE + _yIdx;
+                this._indices[_pos++] = _vIdx;
+                this._indices[_pos++] = _vIdx + SIZE;
+                this._indices[_pos++] = _vIdx + 1;
+                this._indices[_pos++] = _vIdx + 1;
+                this._indices[_pos++] = _vIdx + SIZE;
+                this._indices[_pos++] = _vIdx + SIZE + 1;
+            }
+        }
+    }
+
+    @Benchmark
+    public TriangleBuilder perVertex() throws Exception {
+        long _start = VertexAllocProfiler.begin();
+        TriangleBuilder _builder = newBuilder();
+        MeshVertex[] _vertices = new MeshVertex[SIZE * SIZE];
+        for(int _vIdx = 0; _vIdx < _vertices.length; _vIdx++) {
+            MeshVertex _vertex = _builder.newVertex(new Point3f(
+                    this._xyz[_vIdx * 3], this._xyz[_vIdx * 3 + 1], this._xyz[_vIdx * 3 + 2]));
+            _vertex.setTexCoord(new Point2f(this._uv[_vIdx * 2], this._uv[_vIdx * 2 + 1]));
+            _vertex.setColor(new Color(this._argb[_vIdx]));
+            _vertices[_vIdx] = _vertex;
+        }
+
+        for(int _idx = 0; _idx < this._indices.length; _idx += 3) {
+            _builder.addTriangle(_vertices[this._indices[_idx]],
+                    _vertices[this._indices[_idx + 1]], _vertices[this._indices[_idx + 2]]);
+        }
+        VertexAllocProfiler.end(_start, SIZE * SIZE);
+        return _builder;
+    }
+
+    @Benchmark
+    public TriangleBuilder bulk() throws Exception {
+        long _start = VertexAllocProfiler.begin();
+        TriangleBuilder _builder = newBuilder();
+        int _first = _builder.addVertices(FloatBuffer.wrap(this._xyz));
+        _builder.setVertexTexCoords(_first, FloatBuffer.wrap(this._uv));
+        _builder.setVertexColors(_first, IntBuffer.wrap(this._argb));
+        _builder.addTriangles(IntBuffer.wrap(this._indices));
+        VertexAllocProfiler.end(_start, SIZE * SIZE);
+        return _builder;
+    }
+
+    private TriangleBuilder newBuilder() {
+        TriangleBuilder _builder = new TriangleBuilder("grid");
+        if(!this.identity) {
+            _builder.setScale(new Vector3f(2f, 2f, 10f));
+        }
+        return _builder;
+    }
+}
@@ -0,0 +1,84 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.vecmath.Point3f;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.chadj2.mesh.Color;
+import io.github.chadj2.mesh.MeshBuilder;
+import io.github.chadj2.mesh.MeshGltfWriter;
+
+/**
+ * Add a row of cylinders to a mesh with MeshBuilder.addCylinderMeshXZ().
+ * @author Chad Juliano
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class CylinderBench {
+    
+    @Param({ "10", "100", "1000" })
+    public int count;
+    
+    @Param({ "12" })
+    public int sides;
+    
+    private Point3f[] _positions;
+    
+    private final Color _color = new Color(0.2f, 0.6f, 1f, 1f);
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        this._positions = new Point3f[this.count];
+        for(int _idx = 0; _idx < this.count; _idx++) {
+            this._positions[_idx] = new Point3f(_idx * 3f, 0f, 0f);
+        }
+    }
+    
+    @Benchmark
+    public MeshBuilder ingest() throws Exception {
+        long _start = VertexAllocProfiler.begin();
+        MeshBuilder _builder = ingestCylinders();
+        VertexAllocProfiler.end(_start, 2L * this.count * this.sides);
+        return _builder;
+    }
+    
+    @Benchmark
+    public MeshGltfWriter ingestAndBuild() throws Exception {
+        long _start = VertexAllocProfiler.begin();
+        MeshGltfWriter _writer = new MeshGltfWriter();
+        ingestCylinders().buildMesh(_writer);
+        VertexAllocProfiler.end(_start, 2L * this.count * this.sides);
+        return _writer;
+    }
+    
+    private MeshBuilder ingestCylinders() throws Exception {
+        MeshBuilder _builder = new MeshBuilder("cylinders");
+        for(Point3f _position : this._positions) {
+            _builder.addCylinderMeshXZ(_position, 1f, 2f, this.sides, this._color);
+        }
+        return _builder;
+    }
+}
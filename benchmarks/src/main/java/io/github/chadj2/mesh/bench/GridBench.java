@@ -0,0 +1,132 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.vecmath.Point3f;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.github.chadj2.mesh.MeshBuilder;
+import io.github.chadj2.mesh.MeshGltfWriter;
+import io.github.chadj2.mesh.MeshVertex;
+
+/**
+ * Generate a surface with MeshBuilder.addPlane(), addLathe() or addManifold() that each call
+ * addGrid(). A mesh can't have more than TriangleIndices.MAX_INDEX vertices so grids larger 
+ * than TILE_SIZE are split into tiles that are each a separate mesh. The ingest benchmark
+ * creates the vertices and triangles and ingestAndBuild also calls buildMesh() on each tile.
+ * @author Chad Juliano
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class GridBench {
+    
+    /** Tile size that stays under the index limit when it is textured and wrapped. */
+    public static final int TILE_SIZE = 250;
+    
+    public enum Shape {
+        PLANE,
+        LATHE,
+        MANIFOLD
+    }
+    
+    @Param
+    public Shape shape;
+    
+    @Param({ "100", "500", "1000", "2000", "4000" })
+    public int size;
+    
+    @Param({ "false", "true" })
+    public boolean textured;
+    
+    /** Elevation of each point in the grid. */
+    private float[] _heights;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        this._heights = new float[this.size * this.size];
+        for(int _xIdx = 0; _xIdx < this.size; _xIdx++) {
+            for(int _yIdx = 0; _yIdx < this.size; _yIdx++) {
+                this._heights[_xIdx * this.size + _yIdx] = 
+                        (float)(Math.sin(_xIdx * 0.05) * Math.cos(_yIdx * 0.05));
+            }
+        }
+    }
+    
+    @Benchmark
+    public void ingest(Blackhole _bh) throws Exception {
+        long _start = VertexAllocProfiler.begin();
+        for(int _xStart = 0; _xStart < this.size; _xStart += TILE_SIZE) {
+            for(int _yStart = 0; _yStart < this.size; _yStart += TILE_SIZE) {
+                _bh.consume(ingestTile(_xStart, _yStart));
+            }
+        }
+        VertexAllocProfiler.end(_start, (long)this.size * this.size);
+    }
+    
+    @Benchmark
+    public MeshGltfWriter ingestAndBuild() throws Exception {
+        long _start = VertexAllocProfiler.begin();
+        MeshGltfWriter _writer = new MeshGltfWriter();
+        for(int _xStart = 0; _xStart < this.size; _xStart += TILE_SIZE) {
+            for(int _yStart = 0; _yStart < this.size; _yStart += TILE_SIZE) {
+                ingestTile(_xStart, _yStart).buildMesh(_writer);
+            }
+        }
+        VertexAllocProfiler.end(_start, (long)this.size * this.size);
+        return _writer;
+    }
+    
+    private MeshBuilder ingestTile(int _xStart, int _yStart) throws Exception {
+        int _xSize = Math.min(TILE_SIZE, this.size - _xStart);
+        int _ySize = Math.min(TILE_SIZE, this.size - _yStart);
+        
+        MeshBuilder _builder = new MeshBuilder("grid");
+        MeshVertex[][] _meshGrid = new MeshVertex[_xSize][_ySize];
+        Point3f _point = new Point3f();
+        
+        for(int _xIdx = 0; _xIdx < _xSize; _xIdx++) {
+            for(int _yIdx = 0; _yIdx < _ySize; _yIdx++) {
+                int _xPos = _xStart + _xIdx;
+                int _yPos = _yStart + _yIdx;
+                _point.set(_xPos, _yPos, this._heights[_xPos * this.size + _yPos]);
+                _meshGrid[_xIdx][_yIdx] = _builder.newVertex(_point);
+            }
+        }
+        
+        switch(this.shape) {
+            case PLANE:
+                _builder.addPlane(_meshGrid, this.textured);
+                break;
+            case LATHE:
+                _builder.addLathe(_meshGrid, this.textured);
+                break;
+            case MANIFOLD:
+                _builder.addManifold(_meshGrid, this.textured);
+                break;
+        }
+        return _builder;
+    }
+}
@@ -0,0 +1,67 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.chadj2.mesh.MeshGltfWriter;
+import io.github.chadj2.mesh.sphere.IcosphereBuilder;
+
+/**
+ * Generate a sphere with IcosphereBuilder.addIcosphere(). LOD 7 is not included because it 
+ * has more than TriangleIndices.MAX_INDEX vertices.
+ * @author Chad Juliano
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class IcosphereBench {
+    
+    @Param({ "0", "1", "2", "3", "4", "5", "6" })
+    public int lod;
+    
+    @Benchmark
+    public IcosphereBuilder ingest() throws Exception {
+        long _start = VertexAllocProfiler.begin();
+        IcosphereBuilder _builder = new IcosphereBuilder("sphere");
+        _builder.addIcosphere(this.lod);
+        VertexAllocProfiler.end(_start, getVertexCount());
+        return _builder;
+    }
+    
+    @Benchmark
+    public MeshGltfWriter ingestAndBuild() throws Exception {
+        long _start = VertexAllocProfiler.begin();
+        MeshGltfWriter _writer = new MeshGltfWriter();
+        IcosphereBuilder _builder = new IcosphereBuilder("sphere");
+        _builder.addIcosphere(this.lod);
+        _builder.buildMesh(_writer);
+        VertexAllocProfiler.end(_start, getVertexCount());
+        return _writer;
+    }
+    
+    /**
+     * Each level splits the triangles of the icosahedron into 4.
+     */
+    private long getVertexCount() {
+        return 10L * (1L << (2 * this.lod)) + 2;
+    }
+}
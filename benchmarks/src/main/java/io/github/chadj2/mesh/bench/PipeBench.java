@@ -0,0 +1,95 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.vecmath.Point3f;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.chadj2.mesh.Color;
+import io.github.chadj2.mesh.MeshBuilder;
+import io.github.chadj2.mesh.MeshGltfWriter;
+
+/**
+ * Generate a pipe along a helix with MeshBuilder.addPipe(). The number of sides is limited
+ * so that the pipe does not exceed TriangleIndices.MAX_INDEX vertices.
+ * @author Chad Juliano
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class PipeBench {
+    
+    @Param({ "10000" })
+    public int points;
+    
+    @Param({ "3", "6" })
+    public int sides;
+    
+    private List<Point3f> _pointList;
+    
+    private List<Color> _colorList;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        this._pointList = new ArrayList<>(this.points);
+        this._colorList = new ArrayList<>(this.points);
+        for(int _idx = 0; _idx < this.points; _idx++) {
+            double _angle = _idx * 0.1;
+            this._pointList.add(new Point3f((float)Math.cos(_angle), _idx * 0.01f, (float)Math.sin(_angle)));
+            this._colorList.add(new Color(_idx / (float)this.points, 0.5f, 1f, 1f));
+        }
+    }
+    
+    @Benchmark
+    public MeshBuilder ingest() throws Exception {
+        long _start = VertexAllocProfiler.begin();
+        MeshBuilder _builder = ingestPipe();
+        VertexAllocProfiler.end(_start, getVertexCount());
+        return _builder;
+    }
+    
+    @Benchmark
+    public MeshGltfWriter ingestAndBuild() throws Exception {
+        long _start = VertexAllocProfiler.begin();
+        MeshGltfWriter _writer = new MeshGltfWriter();
+        ingestPipe().buildMesh(_writer);
+        VertexAllocProfiler.end(_start, getVertexCount());
+        return _writer;
+    }
+    
+    private MeshBuilder ingestPipe() throws Exception {
+        MeshBuilder _builder = new MeshBuilder("pipe");
+        _builder.addPipe(this._pointList, this._colorList, 0.05f, this.sides);
+        return _builder;
+    }
+    
+    /**
+     * Each point has a ring and the caps each have a center and a ring.
+     */
+    private long getVertexCount() {
+        return (long)this.points * this.sides + 2 * (this.sides + 1);
+    }
+}
@@ -0,0 +1,408 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.bench;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import javax.vecmath.Point3f;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import io.github.chadj2.mesh.Color;
+import io.github.chadj2.mesh.MeshBuilder;
+import io.github.chadj2.mesh.MeshGltfWriter;
+import io.github.chadj2.mesh.MeshGltfWriter.GltfFormat;
+import io.github.chadj2.mesh.MeshVertex;
+import io.github.chadj2.mesh.noise.NoiseGenerator;
+import io.github.chadj2.mesh.sphere.SphereFactory;
+import io.github.chadj2.mesh.sphere.SphereFactoryBase;
+import io.github.chadj2.mesh.sphere.SphereFactoryInst;
+
+/**
+ * Macro benchmark that generates synthetic scenes and writes them to files. Each scene is
+ * generated with a number of objects and written in each format with a new writer. The
+ * results are written to a CSV file with one row for each run. Scenes are generated from
+ * fixed seeds so runs can be compared.
+ *
+ * <p>Usage: java -cp benchmarks.jar io.github.chadj2.mesh.bench.SceneBench [options]</p>
+ * <ul>
+ * <li>--scenes=SPHERES,SPHERES_INST,TERRAIN,PIPES</li>
+ * <li>--objects=1000,10000,100000,1000000</li>
+ * <li>--formats=glb,gltf</li>
+ * <li>--repeat=1: Number of times each run is measured.</li>
+ * <li>--warmup=1: Number of times the smallest run of each scene is done before measuring.</li>
+ * <li>--out=target/scenes: Directory for the generated files. They are deleted after each run.</li>
+ * <li>--csv=target/scene-bench.csv: File for the results.</li>
+ * </ul>
+ * @author Chad Juliano
+ */
+public class SceneBench {
+
+    /** Tile size that stays under the index limit of a mesh. */
+    private static final int TILE_SIZE = 250;
+
+    /** Points in each pipe of a bundle. */
+    private static final int PIPE_POINTS = 1000;
+
+    private static final int PIPE_SIDES = 6;
+
+    private static final long SEED = 1234;
+
+    private static final String CSV_HEADER = "scene,objects,format,buildMs,writeMs,totalMs,"
+            + "nsPerObject,peakHeapBytes,gcCount,gcMs,maxGcPauseMs,outputBytes";
+
+    /**
+     * Scenes that can be generated. The number of objects is the number of spheres, terrain
+     * vertices, or pipe points.
+     */
+    public enum Scene {
+        /** Spheres that each have a node with SphereFactory. */
+        SPHERES,
+
+        /** Spheres that are instanced with SphereFactoryInst. */
+        SPHERES_INST,
+
+        /** Square terrain from 2D noise that is split into tiles. */
+        TERRAIN,
+
+        /** Bundle of parallel helix pipes. */
+        PIPES
+    }
+
+    /**
+     * Measurements of a run.
+     */
+    private static class RunResult {
+        Scene _scene;
+        int _objects;
+        GltfFormat _format;
+        long _buildNanos;
+        long _writeNanos;
+        long _peakHeap;
+        long _gcCount;
+        long _gcMillis;
+        long _maxGcPause;
+        long _outputBytes;
+
+        String toCsv() {
+            long _totalNanos = this._buildNanos + this._writeNanos;
+            return String.format(Locale.ROOT, "%s,%d,%s,%.3f,%.3f,%.3f,%.1f,%d,%d,%d,%d,%d",
+                    this._scene, this._objects, this._format,
+                    this._buildNanos / 1e6, this._writeNanos / 1e6, _totalNanos / 1e6,
+                    (double)_totalNanos / this._objects, this._peakHeap,
+                    this._gcCount, this._gcMillis, this._maxGcPause, this._outputBytes);
+        }
+    }
+
+    private final List<Scene> _scenes = new ArrayList<>();
+    private final List<Integer> _objectCounts = new ArrayList<>();
+    private final List<GltfFormat> _formats = new ArrayList<>();
+    private int _repeat = 1;
+    private int _warmup = 1;
+    private File _outDir = new File("target/scenes");
+    private File _csvFile = new File("target/scene-bench.csv");
+
+    /** Longest GC pause reported since the last run started. */
+    private final AtomicLong _maxGcPause = new AtomicLong();
+
+    /** JVM uptime in milliseconds when the last run started. */
+    private volatile long _runStartMillis = 0;
+
+    public static void main(String[] args) throws Exception {
+        SceneBench _bench = new SceneBench();
+        _bench.parseArgs(args);
+        _bench.run();
+    }
+
+    private void parseArgs(String[] _args) {
+        String _scenes = "SPHERES,SPHERES_INST,TERRAIN,PIPES";
+        String _objects = "1000,10000,100000,1000000";
+        String _formats = "glb,gltf";
+
+        for(String _arg : _args) {
+            int _sepIdx = _arg.indexOf('=');
+            if(!_arg.startsWith("--") || _sepIdx < 0) {
+                throw new IllegalArgumentException("Expected --name=value: " + _arg);
+            }
+
+            String _name = _arg.substring(2, _sepIdx);
+            String _value = _arg.substring(_sepIdx + 1);
+            switch(_name) {
+                case "scenes":
+                    _scenes = _value;
+                    break;
+                case "objects":
+                    _objects = _value;
+                    break;
+                case "formats":
+                    _formats = _value;
+                    break;
+                case "repeat":
+                    this._repeat = Integer.parseInt(_value);
+                    break;
+                case "warmup":
+                    this._warmup = Integer.parseInt(_value);
+                    break;
+                case "out":
+                    this._outDir = new File(_value);
+                    break;
+                case "csv":
+                    this._csvFile = new File(_value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + _arg);
+            }
+        }
+
+        for(String _scene : _scenes.split(",")) {
+            this._scenes.add(Scene.valueOf(_scene.trim().toUpperCase(Locale.ROOT)));
+        }
+        for(String _count : _objects.split(",")) {
+            this._objectCounts.add(Integer.parseInt(_count.trim()));
+        }
+        for(String _format : _formats.split(",")) {
+            this._formats.add(GltfFormat.valueOf(_format.trim()));
+        }
+    }
+
+    private void run() throws Exception {
+        Files.createDirectories(this._outDir.toPath());
+        File _csvDir = this._csvFile.getAbsoluteFile().getParentFile();
+        Files.createDirectories(_csvDir.toPath());
+        listenForGc();
+
+        int _minObjects = this._objectCounts.stream().mapToInt(Integer::intValue).min().orElse(0);
+
+        try (PrintWriter _csv = new PrintWriter(this._csvFile, StandardCharsets.UTF_8.name())) {
+            _csv.println(CSV_HEADER);
+            System.out.println(CSV_HEADER);
+
+            for(Scene _scene : this._scenes) {
+                for(int _idx = 0; _idx < this._warmup; _idx++) {
+                    for(GltfFormat _format : this._formats) {
+                        runScene(_scene, _minObjects, _format);
+                    }
+                }
+
+                for(int _objects : this._objectCounts) {
+                    for(GltfFormat _format : this._formats) {
+                        for(int _idx = 0; _idx < this._repeat; _idx++) {
+                            String _row = runScene(_scene, _objects, _format).toCsv();
+                            _csv.println(_row);
+                            _csv.flush();
+                            System.out.println(_row);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private RunResult runScene(Scene _scene, int _objects, GltfFormat _format) throws Exception {
+        System.gc();
+
+        List<MemoryPoolMXBean> _heapPools = new ArrayList<>();
+        for(MemoryPoolMXBean _pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if(_pool.getType() == MemoryType.HEAP) {
+                _pool.resetPeakUsage();
+                _heapPools.add(_pool);
+            }
+        }
+        long _startGcCount = getGcCount();
+        long _startGcMillis = getGcMillis();
+        this._maxGcPause.set(0);
+        this._runStartMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+
+        File _outFile = new File(this._outDir,
+                String.format("%s-%d.%s", _scene.name().toLowerCase(Locale.ROOT), _objects, _format));
+
+        RunResult _result = new RunResult();
+        _result._scene = _scene;
+        _result._objects = _objects;
+        _result._format = _format;
+
+        long _start = System.nanoTime();
+        MeshGltfWriter _writer = new MeshGltfWriter();
+        buildScene(_writer, _scene, _objects);
+        _result._buildNanos = System.nanoTime() - _start;
+
+        _start = System.nanoTime();
+        _writer.writeGltf(_outFile, _format);
+        _result._writeNanos = System.nanoTime() - _start;
+
+        for(MemoryPoolMXBean _pool : _heapPools) {
+            _result._peakHeap += _pool.getPeakUsage().getUsed();
+        }
+        _result._gcCount = getGcCount() - _startGcCount;
+        _result._gcMillis = getGcMillis() - _startGcMillis;
+        _result._maxGcPause = this._maxGcPause.get();
+        _result._outputBytes = _outFile.length();
+
+        Files.delete(_outFile.toPath());
+        return _result;
+    }
+
+    private static void buildScene(MeshGltfWriter _writer, Scene _scene, int _objects) throws Exception {
+        switch(_scene) {
+            case SPHERES:
+                addSpheres(new SphereFactory(_writer), _objects);
+                break;
+            case SPHERES_INST:
+                addSpheres(new SphereFactoryInst(_writer), _objects);
+                break;
+            case TERRAIN:
+                addTerrain(_writer, _objects);
+                break;
+            case PIPES:
+                addPipes(_writer, _objects);
+                break;
+        }
+    }
+
+    /**
+     * Add spheres in a cube with a few colors and sizes.
+     */
+    private static void addSpheres(SphereFactoryBase _factory, int _count) throws Exception {
+        Color[] _colors = {
+                new Color(1f, 0.2f, 0.2f, 1f),
+                new Color(0.2f, 1f, 0.2f, 1f),
+                new Color(0.2f, 0.2f, 1f, 1f),
+                new Color(1f, 1f, 0.2f, 0.5f) };
+
+        Random _random = new Random(SEED);
+        float _extent = (float)Math.cbrt(_count) * 4f;
+        for(int _idx = 0; _idx < _count; _idx++) {
+            _factory.setColor(_colors[_idx % _colors.length]);
+            _factory.setRadius(0.5f + _random.nextFloat());
+            Point3f _pos = new Point3f(_random.nextFloat() * _extent,
+                    _random.nextFloat() * _extent, _random.nextFloat() * _extent);
+            _factory.addSphere(_pos, Integer.toString(_idx));
+        }
+        _factory.build();
+    }
+
+    /**
+     * Add a square terrain with the number of vertices. The terrain is split into tiles that
+     * are each a mesh.
+     */
+    private static void addTerrain(MeshGltfWriter _writer, int _vertices) throws Exception {
+        int _size = (int)Math.round(Math.sqrt(_vertices));
+        NoiseGenerator _noise = new NoiseGenerator.OpenSimplex(SEED);
+        Point3f _point = new Point3f();
+
+        for(int _xStart = 0; _xStart < _size; _xStart += TILE_SIZE) {
+            for(int _yStart = 0; _yStart < _size; _yStart += TILE_SIZE) {
+                // overlap the tiles so there are no gaps
+                int _xEnd = Math.min(_xStart + TILE_SIZE + 1, _size);
+                int _yEnd = Math.min(_yStart + TILE_SIZE + 1, _size);
+                if(_xEnd - _xStart < 2 || _yEnd - _yStart < 2) {
+                    continue;
+                }
+
+                MeshBuilder _builder = new MeshBuilder(String.format("terrain-%d-%d", _xStart, _yStart));
+                MeshVertex[][] _meshGrid = new MeshVertex[_xEnd - _xStart][_yEnd - _yStart];
+                for(int _xIdx = _xStart; _xIdx < _xEnd; _xIdx++) {
+                    for(int _yIdx = _yStart; _yIdx < _yEnd; _yIdx++) {
+                        float _height = (float)_noise.getNoise(_xIdx * 0.01, _yIdx * 0.01) * 20f;
+                        _point.set(_xIdx, _height, _yIdx);
+                        MeshVertex _vertex = _builder.newVertex(_point);
+                        _vertex.setColor(new Color(0.5f + _height / 40f, 0.6f, 0.3f, 1f));
+                        _meshGrid[_xIdx - _xStart][_yIdx - _yStart] = _vertex;
+                    }
+                }
+
+                _builder.addPlane(_meshGrid, false);
+                _builder.build(_writer);
+            }
+        }
+    }
+
+    /**
+     * Add a bundle of parallel pipes with the total number of points. Each pipe is a mesh.
+     */
+    private static void addPipes(MeshGltfWriter _writer, int _points) throws Exception {
+        int _pipeCount = Math.max(1, _points / PIPE_POINTS);
+        int _bundleSide = (int)Math.ceil(Math.sqrt(_pipeCount));
+
+        for(int _pipeIdx = 0; _pipeIdx < _pipeCount; _pipeIdx++) {
+            // the last pipe takes the remainder
+            int _pipePoints = PIPE_POINTS;
+            if(_pipeIdx == _pipeCount - 1) {
+                _pipePoints = _points - _pipeIdx * PIPE_POINTS;
+            }
+
+            float _xCenter = (_pipeIdx % _bundleSide) * 3f;
+            float _zCenter = (_pipeIdx / _bundleSide) * 3f;
+            Color _color = new Color(_pipeIdx / (float)_pipeCount, 0.5f, 1f, 1f);
+
+            List<Point3f> _pointList = new ArrayList<>(_pipePoints);
+            List<Color> _colorList = new ArrayList<>(_pipePoints);
+            for(int _idx = 0; _idx < _pipePoints; _idx++) {
+                double _angle = _idx * 0.1 + _pipeIdx;
+                _pointList.add(new Point3f(_xCenter + (float)Math.cos(_angle), _idx * 0.05f,
+                        _zCenter + (float)Math.sin(_angle)));
+                _colorList.add(_color);
+            }
+
+            MeshBuilder _builder = new MeshBuilder("pipe-" + _pipeIdx);
+            _builder.addPipe(_pointList, _colorList, 0.2f, PIPE_SIDES);
+            _builder.build(_writer);
+        }
+    }
+
+    private void listenForGc() {
+        for(GarbageCollectorMXBean _gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if(!(_gcBean instanceof NotificationEmitter)) {
+                continue;
+            }
+
+            ((NotificationEmitter)_gcBean).addNotificationListener((_notification, _handback) -> {
+                if(!_notification.getType().equals(
+                        GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+                    return;
+                }
+                GarbageCollectionNotificationInfo _info = GarbageCollectionNotificationInfo
+                        .from((CompositeData)_notification.getUserData());
+                if(_info.getGcInfo().getStartTime() < this._runStartMillis) {
+                    // notifications are delivered late so this can be from a previous run
+                    return;
+                }
+                this._maxGcPause.accumulateAndGet(_info.getGcInfo().getDuration(), Math::max);
+            }, null, null);
+        }
+    }
+
+    private static long getGcCount() {
+        long _count = 0;
+        for(GarbageCollectorMXBean _gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            _count += Math.max(0, _gcBean.getCollectionCount());
+        }
+        return _count;
+    }
+
+    private static long getGcMillis() {
+        long _millis = 0;
+        for(GarbageCollectorMXBean _gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            _millis += Math.max(0, _gcBean.getCollectionTime());
+        }
+        return _millis;
+    }
+}
@@ -0,0 +1,78 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Report the bytes allocated for each vertex. Benchmarks call begin() and end() around the
+ * code that creates vertices so that setup is not counted. Benchmarks that don't call these
+ * methods have no results.
+ * @author Chad Juliano
+ */
+public class VertexAllocProfiler implements InternalProfiler {
+    
+    private static final ThreadMXBean THREADS = (ThreadMXBean)ManagementFactory.getThreadMXBean();
+    
+    private static final LongAdder BYTES = new LongAdder();
+    private static final LongAdder VERTICES = new LongAdder();
+    
+    /**
+     * Start counting allocations of the current thread.
+     * @return Value to pass to end().
+     */
+    public static long begin() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    
+    /**
+     * Stop counting allocations of the current thread.
+     * @param _start Value returned by begin().
+     * @param _vertices Number of vertices that were created.
+     */
+    public static void end(long _start, long _vertices) {
+        BYTES.add(begin() - _start);
+        VERTICES.add(_vertices);
+    }
+    
+    @Override
+    public String getDescription() {
+        return "Bytes allocated for each vertex";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams _benchParams, IterationParams _iterParams) {
+        BYTES.reset();
+        VERTICES.reset();
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams _benchParams, 
+            IterationParams _iterParams, IterationResult _result) {
+        long _vertices = VERTICES.sum();
+        if(_vertices == 0) {
+            return Collections.emptyList();
+        }
+        
+        double _bytesPerVertex = (double)BYTES.sum() / _vertices;
+        return Collections.singletonList(new ScalarResult("alloc.norm.vertex", _bytesPerVertex, 
+                "B/vertex", AggregationPolicy.AVG));
+    }
+}
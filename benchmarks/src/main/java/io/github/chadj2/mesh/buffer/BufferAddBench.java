@@ -0,0 +1,55 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.buffer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.chadj2.mesh.buffer.BufferFixture.Kind;
+
+/**
+ * Throughput of adding elements to a new buffer.
+ * @author Chad Juliano
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class BufferAddBench {
+    
+    @Param
+    public Kind kind;
+    
+    @Param({ "1000", "10000", "100000", "1000000", "10000000" })
+    public int size;
+    
+    private BufferFixture _fixture;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        this._fixture = new BufferFixture(this.kind, this.size);
+    }
+    
+    @Benchmark
+    public BufferBase<?> add() throws Exception {
+        return this._fixture.fill();
+    }
+}
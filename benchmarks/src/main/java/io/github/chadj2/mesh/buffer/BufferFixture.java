@@ -0,0 +1,201 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import javax.vecmath.Point2f;
+import javax.vecmath.Point3f;
+import javax.vecmath.Point4f;
+import javax.vecmath.Quat4f;
+
+import io.github.chadj2.mesh.Color;
+
+/**
+ * Generates the elements for a buffer type so that benchmarks only measure the buffer. 
+ * This is in the buffer package so the benchmarks can call the protected encoders.
+ * @author Chad Juliano
+ */
+public class BufferFixture {
+    
+    /**
+     * Buffer types that can be benchmarked.
+     */
+    public enum Kind {
+        FLOAT2,
+        FLOAT3,
+        FLOAT4,
+        QUAT,
+        SHORT,
+        COLORS,
+        INDICES,
+        STRINGS
+    }
+    
+    private final Kind _kind;
+    private final int _size;
+    
+    private Point2f[] _vec2;
+    private Point3f[] _vec3;
+    private Point4f[] _vec4;
+    private Quat4f[] _quats;
+    private short[] _shorts;
+    private Color[] _colors;
+    private int[] _indices;
+    private String[] _strings;
+    
+    /**
+     * @param _size Number of elements. For INDICES this is the number of indices.
+     */
+    public BufferFixture(Kind _kind, int _size) {
+        this._kind = _kind;
+        this._size = _size;
+        
+        Random _random = new Random(_size);
+        switch(_kind) {
+            case FLOAT2:
+                this._vec2 = new Point2f[_size];
+                for(int _idx = 0; _idx < _size; _idx++) {
+                    this._vec2[_idx] = new Point2f(_random.nextFloat(), _random.nextFloat());
+                }
+                break;
+            case FLOAT3:
+                this._vec3 = new Point3f[_size];
+                for(int _idx = 0; _idx < _size; _idx++) {
+                    this._vec3[_idx] = new Point3f(_random.nextFloat() * 100f, 
+                            _random.nextFloat() * 100f, _random.nextFloat() * 100f);
+                }
+                break;
+            case FLOAT4:
+                this._vec4 = new Point4f[_size];
+                for(int _idx = 0; _idx < _size; _idx++) {
+                    this._vec4[_idx] = new Point4f(_random.nextFloat(), _random.nextFloat(), 
+                            _random.nextFloat(), _random.nextFloat());
+                }
+                break;
+            case QUAT:
+                this._quats = new Quat4f[_size];
+                for(int _idx = 0; _idx < _size; _idx++) {
+                    this._quats[_idx] = new Quat4f(_random.nextFloat(), _random.nextFloat(), 
+                            _random.nextFloat(), _random.nextFloat());
+                }
+                break;
+            case SHORT:
+                this._shorts = new short[_size];
+                for(int _idx = 0; _idx < _size; _idx++) {
+                    this._shorts[_idx] = (short)_random.nextInt(Short.MAX_VALUE);
+                }
+                break;
+            case COLORS:
+                this._colors = new Color[_size];
+                for(int _idx = 0; _idx < _size; _idx++) {
+                    this._colors[_idx] = new Color(_random.nextFloat(), _random.nextFloat(), 
+                            _random.nextFloat(), 1f);
+                }
+                break;
+            case INDICES:
+                this._indices = new int[_size - _size % 3];
+                for(int _idx = 0; _idx < this._indices.length; _idx++) {
+                    this._indices[_idx] = _random.nextInt(TriangleIndices.MAX_INDEX);
+                }
+                break;
+            case STRINGS:
+                this._strings = new String[_size];
+                for(int _idx = 0; _idx < _size; _idx++) {
+                    this._strings[_idx] = "event-" + _random.nextInt(1000000);
+                }
+                break;
+        }
+    }
+    
+    public Kind getKind() { return this._kind; }
+    
+    public int getSize() { return this._size; }
+    
+    /**
+     * Create a buffer and add all the elements.
+     */
+    public BufferBase<?> fill() throws Exception {
+        switch(this._kind) {
+            case FLOAT2: {
+                BufferVecFloat2 _buffer = new BufferVecFloat2("bench");
+                for(Point2f _val : this._vec2) {
+                    _buffer.add(_val);
+                }
+                return _buffer;
+            }
+            case FLOAT3: {
+                BufferVecFloat3 _buffer = new BufferVecFloat3("bench");
+                for(Point3f _val : this._vec3) {
+                    _buffer.add(_val);
+                }
+                return _buffer;
+            }
+            case FLOAT4: {
+                BufferVecFloat4 _buffer = new BufferVecFloat4("bench");
+                for(Point4f _val : this._vec4) {
+                    _buffer.add(_val);
+                }
+                return _buffer;
+            }
+            case QUAT: {
+                BufferVecQuat _buffer = new BufferVecQuat("bench");
+                for(Quat4f _val : this._quats) {
+                    _buffer.add(_val);
+                }
+                return _buffer;
+            }
+            case SHORT: {
+                BufferShort _buffer = new BufferShort("bench");
+                for(short _val : this._shorts) {
+                    _buffer.add(_val);
+                }
+                return _buffer;
+            }
+            case COLORS: {
+                VertexColors _buffer = new VertexColors("bench");
+                for(Color _val : this._colors) {
+                    _buffer.add(_val);
+                }
+                return _buffer;
+            }
+            case INDICES: {
+                TriangleIndices _buffer = new TriangleIndices("bench");
+                for(int _idx = 0; _idx < this._indices.length; _idx += 3) {
+                    _buffer.add(this._indices[_idx], this._indices[_idx + 1], this._indices[_idx + 2]);
+                }
+                return _buffer;
+            }
+            default: {
+                BufferMetadataString _buffer = new BufferMetadataString("bench");
+                for(String _val : this._strings) {
+                    _buffer.add(_val);
+                }
+                return _buffer;
+            }
+        }
+    }
+    
+    /**
+     * Allocate a little endian buffer that can hold the encoded elements.
+     */
+    public static ByteBuffer allocate(BufferBase<?> _buffer, boolean _isDirect) {
+        int _length = _buffer.getByteLength();
+        ByteBuffer _out = _isDirect ? ByteBuffer.allocateDirect(_length) : ByteBuffer.allocate(_length);
+        return _out.order(ByteOrder.LITTLE_ENDIAN);
+    }
+    
+    /**
+     * Encode the elements with writeBuf().
+     */
+    public static void write(BufferBase<?> _buffer, ByteBuffer _out) {
+        _out.clear();
+        _buffer.writeBuf(_out);
+    }
+}
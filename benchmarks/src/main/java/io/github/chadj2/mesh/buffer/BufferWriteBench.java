@@ -0,0 +1,63 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.chadj2.mesh.buffer.BufferFixture.Kind;
+
+/**
+ * Cost of encoding a filled buffer with writeBuf() into a heap or direct ByteBuffer.
+ * @author Chad Juliano
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class BufferWriteBench {
+    
+    @Param
+    public Kind kind;
+    
+    @Param({ "1000", "10000", "100000", "1000000", "10000000" })
+    public int size;
+    
+    @Param({ "false", "true" })
+    public boolean direct;
+    
+    private BufferBase<?> _buffer;
+    
+    private ByteBuffer _out;
+    
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        this._buffer = new BufferFixture(this.kind, this.size).fill();
+        this._out = BufferFixture.allocate(this._buffer, this.direct);
+    }
+    
+    @Benchmark
+    public ByteBuffer writeBuf() {
+        BufferFixture.write(this._buffer, this._out);
+        return this._out;
+    }
+}
@@ -0,0 +1,92 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Writes a sequence of buffers to an AsynchronousFileChannel one after the other. A buffer
+ * is dropped as soon as it has been written so its memory can be reclaimed while the
+ * remaining buffers are still being written.
+ * @author Chad Juliano
+ */
+class AsyncChannelWriter implements CompletionHandler<Integer, ByteBuffer> {
+
+    private final AsynchronousFileChannel _channel;
+
+    /** Buffers that have not been written. */
+    private final ArrayDeque<ByteBuffer> _queue;
+
+    private final CompletableFuture<Long> _future = new CompletableFuture<>();
+
+    /** File position of the next write. */
+    private long _position;
+
+    private AsyncChannelWriter(AsynchronousFileChannel _channel, List<ByteBuffer> _buffers,
+            long _position) {
+        this._channel = _channel;
+        this._queue = new ArrayDeque<>(_buffers);
+        this._position = _position;
+    }
+
+    /**
+     * Write the buffers to consecutive positions of the channel.
+     * @param _position File position of the first buffer.
+     * @return Future that completes with the position following the last buffer.
+     */
+    static CompletableFuture<Long> write(AsynchronousFileChannel _channel,
+            List<ByteBuffer> _buffers, long _position) {
+        AsyncChannelWriter _writer = new AsyncChannelWriter(_channel, _buffers, _position);
+        _writer.writeNext();
+        return _writer._future;
+    }
+
+    private void writeNext() {
+        ByteBuffer _buffer = this._queue.poll();
+        while(_buffer != null && !_buffer.hasRemaining()) {
+            _buffer = this._queue.poll();
+        }
+
+        if(_buffer == null) {
+            this._future.complete(this._position);
+            return;
+        }
+
+        write(_buffer);
+    }
+
+    private void write(ByteBuffer _buffer) {
+        try {
+            this._channel.write(_buffer, this._position, _buffer, this);
+        }
+        catch(RuntimeException ex) {
+            this._future.completeExceptionally(ex);
+        }
+    }
+
+    @Override
+    public void completed(Integer _count, ByteBuffer _buffer) {
+        this._position += _count;
+        if(_buffer.hasRemaining()) {
+            write(_buffer);
+            return;
+        }
+
+        writeNext();
+    }
+
+    @Override
+    public void failed(Throwable _ex, ByteBuffer _buffer) {
+        this._queue.clear();
+        this._future.completeExceptionally(_ex);
+    }
+}
@@ -0,0 +1,65 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import de.javagl.jgltf.impl.v2.GlTF;
+import de.javagl.jgltf.model.io.JacksonUtils;
+
+/**
+ * Streams the glTF JSON to an output with a Jackson JsonGenerator. The objects registered
+ * with the writer are serialized as they are visited so the JSON is never held in memory
+ * and the size of a GLB JSON chunk can be measured with a pass that discards the output.
+ * The mapper is configured like the jglTF GltfWriter so the output is the same, but it is
+ * created once so its serializers are reused for every write.
+ * @author Chad Juliano
+ */
+class GltfJsonEmitter {
+
+    private static final ObjectWriter COMPACT_WRITER;
+
+    private static final ObjectWriter INDENT_WRITER;
+
+    static {
+        ObjectMapper _mapper = JacksonUtils.createObjectMapper();
+        _mapper.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        COMPACT_WRITER = _mapper.writer();
+        INDENT_WRITER = _mapper.writer(SerializationFeature.INDENT_OUTPUT);
+    }
+
+    private GltfJsonEmitter() { }
+
+    /**
+     * Write the JSON to a stream. The stream is flushed but not closed.
+     * @param _isIndenting Indicates if the JSON should be formatted for reading.
+     * @return number of bytes written
+     */
+    static long write(GlTF _gltf, OutputStream _os, boolean _isIndenting) throws IOException {
+        ObjectWriter _writer = _isIndenting ? INDENT_WRITER : COMPACT_WRITER;
+        CountingOutputStream _counter = new CountingOutputStream(_os);
+        _writer.writeValue(_counter, _gltf);
+        _counter.flush();
+        return _counter.getByteCount();
+    }
+
+    /**
+     * Get the number of bytes of compact JSON without keeping the output.
+     */
+    static long measure(GlTF _gltf) throws IOException {
+        return write(_gltf, NullOutputStream.NULL_OUTPUT_STREAM, false);
+    }
+}
@@ -0,0 +1,103 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * List of glTF objects that assigns each object its index when it is added. Lookups are by
+ * identity so they take constant time regardless of the number of objects. The list is
+ * assigned to the GlTF when it is written.
+ * @author Chad Juliano
+ */
+class IndexRegistry<T> {
+
+    private final List<T> _list = new ArrayList<>();
+
+    private final Map<T, Integer> _indexMap = new IdentityHashMap<>();
+
+    /** Type of the objects used for error messages. */
+    private final String _type;
+
+    IndexRegistry(String _type) {
+        this._type = _type;
+    }
+
+    /**
+     * Add an object if it was not already added.
+     * @return index of the object
+     */
+    int add(T _obj) {
+        Integer _idx = this._indexMap.putIfAbsent(_obj, this._list.size());
+        if(_idx != null) {
+            return _idx;
+        }
+
+        this._list.add(_obj);
+        return this._list.size() - 1;
+    }
+
+    /**
+     * Add the objects of a list from the GlTF that are not in the registry. This keeps the 
+     * objects that were added to the GlTF directly instead of through the writer.
+     */
+    void addAll(List<T> _gltfList) {
+        if(_gltfList == null || _gltfList == this._list) {
+            return;
+        }
+        for(T _obj : _gltfList) {
+            add(_obj);
+        }
+    }
+
+    /**
+     * Get the index of an object that was added.
+     */
+    int indexOf(T _obj) {
+        Integer _idx = this._indexMap.get(_obj);
+        if(_idx == null) {
+            String msg = String.format("%s was not added to this writer", this._type);
+            throw new IllegalArgumentException(msg);
+        }
+        return _idx;
+    }
+
+    T get(int _idx) { return this._list.get(_idx); }
+
+    int size() { return this._list.size(); }
+
+    /**
+     * Remove objects added after the registry had the given size.
+     */
+    void truncate(int _size) {
+        while(this._list.size() > _size) {
+            this._indexMap.remove(this._list.remove(this._list.size() - 1));
+        }
+    }
+
+    /**
+     * Remove all objects.
+     */
+    void clear() {
+        this._list.clear();
+        this._indexMap.clear();
+    }
+
+    /**
+     * Get the list to assign to the GlTF. The GlTF does not accept empty lists so null is
+     * returned if nothing was added.
+     */
+    List<T> getList() {
+        if(this._list.isEmpty()) {
+            return null;
+        }
+        return this._list;
+    }
+}
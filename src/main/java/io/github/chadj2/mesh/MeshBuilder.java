@@ -90,7 +90,7 @@ public class MeshBuilder extends TriangleBuilder {
             
             // here we clear the vertices while preserving the normals. We want to keep the normals
             // and regenerate the grid.
-            this._indicesList.clear();
+            this.clearIndices();
             
             MeshVertex[][] _texGrid = createTexGrid(_meshGrid, _wrapX, _wrapY);
             
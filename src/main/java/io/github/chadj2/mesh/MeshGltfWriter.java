@@ -6,18 +6,34 @@
 
 package io.github.chadj2.mesh;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -25,12 +41,15 @@ import org.apache.commons.io.FilenameUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import de.javagl.jgltf.impl.v2.Accessor;
 import de.javagl.jgltf.impl.v2.Asset;
 import de.javagl.jgltf.impl.v2.Buffer;
+import de.javagl.jgltf.impl.v2.BufferView;
 import de.javagl.jgltf.impl.v2.GlTF;
 import de.javagl.jgltf.impl.v2.Image;
 import de.javagl.jgltf.impl.v2.Material;
 import de.javagl.jgltf.impl.v2.MaterialPbrMetallicRoughness;
+import de.javagl.jgltf.impl.v2.Mesh;
 import de.javagl.jgltf.impl.v2.Node;
 import de.javagl.jgltf.impl.v2.Sampler;
 import de.javagl.jgltf.impl.v2.Scene;
@@ -38,14 +57,22 @@ import de.javagl.jgltf.impl.v2.Texture;
 import de.javagl.jgltf.impl.v2.TextureInfo;
 import de.javagl.jgltf.model.GltfConstants;
 import de.javagl.jgltf.model.impl.DefaultGltfModel;
-import de.javagl.jgltf.model.io.Buffers;
 import de.javagl.jgltf.model.io.GltfReference;
 import de.javagl.jgltf.model.io.GltfReferenceResolver;
-import de.javagl.jgltf.model.io.GltfWriter;
+import de.javagl.jgltf.model.io.IO;
+import de.javagl.jgltf.model.io.MimeTypes;
 import de.javagl.jgltf.model.io.v2.GltfAssetV2;
 import de.javagl.jgltf.model.io.v2.GltfAssetsV2;
-import de.javagl.jgltf.model.io.v2.GltfModelWriterV2;
 import de.javagl.jgltf.model.v2.GltfModelCreatorV2;
+import io.github.chadj2.mesh.WriterStats.Phase;
+import io.github.chadj2.mesh.buffer.ArenaBase;
+import io.github.chadj2.mesh.buffer.BufferArena;
+import io.github.chadj2.mesh.buffer.BufferDedup;
+import io.github.chadj2.mesh.buffer.MappedOutput;
+import io.github.chadj2.mesh.buffer.DracoCompression;
+import io.github.chadj2.mesh.buffer.MeshoptCompression;
+import io.github.chadj2.mesh.extmeshopt.BufferViewMeshoptCompression;
+import io.github.chadj2.mesh.jfr.WriteGltfEvent;
 
 /**
  * Serialize added nodes to glTF format.
@@ -76,17 +103,40 @@ public class MeshGltfWriter {
     /**
      * Indicates if the gltf metadata should be JSON or binary.
      */
-    public enum GltfFormat { gltf, glb }
+    public enum GltfFormat { 
+        /** JSON with the buffer embedded as a base64 data URI. */
+        gltf, 
+        
+        /** Binary glTF with the buffer in the BIN chunk. */
+        glb,
+        
+        /** JSON with the buffer and images written to a separate .bin file. */
+        gltf_separate
+    }
+    
+    /**
+     * Policy for assigning BufferViews to glTF buffers.
+     */
+    public enum BufferPartition {
+        /** Start a new buffer when the current one would exceed the maximum size. */
+        BY_SIZE,
+        
+        /** Start a new buffer for each mesh or instancing node. The maximum size still applies. */
+        PER_MESH
+    }
 
     private final static Logger LOG = LoggerFactory.getLogger(MeshGltfWriter.class);
 
-    /** Largest size of byte buffer we will support. */
-    private static final int MAX_BUFFER_SIZE = 50*1024*1024;
-
-    /** Buffer used for primitive serialization. */
-    private final ByteBuffer _byteBuffer = Buffers.create(MAX_BUFFER_SIZE);
+    /** Arenas used for primitive serialization. Each arena is written as a glTF buffer. */
+    private final List<ArenaBase> _arenas = new ArrayList<>();
+    
+    /** Policy for starting a new buffer. */
+    private BufferPartition _partition = BufferPartition.BY_SIZE;
+    
+    /** Size a buffer can grow to before a new one is started. */
+    private long _maxBufferSize = ArenaBase.MAX_BUFFER_SIZE;
 
-    private final GlTF _gltf = new GlTF();
+    private GlTF _gltf = new GlTF();
     
     /** Contains metadata for the glTF Asset type */
     private final Map<String, Object> _metaParams = new TreeMap<>();
@@ -103,10 +153,60 @@ public class MeshGltfWriter {
     /** Copyright for glTF Asset type */
     private String _copyright = "";
     
-    /** These nodes will get added to the GlTF object at write time */
-    private final List<Node> _nodes = new ArrayList<>();
+    /** These objects will get added to the GlTF object at write time */
+    private final IndexRegistry<Node> _nodes = new IndexRegistry<>("Node");
+    private final IndexRegistry<Mesh> _meshes = new IndexRegistry<>("Mesh");
+    private final IndexRegistry<Material> _materials = new IndexRegistry<>("Material");
+    private final IndexRegistry<Accessor> _accessors = new IndexRegistry<>("Accessor");
+    private final IndexRegistry<BufferView> _bufferViews = new IndexRegistry<>("BufferView");
+    private final IndexRegistry<Sampler> _samplers = new IndexRegistry<>("Sampler");
+    private final IndexRegistry<Image> _images = new IndexRegistry<>("Image");
+    private final IndexRegistry<Texture> _textures = new IndexRegistry<>("Texture");
+    
+    /** Optional stage that compresses the BufferViews. */
+    private MeshoptCompression _meshopt = null;
+    
+    /** Optional stage that compresses triangle primitives. */
+    private DracoCompression _draco = null;
+    
+    /** Indicates if vertex attributes are stored as normalized integers. */
+    private boolean _isMeshQuantization = false;
+    
+    /** Optional stage that shares identical buffers. */
+    private BufferDedup _dedup = null;
+    
+    /** Metrics for building and writing. */
+    private final WriterStats _stats = new WriterStats();
+    
+    /** Materials that were added indexed by their properties. */
+    private final Map<MaterialKey,Material> _materialCache = new HashMap<>();
+    
+    /** Indicates if identical materials are shared. */
+    private boolean _isMaterialSharing = true;
+    
+    /** Indexes of the samplers, images and textures that were added. */
+    private final Map<List<Integer>,Integer> _samplerCache = new HashMap<>();
+    private final Map<Path,Integer> _imageCache = new HashMap<>();
+    private final Map<List<Integer>,Integer> _textureCache = new HashMap<>();
+    
+    /** Asynchronous write that is reading the arena and the GlTF or null. */
+    private volatile CompletableFuture<Void> _pendingWrite = null;
     
     public MeshGltfWriter() {
+        this(new BufferArena());
+    }
+    
+    /**
+     * @param _arena Storage for the glTF buffer. This can be used to change the segment size
+     * or to allocate direct buffers. A MappedOutput must be empty and it limits the writer 
+     * to a single buffer.
+     */
+    public MeshGltfWriter(ArenaBase _arena) {
+        if(_arena instanceof MappedOutput && !_arena.isEmpty()) {
+            throw new IllegalArgumentException("MappedOutput must be empty when the writer is created.");
+        }
+        
+        this._arenas.add(_arena);
         this._gltf.addScenes(this._topScene);
     }
     
@@ -122,14 +222,185 @@ public class MeshGltfWriter {
     public void setAlphaMode(AlphaMode _alphaMode) { this._alphaMode = _alphaMode; }
     
     /**
-     * Get the buffer used for serializing primitives.
+     * Set the policy for splitting the primitives into multiple glTF buffers. Buffers other 
+     * than the first are written to separate .bin files or data URIs.
+     * @param _partition Policy for starting a new buffer.
+     * @param _maxBufferSize Maximum size of a buffer in bytes. A BufferView larger than this 
+     * will get a buffer of its own.
+     * @throws IllegalArgumentException if the arena is not a BufferArena. A MappedOutput 
+     * only supports a single buffer.
+     */
+    public void setBufferPartition(BufferPartition _partition, long _maxBufferSize) {
+        if(_maxBufferSize <= 0 || _maxBufferSize > ArenaBase.MAX_BUFFER_SIZE) {
+            String msg = String.format("Maximum buffer size must be between 1 and %d: %d",
+                    ArenaBase.MAX_BUFFER_SIZE, _maxBufferSize);
+            throw new IllegalArgumentException(msg);
+        }
+        if(!(this._arenas.get(0) instanceof BufferArena)) {
+            String msg = String.format("%s does not support buffer partitioning.",
+                    this._arenas.get(0).getClass().getSimpleName());
+            throw new IllegalArgumentException(msg);
+        }
+        
+        this._partition = _partition;
+        this._maxBufferSize = _maxBufferSize;
+    }
+    
+    /**
+     * Compress BufferViews with the EXT_meshopt_compression extension. This must be set 
+     * before primitives are added and is not supported for embedded gltf output.
+     * @param _meshopt Compression settings or null to disable compression.
+     */
+    public void setMeshoptCompression(MeshoptCompression _meshopt) { this._meshopt = _meshopt; }
+    
+    public MeshoptCompression getMeshoptCompression() { return this._meshopt; }
+    
+    /**
+     * Compress the primitives of TriangleBuilder meshes with the KHR_draco_mesh_compression 
+     * extension. This must be set before primitives are added and is not supported for 
+     * embedded gltf output.
+     * @param _draco Compression settings or null to disable compression.
+     */
+    public void setDracoCompression(DracoCompression _draco) { this._draco = _draco; }
+    
+    public DracoCompression getDracoCompression() { return this._draco; }
+    
+    /**
+     * Share the Accessor and BufferView of buffers with identical content instead of writing 
+     * them again. This must be set before primitives are added.
+     * @param _dedup Deduplication stage or null to disable it.
+     */
+    public void setBufferDedup(BufferDedup _dedup) { this._dedup = _dedup; }
+    
+    public BufferDedup getBufferDedup() { return this._dedup; }
+    
+    /**
+     * Get the metrics collected while building meshes and writing the glTF. The BufferView 
+     * sizes are available after writeGltf().
+     */
+    public WriterStats getStats() { return this._stats; }
+    
+    /**
+     * Store vertex attributes as normalized integers with the KHR_mesh_quantization 
+     * extension. Positions are stored as SHORT relative to the mesh bounds and the node of 
+     * the mesh gets the transform that restores them. Normals are stored as BYTE and texture 
+     * coordinates in the range [0, 1] as UNSIGNED_SHORT. This must be set before meshes 
+     * are built.
+     */
+    public void setMeshQuantization(boolean _isEnabled) { this._isMeshQuantization = _isEnabled; }
+    
+    public boolean isMeshQuantization() { return this._isMeshQuantization; }
+    
+    /**
+     * Get the arena used for serializing primitives. This is the arena of the last buffer.
+     */
+    public ArenaBase getArena() { return this._arenas.get(this._arenas.size() - 1); }
+    
+    /**
+     * Get the arena for a BufferView with the given length. A new buffer is started if 
+     * the BufferView would exceed the maximum buffer size. Other arenas like MappedOutput are 
+     * always returned and they fail when the buffer would exceed MAX_BUFFER_SIZE.
+     * @param _length Length of the BufferView in bytes.
+     */
+    public ArenaBase getArena(int _length) {
+        ArenaBase _arena = getArena();
+        if(_arena instanceof BufferArena && !_arena.isEmpty() 
+                && _arena.size() + ArenaBase.align(_length) > this._maxBufferSize) {
+            _arena = newBuffer();
+        }
+        return _arena;
+    }
+    
+    /**
+     * Get the arenas of all buffers in order of buffer index.
      */
-    public ByteBuffer getBuffer() { return this._byteBuffer; }
+    public List<ArenaBase> getArenas() { return Collections.unmodifiableList(this._arenas); }
+    
+    /**
+     * Called before the BufferViews of a mesh or instancing node are added. With PER_MESH 
+     * partitioning this starts a new buffer.
+     */
+    public void beginMesh() {
+        if(this._partition == BufferPartition.PER_MESH && !getArena().isEmpty()) {
+            newBuffer();
+        }
+    }
+    
+    private BufferArena newBuffer() {
+        // setBufferPartition() rejects other arenas and getArena() only partitions a BufferArena
+        BufferArena _arena = ((BufferArena)getArena()).newPartition();
+        this._arenas.add(_arena);
+        LOG.debug("New buffer[{}]", _arena.getBufferIndex());
+        return _arena;
+    }
     
     /**
-     * Get the GlTF used for writing metadata.
+     * Return the writer to the state it had after construction so it can be used for another 
+     * scene. The added objects and the buffer contents are discarded but the capacity of the 
+     * first arena is kept. Settings like the base path, alpha mode, copyright, metadata and 
+     * buffer partitioning are unchanged. If an asynchronous write is still running this 
+     * waits for it to complete because the write reads the arena segments and the GlTF.
      */
-    public GlTF getGltf() { return this._gltf; }
+    public void reset() {
+        getPendingWrite().join();
+        this._pendingWrite = null;
+        
+        ArenaBase _arena = this._arenas.get(0);
+        _arena.reset();
+        this._arenas.clear();
+        this._arenas.add(_arena);
+        
+        this._nodes.clear();
+        this._meshes.clear();
+        this._materials.clear();
+        this._materialCache.clear();
+        this._samplerCache.clear();
+        this._imageCache.clear();
+        this._textureCache.clear();
+        this._samplers.clear();
+        this._images.clear();
+        this._textures.clear();
+        this._accessors.clear();
+        this._bufferViews.clear();
+        if(this._meshopt != null) {
+            this._meshopt.reset();
+        }
+        if(this._draco != null) {
+            this._draco.reset();
+        }
+        if(this._dedup != null) {
+            this._dedup.reset();
+        }
+        this._stats.reset();
+        
+        this._gltf = new GlTF();
+        this._topScene.setNodes(null);
+        this._gltf.addScenes(this._topScene);
+        LOG.debug("Reset writer: capacity=<{} bytes>", _arena.capacity());
+    }
+    
+    /**
+     * Get a future that completes when the last asynchronous write has finished. It 
+     * completes normally even if the write failed because the failure is reported by the 
+     * future returned from writeGltfAsync().
+     */
+    CompletableFuture<Void> getPendingWrite() {
+        CompletableFuture<Void> _write = this._pendingWrite;
+        if(_write == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return _write.handle((_result, _ex) -> null);
+    }
+    
+    /**
+     * Get the GlTF used for writing metadata. The objects that were added are assigned to 
+     * it before it is returned. The lists are shared with the writer so nodes, meshes, 
+     * materials, accessors and BufferViews must be added through the writer.
+     */
+    public GlTF getGltf() {
+        syncLists();
+        return this._gltf;
+    }
     
     /**
      * Set extra metadata in the glTF Asset.
@@ -145,9 +416,41 @@ public class MeshGltfWriter {
      * Add a node to the default Scene.
      * @return index of the node
      */
-    public int addNode(Node _node) {
-        this._nodes.add(_node);
-        return this._nodes.indexOf(_node);
+    public int addNode(Node _node) { return this._nodes.add(_node); }
+    
+    /**
+     * Add a mesh. It will be assigned to the GlTF at write time.
+     * @return index of the mesh
+     */
+    public int addMesh(Mesh _mesh) { return this._meshes.add(_mesh); }
+    
+    public int getMeshIndex(Mesh _mesh) { return this._meshes.indexOf(_mesh); }
+    
+    public Mesh getMesh(int _idx) { return this._meshes.get(_idx); }
+    
+    /**
+     * Get the number of meshes added. This is the index of the next mesh.
+     */
+    public int getMeshCount() { return this._meshes.size(); }
+    
+    public int getMaterialIndex(Material _material) { return this._materials.indexOf(_material); }
+    
+    /**
+     * Add an accessor. It will be assigned to the GlTF at write time.
+     * @return index of the accessor
+     */
+    public int addAccessor(Accessor _accessor) { return this._accessors.add(_accessor); }
+    
+    public int getAccessorIndex(Accessor _accessor) { return this._accessors.indexOf(_accessor); }
+    
+    /**
+     * Add a BufferView. It will be assigned to the GlTF at write time.
+     * @return index of the BufferView
+     */
+    public int addBufferView(BufferView _bufferView) { return this._bufferViews.add(_bufferView); }
+    
+    public int getBufferViewIndex(BufferView _bufferView) { 
+        return this._bufferViews.indexOf(_bufferView); 
     }
     
     private static final float DEFAULT_METALLIC_FACTOR = 0.5f;
@@ -167,48 +470,133 @@ public class MeshGltfWriter {
      * @param _imageFile The image to use for the texture or null if none.
      */
     public Material newTextureMaterial(String _imageFile) {
-        Material _material = newMaterial(_imageFile, DEFAULT_METALLIC_FACTOR, DEFAULT_ROUGHNESS_FACTOR);
-
-        Sampler _sampler = new Sampler();
-        this._gltf.addSamplers(_sampler);
-        _sampler.setMagFilter(GltfConstants.GL_LINEAR);
-        _sampler.setMinFilter(GltfConstants.GL_LINEAR);
-        _sampler.setWrapS(GltfConstants.GL_CLAMP_TO_EDGE);
-        _sampler.setWrapT(GltfConstants.GL_CLAMP_TO_EDGE);
+        return getMaterial(_imageFile, DEFAULT_METALLIC_FACTOR, DEFAULT_ROUGHNESS_FACTOR, 
+                null, _imageFile);
+    }
+    
+    public Material newBlendMaterial(String name, 
+            float metallicFactor, float roughnesFactor, Color color) {
+        float[] components = color.getRGBComponents(null);
+        return getMaterial(name, metallicFactor, roughnesFactor, components, null);
+    }
+    
+    public Material newMaterial(String name, float metallicFactor, float roughnesFactor) {
+        return getMaterial(name, metallicFactor, roughnesFactor, null, null);
+    }
+    
+    /**
+     * Enable or disable sharing of materials. When enabled a request for a material with the 
+     * same factors, color, texture and alpha mode as an earlier one returns the earlier 
+     * material, so the returned materials should not be modified. This is enabled by default.
+     */
+    public void setMaterialSharing(boolean _isEnabled) { this._isMaterialSharing = _isEnabled; }
+    
+    public boolean isMaterialSharing() { return this._isMaterialSharing; }
+    
+    /**
+     * Get the material with the given properties from the cache or add a new one.
+     * @param _name Name of a new material. This is not part of the key.
+     * @param _baseColor Base color factor or null for the default.
+     * @param _imageFile Base color texture or null if none.
+     */
+    private Material getMaterial(String _name, float _metallicFactor, float _roughnessFactor, 
+            float[] _baseColor, String _imageFile) {
+        MaterialKey _key = new MaterialKey(this._alphaMode, _metallicFactor, _roughnessFactor, 
+                _baseColor, _imageFile);
         
-        Image _image = new Image();
-        this._gltf.addImages(_image);
-        _image.setName(_imageFile);
-        _image.setUri(_imageFile);
-
-        Texture _texture = new Texture();
-        this._gltf.addTextures(_texture);
-        _texture.setSampler(this._gltf.getSamplers().indexOf(_sampler));
-        _texture.setSource(this._gltf.getImages().indexOf(_image));
+        Material _material = null;
+        if(this._isMaterialSharing) {
+            _material = this._materialCache.get(_key);
+            if(_material != null) {
+                LOG.debug("Shared Material: {}", _material.getName());
+                return _material;
+            }
+        }
+        
+        _material = createMaterial(_name, _metallicFactor, _roughnessFactor);
+        if(_baseColor != null) {
+            _material.getPbrMetallicRoughness().setBaseColorFactor(_baseColor);
+        }
+        if(_imageFile != null) {
+            addTexture(_material, _imageFile);
+        }
+        
+        if(this._isMaterialSharing) {
+            this._materialCache.put(_key, _material);
+        }
+        return _material;
+    }
+    
+    private void addTexture(Material _material, String _imageFile) {
+        // keep objects that were added to the GlTF directly before assigning indexes
+        syncLists();
+        int _samplerIdx = getSampler(GltfConstants.GL_LINEAR, GltfConstants.GL_LINEAR, 
+                GltfConstants.GL_CLAMP_TO_EDGE, GltfConstants.GL_CLAMP_TO_EDGE);
+        int _imageIdx = getImage(_imageFile);
+        
+        List<Integer> _key = Arrays.asList(_samplerIdx, _imageIdx);
+        Integer _textureIdx = this._textureCache.get(_key);
+        if(_textureIdx == null) {
+            Texture _texture = new Texture();
+            _texture.setSampler(_samplerIdx);
+            _texture.setSource(_imageIdx);
+            _textureIdx = this._textures.add(_texture);
+            this._textureCache.put(_key, _textureIdx);
+        }
         
         TextureInfo _texInfo = new TextureInfo();
-        _texInfo.setIndex(this._gltf.getTextures().indexOf(_texture));
+        _texInfo.setIndex(_textureIdx);
         MaterialPbrMetallicRoughness _roughness = _material.getPbrMetallicRoughness();
         _roughness.setBaseColorTexture(_texInfo);
-
-        return _material;
     }
     
-    public Material newBlendMaterial(String name, 
-            float metallicFactor, float roughnesFactor, Color color) {
-        Material material = this.newMaterial(name, metallicFactor, roughnesFactor);
+    /**
+     * Get the index of a sampler with the given filters and wrapping. Samplers with the same 
+     * parameters are shared.
+     */
+    private int getSampler(int _magFilter, int _minFilter, int _wrapS, int _wrapT) {
+        List<Integer> _key = Arrays.asList(_magFilter, _minFilter, _wrapS, _wrapT);
+        Integer _samplerIdx = this._samplerCache.get(_key);
+        if(_samplerIdx != null) {
+            return _samplerIdx;
+        }
         
-        MaterialPbrMetallicRoughness pbr = material.getPbrMetallicRoughness();
-        float[] components = color.getRGBComponents(null);
-        pbr.setBaseColorFactor(components);
-        return material;
+        Sampler _sampler = new Sampler();
+        _sampler.setMagFilter(_magFilter);
+        _sampler.setMinFilter(_minFilter);
+        _sampler.setWrapS(_wrapS);
+        _sampler.setWrapT(_wrapT);
+        
+        _samplerIdx = this._samplers.add(_sampler);
+        this._samplerCache.put(_key, _samplerIdx);
+        return _samplerIdx;
     }
     
-    public Material newMaterial(String name, float metallicFactor, float roughnesFactor) {
-        Material _material = new Material();
-        this._gltf.addMaterials(_material);
+    /**
+     * Get the index of the image for a file. Paths are resolved against the base path as 
+     * they are when embedded so that images referring to the same file are shared and the 
+     * file is only embedded once.
+     */
+    private int getImage(String _imageFile) {
+        Path _basePath = Paths.get(this._basePath).toAbsolutePath();
+        Path _key = _basePath.resolve(_imageFile).normalize();
+        Integer _imageIdx = this._imageCache.get(_key);
+        if(_imageIdx != null) {
+            return _imageIdx;
+        }
+        
+        Image _image = new Image();
+        _image.setName(_imageFile);
+        _image.setUri(_imageFile);
         
-        int _idx = this._gltf.getMaterials().indexOf(_material);
+        _imageIdx = this._images.add(_image);
+        this._imageCache.put(_key, _imageIdx);
+        return _imageIdx;
+    }
+    
+    private Material createMaterial(String name, float metallicFactor, float roughnesFactor) {
+        Material _material = new Material();
+        int _idx = this._materials.add(_material);
         _material.setName(String.format("%s[%d]", name, _idx));
         LOG.debug("New Material:  alpha=<{}>", _material.getName(), _material.getAlphaMode());
         
@@ -239,6 +627,46 @@ public class MeshGltfWriter {
         
         return _material;
     }
+    
+    /**
+     * Properties that determine the content of a material. The alpha mode of the writer 
+     * also determines double sidedness and the alpha cutoff.
+     */
+    private static class MaterialKey {
+        private final AlphaMode _alphaMode;
+        private final float _metallicFactor;
+        private final float _roughnessFactor;
+        private final float[] _baseColor;
+        private final String _imageFile;
+        
+        MaterialKey(AlphaMode _alphaMode, float _metallicFactor, float _roughnessFactor, 
+                float[] _baseColor, String _imageFile) {
+            this._alphaMode = _alphaMode;
+            this._metallicFactor = _metallicFactor;
+            this._roughnessFactor = _roughnessFactor;
+            this._baseColor = _baseColor == null ? null : _baseColor.clone();
+            this._imageFile = _imageFile;
+        }
+        
+        @Override
+        public boolean equals(Object _obj) {
+            if(!(_obj instanceof MaterialKey)) {
+                return false;
+            }
+            MaterialKey _other = (MaterialKey)_obj;
+            return this._alphaMode == _other._alphaMode
+                    && Float.compare(this._metallicFactor, _other._metallicFactor) == 0
+                    && Float.compare(this._roughnessFactor, _other._roughnessFactor) == 0
+                    && Arrays.equals(this._baseColor, _other._baseColor)
+                    && Objects.equals(this._imageFile, _other._imageFile);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(this._alphaMode, this._metallicFactor, this._roughnessFactor, 
+                    Arrays.hashCode(this._baseColor), this._imageFile);
+        }
+    }
 
     /**
      * Write a gltf to a file. The filename should have a gltf or glb extension to indicate 
@@ -248,12 +676,40 @@ public class MeshGltfWriter {
     public void writeGltf(File outFile) throws Exception {
         String ext = FilenameUtils.getExtension(outFile.getName());
         GltfFormat format = GltfFormat.valueOf(ext);
+        writeGltf(outFile, format);
+    }
+    
+    /**
+     * Write a gltf to a file with the given format. For gltf_separate the buffer is written
+     * to a .bin file with the same base name in the same directory. If there are multiple
+     * buffers then buffers after the first are written to files named like base_1.bin.
+     * @param outFile
+     * @param format
+     */
+    public void writeGltf(File outFile, GltfFormat format) throws Exception {
         MeshGltfWriter.LOG.info("Writing glTF: {}", outFile.getAbsolutePath());
+        WriteGltfEvent event = beginWrite();
         
-        try (OutputStream os = new FileOutputStream(outFile))
-        {
-            writeGltf(os, format);
+        if(format == GltfFormat.gltf_separate) {
+            writeSeparate(outFile);
+        }
+        else if(format == GltfFormat.glb) {
+            try (FileChannel channel = FileChannel.open(outFile.toPath(), 
+                    StandardOpenOption.CREATE, 
+                    StandardOpenOption.TRUNCATE_EXISTING, 
+                    StandardOpenOption.WRITE))
+            {
+                writeGlbFile(channel, outFile.toPath());
+            }
+        }
+        else {
+            try (OutputStream os = new FileOutputStream(outFile))
+            {
+                writeStream(os, format);
+            }
         }
+        
+        commitWrite(event, format.name(), outFile.toPath());
     }
     
     /**
@@ -262,17 +718,33 @@ public class MeshGltfWriter {
      * @param format Indicates if this is JSON or binary format.
      */
     public void writeGltf(OutputStream os, GltfFormat format) throws Exception {
-        this._gltf.setNodes(this._nodes);
+        WriteGltfEvent event = beginWrite();
+        writeStream(os, format);
+        commitWrite(event, format.name(), null);
+    }
+    
+    private void writeStream(OutputStream os, GltfFormat format) throws Exception {
+        if(format == GltfFormat.gltf_separate) {
+            throw new IllegalArgumentException("gltf_separate must be written to a File");
+        }
         
-        List<Integer> rangeList = IntStream
-                .range(0, this._nodes.size())
-                .boxed()
-                .collect(Collectors.toList());
-        this._topScene.setNodes(rangeList);
+        if(format == GltfFormat.glb) {
+            // the channel is not closed because that would close the stream.
+            writeSingleGlb(Channels.newChannel(os));
+            return;
+        }
+        
+        if(this._meshopt != null && this._meshopt.getViewCount() > 0) {
+            throw new IllegalStateException("Meshopt compression is not supported for embedded gltf");
+        }
+        if(this._draco != null && this._draco.getPrimitiveCount() > 0) {
+            throw new IllegalStateException("Draco compression is not supported for embedded gltf");
+        }
         
+        initScene();
         GltfAssetV2 gltfAsset = newGltfAsset();
+        recordBufferViews();
         DefaultGltfModel gltfModel =  GltfModelCreatorV2.create(gltfAsset);
-        GltfModelWriterV2 gltfModelWriter = new GltfModelWriterV2();
         
         if(format == GltfFormat.gltf) {
             // With the introduction of DefaultGltfModel in JglTF version 2.0.3 
@@ -289,11 +761,672 @@ public class MeshGltfWriter {
             writeEmbedded(gltfModel, os);
             //_gltfModelWriter.writeEmbedded(_gltfModel, _os);
         }
-        else if(format == GltfFormat.glb) {
-            gltfModelWriter.writeBinary(gltfModel, os);
+    }
+    
+    /** Magic number at the start of a GLB file ("glTF"). */
+    private static final int GLB_MAGIC = 0x46546C67;
+    
+    private static final int GLB_VERSION = 2;
+    
+    private static final int GLB_CHUNK_JSON = 0x4E4F534A;
+    
+    private static final int GLB_CHUNK_BIN = 0x004E4942;
+    
+    /** Size of the GLB header and of each chunk header. */
+    private static final int GLB_HEADER_SIZE = 12;
+    
+    private static final int GLB_CHUNK_HEADER_SIZE = 8;
+    
+    /**
+     * Image file that is copied into the BIN chunk or .bin file when it is written.
+     */
+    private static class ImageSource {
+        final Path _path;
+        final long _size;
+        final int _padding;
+        
+        ImageSource(Path path, long size) {
+            this._path = path;
+            this._size = size;
+            this._padding = (int)(-size & (ArenaBase.ALIGNMENT - 1));
+        }
+    }
+    
+    /**
+     * Contents of a GLB file other than the primitives in the arena. Images embedded in the 
+     * BIN chunk or .bin file are tracked so that their references can be restored.
+     */
+    private static class GlbLayout {
+        /** GLB header and JSON chunk header. */
+        ByteBuffer _header;
+        
+        /** JSON padding and BIN chunk header. */
+        final List<ByteBuffer> _binHead = new ArrayList<>();
+        
+        /** Length of the JSON without padding. */
+        long _jsonLength;
+        
+        /** Distinct image files that follow the primitives in the BIN chunk. */
+        final List<ImageSource> _images = new ArrayList<>();
+        
+        /** Embedded images and their original URIs. */
+        final List<Image> _embedded = new ArrayList<>();
+        final List<String> _imageUris = new ArrayList<>();
+        
+        int _bufferViewCount;
+        long _headLength;
+        long _binLength;
+        long _totalLength;
+    }
+    
+    /**
+     * Write binary glTF to a channel. The header and the JSON and BIN chunks are written 
+     * directly from the arena segments without creating an intermediate glTF model. Images 
+     * are loaded from the base path and appended to the BIN chunk. This only supports a 
+     * single buffer.
+     * @param channel The channel is not closed.
+     */
+    public void writeGlb(WritableByteChannel channel) throws Exception {
+        WriteGltfEvent event = beginWrite();
+        writeSingleGlb(channel);
+        commitWrite(event, GltfFormat.glb.name(), null);
+    }
+    
+    private void writeSingleGlb(WritableByteChannel channel) throws Exception {
+        if(this._arenas.size() > 1) {
+            throw new IllegalStateException("GLB with multiple buffers must be written to a File.");
+        }
+        
+        writeGlb(channel, null);
+    }
+    
+    /**
+     * Write binary glTF to a channel that can't seek. The JSON is measured before it is 
+     * written because the header comes first.
+     * @param outPath Location of the GLB or null if there is a single buffer.
+     */
+    private void writeGlb(WritableByteChannel channel, Path outPath) throws Exception {
+        initScene();
+        initAsset();
+        
+        GlbLayout layout = layoutGlb(getBaseName(outPath));
+        try {
+            writeHead(channel, layout);
+            writeBin(channel, outPath, layout);
+        }
+        finally {
+            restoreImages(layout);
+        }
+    }
+    
+    /**
+     * Write binary glTF to a file with the first buffer in the BIN chunk and the other 
+     * buffers in .bin files next to the GLB. The JSON is only serialized once.
+     * @param outPath Location of the GLB.
+     */
+    private void writeGlbFile(FileChannel channel, Path outPath) throws Exception {
+        initScene();
+        initAsset();
+        
+        GlbLayout layout = embedImages(getBaseName(outPath), true);
+        try {
+            writeFileHead(channel, layout);
+            writeBin(channel, outPath, layout);
+        }
+        finally {
+            restoreImages(layout);
+        }
+    }
+    
+    /**
+     * Write the BIN chunk after the head and the buffers after the first to .bin files.
+     */
+    private void writeBin(WritableByteChannel channel, Path outPath, GlbLayout layout) 
+            throws IOException {
+        long _start = System.nanoTime();
+        writeFully(channel, this._arenas.get(0).getSegments());
+        transferImages(layout._images, channel);
+        writeBinFiles(outPath, layout, 1);
+        this._stats.endPhase(Phase.IO, _start);
+    }
+    
+    /**
+     * Write binary glTF to a memory mapped file. The file is sized from the BufferView lengths 
+     * and the JSON and the primitives are encoded directly into the mapped file. This avoids 
+     * holding a copy of the buffer data in memory. The GLB has a single buffer so the 
+     * primitives are limited to MAX_BUFFER_SIZE (2 GiB) and buffer partitioning is not 
+     * supported. Adding more data than this fails with IllegalStateException.
+     * @param outPath File to write.
+     * @param mapped The arena passed to the constructor of this writer.
+     */
+    public void writeGltf(Path outPath, MappedOutput mapped) throws Exception {
+        if(mapped != this._arenas.get(0)) {
+            throw new IllegalArgumentException("MappedOutput must be the arena of this writer.");
+        }
+        
+        MeshGltfWriter.LOG.info("Writing mapped glTF: {}", outPath.toAbsolutePath());
+        WriteGltfEvent event = beginWrite();
+        initScene();
+        initAsset();
+        
+        GlbLayout layout = embedImages(null, true);
+        try (FileChannel channel = FileChannel.open(outPath, 
+                StandardOpenOption.CREATE, 
+                StandardOpenOption.TRUNCATE_EXISTING, 
+                StandardOpenOption.READ, 
+                StandardOpenOption.WRITE))
+        {
+            writeFileHead(channel, layout);
+            
+            // size the file before the BIN chunk is mapped
+            channel.write(ByteBuffer.allocate(1), layout._totalLength - 1);
+            
+            long _start = System.nanoTime();
+            mapped.encode(channel, layout._headLength);
+            
+            channel.position(layout._headLength + mapped.size());
+            transferImages(layout._images, channel);
+            this._stats.endPhase(Phase.IO, _start);
+        }
+        finally {
+            restoreImages(layout);
+        }
+        
+        commitWrite(event, GltfFormat.glb.name(), outPath);
+    }
+    
+    private static WriteGltfEvent beginWrite() {
+        WriteGltfEvent event = new WriteGltfEvent();
+        event.begin();
+        return event;
+    }
+    
+    /**
+     * Commit a flight recorder event for a write if it is enabled.
+     * @param path Output file or null for a stream.
+     */
+    private void commitWrite(WriteGltfEvent event, String format, Path path) {
+        event.end();
+        if(!event.shouldCommit()) {
+            return;
+        }
+        
+        event.format = format;
+        event.path = path == null ? null : path.toString();
+        event.meshes = this._meshes.size();
+        event.accessors = this._accessors.size();
+        event.bufferViews = this._bufferViews.size();
+        event.buffers = this._arenas.size();
+        event.bufferBytes = this._arenas.stream().mapToLong(ArenaBase::size).sum();
+        event.commit();
+    }
+    
+    /**
+     * Write binary glTF to a file without blocking on the disk. The file is closed when the
+     * returned future completes.
+     * @see #writeGltfAsync(AsynchronousFileChannel)
+     */
+    public CompletableFuture<Void> writeGltfAsync(Path outPath) throws Exception {
+        MeshGltfWriter.LOG.info("Writing async glTF: {}", outPath.toAbsolutePath());
+        AsynchronousFileChannel channel = AsynchronousFileChannel.open(outPath, 
+                StandardOpenOption.CREATE, 
+                StandardOpenOption.TRUNCATE_EXISTING, 
+                StandardOpenOption.WRITE);
+        
+        CompletableFuture<Void> future;
+        try {
+            future = writeGltfAsync(channel);
+        }
+        catch(Exception ex) {
+            channel.close();
+            throw ex;
+        }
+        
+        return future.whenComplete((_result, _ex) -> {
+            try {
+                channel.close();
+            }
+            catch(IOException ex) {
+                LOG.warn("Failed to close: {}", outPath, ex);
+            }
+        });
+    }
+    
+    /**
+     * Write binary glTF to an asynchronous channel. The JSON is measured on the calling 
+     * thread to place the BIN chunk and the BIN write is issued as soon as the buffer segments 
+     * are ready. The JSON is serialized on the common pool while the BIN chunk is written and 
+     * the returned future completes when all chunks are written. The arena is released as the 
+     * segments are handed to the channel so each segment can be reclaimed as soon as it is 
+     * flushed. The writer can't be written again after this is called and the glTF must not 
+     * be modified until the future completes, but a new writer can be built while the file 
+     * is still being written. reset() waits for the future so a pooled writer is not reused 
+     * while it is being written. This only supports a single buffer.
+     * @param channel The channel is not closed.
+     */
+    public CompletableFuture<Void> writeGltfAsync(AsynchronousFileChannel channel) throws Exception {
+        if(this._arenas.size() > 1) {
+            throw new IllegalStateException("GLB with multiple buffers must be written to a File.");
+        }
+        
+        ArenaBase arena = this._arenas.get(0);
+        CompletableFuture<List<ByteBuffer>> segments = CompletableFuture.supplyAsync(arena::getSegments);
+        
+        initScene();
+        initAsset();
+        
+        GlbLayout layout;
+        List<ByteBuffer> images;
+        try {
+            layout = layoutGlb(null);
+        }
+        catch(Exception ex) {
+            // don't release the arena until the segments are no longer being read
+            segments.join();
+            throw ex;
+        }
+        
+        try {
+            images = mapImages(layout._images);
+        }
+        catch(IOException ex) {
+            restoreImages(layout);
+            segments.join();
+            throw ex;
+        }
+        
+        // the BIN chunk only depends on the layout so it is written while the JSON is serialized
+        CompletableFuture<Long> binWrite = segments.thenCompose(bin -> {
+            arena.release();
+            List<ByteBuffer> chunk = new ArrayList<>(bin);
+            chunk.addAll(images);
+            return AsyncChannelWriter.write(channel, chunk, layout._headLength);
+        });
+        
+        GlTF gltf = this._gltf;
+        CompletableFuture<Long> headWrite = CompletableFuture
+                .supplyAsync(() -> serializeHead(gltf, layout))
+                .thenCompose(head -> AsyncChannelWriter.write(channel, head, 0));
+        
+        CompletableFuture<Void> write = CompletableFuture.allOf(headWrite, binWrite);
+        this._pendingWrite = write;
+        return write;
+    }
+    
+    /**
+     * Serialize the GLB header and the JSON chunk into buffers. The JSON is kept in memory 
+     * because an asynchronous channel has no stream. The image references are restored 
+     * when the JSON has been serialized.
+     */
+    private List<ByteBuffer> serializeHead(GlTF gltf, GlbLayout layout) {
+        try {
+            ByteArrayOutputStream jsonStream = new ByteArrayOutputStream((int)layout._jsonLength);
+            long jsonSize = writeJson(gltf, jsonStream, false);
+            checkJsonLength(layout, jsonSize);
+            
+            List<ByteBuffer> head = new ArrayList<>();
+            head.add(layout._header);
+            head.add(ByteBuffer.wrap(jsonStream.toByteArray()));
+            head.addAll(layout._binHead);
+            return head;
+        }
+        catch(IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        finally {
+            restoreImages(layout);
+        }
+    }
+    
+    /**
+     * Write the JSON to a gltf file and the buffers with embedded images to .bin files 
+     * referenced by the gltf. The binary data is written from the arena segments without
+     * being encoded.
+     */
+    private void writeSeparate(File outFile) throws Exception {
+        initScene();
+        initAsset();
+        
+        GlbLayout layout = embedImages(getBaseName(outFile.toPath()), false);
+        try {
+            long _start = System.nanoTime();
+            writeBinFiles(outFile.toPath(), layout, 0);
+            this._stats.endPhase(Phase.IO, _start);
+            
+            try (OutputStream os = new FileOutputStream(outFile))
+            {
+                writeJson(this._gltf, os, true);
+            }
+        }
+        finally {
+            restoreImages(layout);
         }
     }
     
+    /**
+     * Write buffers to the .bin files named by their URIs. Images are appended to the 
+     * first buffer.
+     * @param outPath The gltf or glb file the .bin files are written next to.
+     * @param startIdx Index of the first buffer to write.
+     */
+    private void writeBinFiles(Path outPath, GlbLayout layout, int startIdx) throws IOException {
+        List<Buffer> buffers = this._gltf.getBuffers();
+        
+        for(int idx = startIdx; idx < this._arenas.size(); idx++) {
+            Buffer buffer = buffers.get(idx);
+            Path binPath = outPath.resolveSibling(buffer.getUri());
+            
+            try (FileChannel channel = FileChannel.open(binPath, 
+                    StandardOpenOption.CREATE, 
+                    StandardOpenOption.TRUNCATE_EXISTING, 
+                    StandardOpenOption.WRITE))
+            {
+                writeFully(channel, this._arenas.get(idx).getSegments());
+                if(idx == 0) {
+                    transferImages(layout._images, channel);
+                }
+            }
+            
+            LOG.debug("Wrote buffer[{}]: {} <{} bytes>", idx, binPath, buffer.getByteLength());
+        }
+    }
+    
+    /**
+     * Embed the images in the first buffer after the primitives and set the glTF buffers.
+     * Only the sizes of the image files are read here. Images that refer to the same file 
+     * share a BufferView.
+     * @param baseName Name used for the buffer URIs.
+     * @param isBinary Indicates if the first buffer is the BIN chunk of a GLB.
+     */
+    private GlbLayout embedImages(String baseName, boolean isBinary) throws Exception {
+        GlbLayout layout = new GlbLayout();
+        Buffer gltfBuffer = initBuffers(baseName, isBinary).get(0);
+        layout._bufferViewCount = this._bufferViews.size();
+        
+        try {
+            long binLength = this._arenas.get(0).size();
+            Map<Path, Integer> imageViews = new HashMap<>();
+            Path basePath = Paths.get(this._basePath).toAbsolutePath();
+            
+            for(Image image : getImages()) {
+                Path imagePath = IO.makeAbsolute(basePath, image.getUri()).normalize();
+                
+                Integer bufferViewIdx = imageViews.get(imagePath);
+                if(bufferViewIdx == null) {
+                    ImageSource source = new ImageSource(imagePath, Files.size(imagePath));
+                    bufferViewIdx = addImageView(image.getName(), binLength, source._size);
+                    imageViews.put(imagePath, bufferViewIdx);
+                    layout._images.add(source);
+                    binLength += source._size + source._padding;
+                }
+                
+                layout._embedded.add(image);
+                layout._imageUris.add(image.getUri());
+                embedImage(image, imagePath, bufferViewIdx);
+            }
+            
+            gltfBuffer.setByteLength((int)binLength);
+            this._gltf.setBufferViews(this._bufferViews.getList());
+            layout._binLength = binLength;
+            recordBufferViews();
+            return layout;
+        }
+        catch(Exception ex) {
+            restoreImages(layout);
+            throw ex;
+        }
+    }
+    
+    /**
+     * Embed the images and measure the JSON chunk. The JSON is not kept and will be 
+     * serialized again when it is written. This is only needed for targets that can't seek 
+     * back to the header.
+     * @param baseName Name used for the URIs of buffers after the first.
+     */
+    private GlbLayout layoutGlb(String baseName) throws Exception {
+        GlbLayout layout = embedImages(baseName, true);
+        
+        try {
+            long _start = System.nanoTime();
+            long jsonSize = GltfJsonEmitter.measure(this._gltf);
+            this._stats.endPhase(Phase.JSON, _start);
+            setJsonLength(layout, jsonSize);
+            return layout;
+        }
+        catch(Exception ex) {
+            restoreImages(layout);
+            throw ex;
+        }
+    }
+    
+    /**
+     * Create the GLB header and the BIN chunk header for a JSON chunk of the given size.
+     */
+    private static void setJsonLength(GlbLayout layout, long jsonSize) throws Exception {
+        long binLength = layout._binLength;
+        if(jsonSize > ArenaBase.MAX_BUFFER_SIZE - ArenaBase.ALIGNMENT) {
+            throw new Exception("GLB JSON chunk is too large: " + jsonSize);
+        }
+        int jsonLength = ArenaBase.align((int)jsonSize);
+        
+        long headLength = GLB_HEADER_SIZE 
+                + GLB_CHUNK_HEADER_SIZE + jsonLength 
+                + GLB_CHUNK_HEADER_SIZE;
+        long totalLength = headLength + binLength;
+        if(totalLength > 0xFFFFFFFFL) {
+            throw new Exception("GLB size exceeds 4 GB: " + totalLength);
+        }
+        
+        ByteBuffer header = ByteBuffer.allocate(GLB_HEADER_SIZE + GLB_CHUNK_HEADER_SIZE);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(GLB_MAGIC);
+        header.putInt(GLB_VERSION);
+        header.putInt((int)totalLength);
+        header.putInt(jsonLength);
+        header.putInt(GLB_CHUNK_JSON);
+        header.flip();
+        
+        // the JSON chunk is padded with spaces
+        ByteBuffer jsonPadding = ByteBuffer.allocate(jsonLength - (int)jsonSize);
+        while(jsonPadding.hasRemaining()) {
+            jsonPadding.put((byte)' ');
+        }
+        jsonPadding.flip();
+        
+        ByteBuffer binHeader = ByteBuffer.allocate(GLB_CHUNK_HEADER_SIZE);
+        binHeader.order(ByteOrder.LITTLE_ENDIAN);
+        binHeader.putInt((int)binLength);
+        binHeader.putInt(GLB_CHUNK_BIN);
+        binHeader.flip();
+        
+        layout._header = header;
+        layout._jsonLength = jsonSize;
+        layout._binHead.add(jsonPadding);
+        layout._binHead.add(binHeader);
+        layout._headLength = headLength;
+        layout._totalLength = totalLength;
+        
+        LOG.debug("GLB layout: json=<{} bytes> bin=<{} bytes> total=<{} bytes>", 
+                jsonLength, binLength, totalLength);
+    }
+    
+    /**
+     * Write the GLB header and the JSON chunk. The JSON is streamed to the channel.
+     */
+    private void writeHead(WritableByteChannel channel, GlbLayout layout) throws IOException {
+        writeFully(channel, Collections.singletonList(layout._header));
+        
+        // the stream is not closed because that would close the channel
+        OutputStream os = Channels.newOutputStream(channel);
+        long jsonSize = writeJson(this._gltf, os, false);
+        checkJsonLength(layout, jsonSize);
+        
+        writeFully(channel, layout._binHead);
+    }
+    
+    /**
+     * Write the GLB header and the JSON chunk to a file without measuring the JSON first. 
+     * The header is written with zero lengths and overwritten when the JSON has been 
+     * streamed to the file.
+     */
+    private void writeFileHead(FileChannel channel, GlbLayout layout) throws Exception {
+        long origin = channel.position();
+        writeFully(channel, Collections.singletonList(
+                ByteBuffer.allocate(GLB_HEADER_SIZE + GLB_CHUNK_HEADER_SIZE)));
+        
+        // the stream is not closed because that would close the channel
+        OutputStream os = Channels.newOutputStream(channel);
+        long jsonSize = writeJson(this._gltf, os, false);
+        setJsonLength(layout, jsonSize);
+        
+        ByteBuffer header = layout._header;
+        while(header.hasRemaining()) {
+            channel.write(header, origin + header.position());
+        }
+        writeFully(channel, layout._binHead);
+    }
+    
+    /**
+     * Check that the JSON has the length that was measured for the layout. A different 
+     * length means the glTF was changed and the BIN chunk is in the wrong place.
+     */
+    private static void checkJsonLength(GlbLayout layout, long jsonSize) {
+        if(jsonSize != layout._jsonLength) {
+            String msg = String.format("JSON changed while writing: expected=%d actual=%d", 
+                    layout._jsonLength, jsonSize);
+            throw new IllegalStateException(msg);
+        }
+    }
+    
+    /**
+     * Restore image references so the writer can still be used for gltf output.
+     */
+    private void restoreImages(GlbLayout layout) {
+        for(int idx = 0; idx < layout._embedded.size(); idx++) {
+            Image image = layout._embedded.get(idx);
+            image.setUri(layout._imageUris.get(idx));
+            image.setBufferView(null);
+            image.setMimeType(null);
+        }
+        
+        this._bufferViews.truncate(layout._bufferViewCount);
+    }
+    
+    /**
+     * Write all buffers to the channel using gathering writes when possible.
+     */
+    private static void writeFully(WritableByteChannel channel, List<ByteBuffer> buffers) 
+            throws IOException {
+        if(channel instanceof GatheringByteChannel) {
+            GatheringByteChannel gathering = (GatheringByteChannel)channel;
+            ByteBuffer[] array = buffers.toArray(new ByteBuffer[buffers.size()]);
+            
+            int offset = 0;
+            while(offset < array.length) {
+                gathering.write(array, offset, array.length - offset);
+                while(offset < array.length && !array[offset].hasRemaining()) {
+                    offset++;
+                }
+            }
+            return;
+        }
+        
+        for(ByteBuffer buffer : buffers) {
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+    
+    private List<Image> getImages() {
+        List<Image> images = this._gltf.getImages();
+        if(images == null) {
+            return Collections.emptyList();
+        }
+        return images;
+    }
+    
+    /**
+     * Add a BufferView for an image file in the first buffer.
+     * @param byteOffset Location of the image within the BIN chunk.
+     * @return index of the BufferView
+     */
+    private int addImageView(String name, long byteOffset, long size) {
+        BufferView bufferView = new BufferView();
+        int bufferViewIdx = this._bufferViews.add(bufferView);
+        bufferView.setBuffer(0);
+        bufferView.setByteOffset((int)byteOffset);
+        bufferView.setByteLength((int)size);
+        bufferView.setName(name);
+        return bufferViewIdx;
+    }
+    
+    /** Bytes read from an image for guessing the MIME type when the URI has no extension. */
+    private static final int IMAGE_HEADER_SIZE = 1024;
+    
+    /**
+     * Reference the image with a BufferView instead of its URI.
+     * @param image Image with a URI that will be replaced.
+     * @param imagePath Location of the image file.
+     * @param bufferViewIdx BufferView containing the image data.
+     */
+    private void embedImage(Image image, Path imagePath, int bufferViewIdx) throws IOException {
+        String uri = image.getUri();
+        
+        ByteBuffer header = ByteBuffer.allocate(IMAGE_HEADER_SIZE);
+        try (FileChannel imageChannel = FileChannel.open(imagePath, StandardOpenOption.READ)) {
+            int count = 0;
+            while(header.hasRemaining() && count >= 0) {
+                count = imageChannel.read(header);
+            }
+        }
+        header.flip();
+        
+        image.setBufferView(bufferViewIdx);
+        image.setMimeType(MimeTypes.guessImageMimeTypeString(uri, header));
+        image.setUri(null);
+        
+        LOG.debug("Image[{}]: bufferView=<{}>", uri, bufferViewIdx);
+    }
+    
+    /**
+     * Copy image files to the channel at its current position without loading them into 
+     * the heap. Each image is followed by its padding.
+     */
+    private static void transferImages(List<ImageSource> images, WritableByteChannel channel) 
+            throws IOException {
+        for(ImageSource image : images) {
+            try (FileChannel imageChannel = FileChannel.open(image._path, StandardOpenOption.READ)) {
+                long position = 0;
+                while(position < image._size) {
+                    long count = imageChannel.transferTo(position, image._size - position, channel);
+                    if(count <= 0) {
+                        throw new IOException("Image file changed while writing: " + image._path);
+                    }
+                    position += count;
+                }
+            }
+            
+            writeFully(channel, Collections.singletonList(ByteBuffer.allocate(image._padding)));
+            LOG.debug("Transferred image: {} <{} bytes>", image._path, image._size);
+        }
+    }
+    
+    /**
+     * Map the image files so they can be written without loading them into the heap. 
+     * Each image is followed by its padding.
+     */
+    private static List<ByteBuffer> mapImages(List<ImageSource> images) throws IOException {
+        List<ByteBuffer> result = new ArrayList<>();
+        for(ImageSource image : images) {
+            try (FileChannel imageChannel = FileChannel.open(image._path, StandardOpenOption.READ)) {
+                result.add(imageChannel.map(FileChannel.MapMode.READ_ONLY, 0, image._size));
+            }
+            result.add(ByteBuffer.allocate(image._padding));
+        }
+        return result;
+    }
+    
     private void writeEmbedded(DefaultGltfModel gltfModel, OutputStream os) throws IOException {
         GltfAssetV2 embeddedAsset = GltfAssetsV2.createEmbedded(gltfModel);
         GlTF embeddedGltf = embeddedAsset.getGltf();
@@ -303,11 +1436,67 @@ public class MeshGltfWriter {
         embeddedGltf.setExtensionsRequired(this._gltf.getExtensionsRequired());
         embeddedGltf.setAsset(this._gltf.getAsset());
 
-        GltfWriter gltfWriter = new GltfWriter();
-        gltfWriter.write(embeddedGltf, os);
+        writeJson(embeddedGltf, os, true);
     }
     
-    private GltfAssetV2 newGltfAsset() throws Exception {
+    private long writeJson(GlTF _gltf, OutputStream _os, boolean _isIndenting) throws IOException {
+        long _start = System.nanoTime();
+        long _size = GltfJsonEmitter.write(_gltf, _os, _isIndenting);
+        this._stats.endPhase(Phase.JSON, _start);
+        return _size;
+    }
+    
+    /**
+     * Record the stored size of each BufferView in the stats.
+     */
+    private void recordBufferViews() {
+        this._stats.clearBufferViews();
+        for(BufferView _bufferView : this._bufferViews.getList()) {
+            long _bytes = _bufferView.getByteLength();
+            Map<String, Object> _extensions = _bufferView.getExtensions();
+            if(_extensions != null 
+                    && _extensions.get(MeshoptCompression.EXTENSION) instanceof BufferViewMeshoptCompression) {
+                _bytes = ((BufferViewMeshoptCompression)_extensions.get(MeshoptCompression.EXTENSION))
+                        .getByteLength();
+            }
+            this._stats.addBufferView(_bufferView.getName(), _bytes);
+        }
+    }
+    
+    /**
+     * Assign the added objects to the GlTF and the nodes to the default Scene.
+     */
+    private void initScene() {
+        syncLists();
+        
+        List<Integer> rangeList = IntStream
+                .range(0, this._nodes.size())
+                .boxed()
+                .collect(Collectors.toList());
+        this._topScene.setNodes(rangeList);
+        this._gltf.setScene(0);
+    }
+    
+    /**
+     * Assign the lists of the registries to the GlTF. The lists are not copied. Samplers, 
+     * images and textures that were added to the GlTF directly are kept.
+     */
+    private void syncLists() {
+        this._gltf.setNodes(this._nodes.getList());
+        this._gltf.setMeshes(this._meshes.getList());
+        this._gltf.setMaterials(this._materials.getList());
+        this._gltf.setAccessors(this._accessors.getList());
+        this._gltf.setBufferViews(this._bufferViews.getList());
+        
+        this._samplers.addAll(this._gltf.getSamplers());
+        this._gltf.setSamplers(this._samplers.getList());
+        this._images.addAll(this._gltf.getImages());
+        this._gltf.setImages(this._images.getList());
+        this._textures.addAll(this._gltf.getTextures());
+        this._gltf.setTextures(this._textures.getList());
+    }
+    
+    private void initAsset() {
         Asset _asset = new Asset();
         this._gltf.setAsset(_asset);
         _asset.setVersion("2.0");
@@ -316,31 +1505,78 @@ public class MeshGltfWriter {
         _asset.setExtras(this._metaParams);
         
         this._metaParams.forEach((_k, _v) -> LOG.debug("attribute[{}] = {}", _k, _v));
+    }
+    
+    private GltfAssetV2 newGltfAsset() throws Exception {
+        initAsset();
+        
+        // add buffers to glTF
+        List<Buffer> _buffers = initBuffers("buffer", true);
+        GltfAssetV2 _gltfAsset = new GltfAssetV2(this._gltf, this._arenas.get(0).toByteBuffer());
         
-        // add buffer to glTF
-        Buffer _gltfBuffer = getGltfBuffer();
-        this._gltf.addBuffers(_gltfBuffer);
+        // buffers after the first are resolved from the arenas
+        Map<String,ByteBuffer> _bufferDatas = new HashMap<>();
+        for(int _idx = 1; _idx < this._arenas.size(); _idx++) {
+            _bufferDatas.put(_buffers.get(_idx).getUri(), this._arenas.get(_idx).toByteBuffer());
+        }
+        GltfReferenceResolver.resolveAll(_gltfAsset.getBufferReferences(), _bufferDatas::get);
         
-        GltfAssetV2 _gltfAsset = new GltfAssetV2(this._gltf, this._byteBuffer);
         resolveImages(_gltfAsset);
         
         return _gltfAsset;
     }
     
-    private Buffer getGltfBuffer() throws Exception {
-        // flip the buffer for read
-        this._byteBuffer.flip();
-        int _totalSize = this._byteBuffer.remaining();
-        if(_totalSize <= 0) {
+    /**
+     * Create a glTF buffer for each arena and add them to the GlTF.
+     * @param _baseName Name used for the buffer URIs. This can be null if there is a single buffer.
+     * @param _isBinary Indicates if the first buffer has no URI because it is stored as binary data.
+     */
+    private List<Buffer> initBuffers(String _baseName, boolean _isBinary) throws Exception {
+        if(this._arenas.get(0).isEmpty()) {
             throw new Exception("glTF buffer has no data to write.");
         }
         
-        // add buffer to glTF
-        Buffer _gltfBuffer = new Buffer();
-        _gltfBuffer.setByteLength(_totalSize);
-        LOG.debug("Created glTF buffer: size=<{} bytes>", _totalSize);
+        List<Buffer> _buffers = new ArrayList<>(this._arenas.size());
+        for(int _idx = 0; _idx < this._arenas.size(); _idx++) {
+            ArenaBase _arena = this._arenas.get(_idx);
+            
+            Buffer _gltfBuffer = new Buffer();
+            _gltfBuffer.setByteLength((int)_arena.size());
+            if(_idx > 0 || !_isBinary) {
+                _gltfBuffer.setUri(getBufferUri(_baseName, _idx));
+            }
+            
+            _buffers.add(_gltfBuffer);
+            LOG.debug("Created glTF buffer[{}]: size=<{} bytes> capacity=<{} bytes>", 
+                    _idx, _arena.size(), _arena.capacity());
+        }
+        
+        if(this._meshopt != null) {
+            this._meshopt.addFallbackBuffer(this._gltf, _buffers);
+        }
+        if(this._draco != null) {
+            this._draco.addExtension(this._gltf);
+        }
+        if(this._dedup != null) {
+            this._dedup.logStats();
+        }
         
-        return _gltfBuffer;
+        this._gltf.setBuffers(_buffers);
+        return _buffers;
+    }
+    
+    private static String getBufferUri(String _baseName, int _idx) {
+        if(_idx == 0) {
+            return _baseName + ".bin";
+        }
+        return String.format("%s_%d.bin", _baseName, _idx);
+    }
+    
+    private static String getBaseName(Path _path) {
+        if(_path == null) {
+            return null;
+        }
+        return FilenameUtils.getBaseName(_path.getFileName().toString());
     }
 
     private void resolveImages(GltfAssetV2 _gltfAsset) {
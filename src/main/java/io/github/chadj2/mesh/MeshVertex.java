@@ -6,178 +6,169 @@
 
 package io.github.chadj2.mesh;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import javax.vecmath.Point2f;
 import javax.vecmath.Point3f;
+import javax.vecmath.Tuple2f;
+import javax.vecmath.Tuple3f;
 import javax.vecmath.Vector3f;
 import javax.vecmath.Vector4f;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 /**
- * Contains details for a vertex in a 3D mesh.
+ * Handle for a vertex in a 3D mesh. The details of the vertex are kept in the arrays of
+ * the builder that created it so the handle is only needed by callers that don't track
+ * vertices by index.
+ * 
+ * The attributes are read by copying them into a caller's object with getPosition(), 
+ * getTexCoord(Tuple2f) and getColor(Color). Changing that object does not change the vertex 
+ * so setVertex(), setTexCoord() and setColor() must be used instead. The getters without 
+ * arguments are deprecated because they also return copies, so an idiom like 
+ * {@code v.getVertex().y = h} compiles but has no effect.
  * @author Chad Juliano
  */
 public class MeshVertex {
-    
-    private final static Logger LOG = LoggerFactory.getLogger(MeshVertex.class);
 
-    /** 3D location of this vertex */
-    private final Point3f _vertex;
-    
+    private final static float INT_COLOR_SCALE = 1f / 255f;
+
+    /** store containing the details of this vertex */
+    private final VertexStore _store;
+
     /** index to be used in the indices list. */
     private final int _idx;
-    
-    /** position of this vertex within the texture */
-    private Point2f _texCoord = null;
-    
-    /** optional color for this vertex */
-    private Color _color = null;
-    
-    /** list of normals that will be averaged during build() */
-    private List<Vector3f> _normals = new ArrayList<Vector3f>();
-    
-    /** list of tangents that will be averaged during build() */
-    private List<Vector3f> _tangents = new ArrayList<Vector3f>();
-    
-    protected MeshVertex(int _index, Point3f _vertex) {
+
+    MeshVertex(VertexStore _store, int _index) {
+        this._store = _store;
         this._idx = _index;
-        this._vertex = _vertex;
     }
-    
-    @Override 
+
+    @Override
     public String toString() {
-        return String.format("idx=[%d] vtx=(%.6f,%.6f,%.6f) normals<%d>", 
-                this._idx, 
-                this._vertex.x, this._vertex.y, this._vertex.z, 
-                this._normals.size());
+        return String.format("idx=[%d] vtx=(%.6f,%.6f,%.6f) normals<%d>",
+                this._idx,
+                this._store.getX(this._idx), this._store.getY(this._idx), this._store.getZ(this._idx),
+                this._store.getNormalCount(this._idx));
     }
-    
+
     /**
-     * Create copy of a vertex
-     * @param _index Index of new vertex
-     * @param _mv Vertex to copy
+     * Get a copy of the position of this vertex.
+     * @deprecated Changing the returned point does not change the vertex. Use 
+     * {@link #getPosition(Tuple3f)} and {@link #setVertex(Tuple3f)}.
      */
-    protected MeshVertex(int _index, MeshVertex _mv) {
-        this._idx = _index;
-        this._vertex = _mv._vertex;
-        
-        if(_mv._color != null) {
-            this._color = _mv.getColor();
-        }
-        
-        if(_mv._texCoord != null) {
-            this._texCoord = new Point2f(_mv._texCoord);
-        }
-        
-        for(Vector3f _normal : _mv._normals) {
-            this._normals.add(new Vector3f(_normal));
-        }
-        
-        for(Vector3f _tangent : _mv._tangents) {
-            this._tangents.add(new Vector3f(_tangent));
-        }
+    @Deprecated
+    public Point3f getVertex() { return this._store.newPosition(this._idx); }
+
+    /**
+     * Copy the position of this vertex.
+     * @param _out Tuple that receives the position.
+     * @return the tuple that was passed in
+     */
+    public <T extends Tuple3f> T getPosition(T _out) {
+        this._store.getPosition(this._idx, _out);
+        return _out;
     }
-    
+
     /**
-     * Get the position of this vertex.
+     * Replace the position of this vertex. The transform of the builder is not applied.
      */
-    public Point3f getVertex() { return this._vertex; }
-    
+    public void setVertex(Tuple3f _vertex) {
+        this._store.setPosition(this._idx, _vertex.x, _vertex.y, _vertex.z);
+    }
+
     /**
      * Get the index of this vertex for use in TriangleIndices.
      */
     public int getIndex() { return this._idx; }
-    
+
     /**
-     * Get the vertex color.
+     * Get a copy of the vertex color. The color is stored with 8 bits per component.
      * @return null if no color
+     * @deprecated Changing the returned color does not change the vertex. Use 
+     * {@link #getColor(Color)} and {@link #setColor(Color)}.
+     */
+    @Deprecated
+    public Color getColor() {
+        return getColor(new Color());
+    }
+
+    /**
+     * Copy the vertex color. The color is stored with 8 bits per component so this is the 
+     * quantized value and not the Color that was set.
+     * @param _out Color that receives the components.
+     * @return the color that was passed in or null if the vertex has no color
      */
-    public Color getColor() { return this._color; }
-    
+    public Color getColor(Color _out) {
+        if(!this._store.hasColor(this._idx)) {
+            return null;
+        }
+        _out.set(
+                this._store.getColor(this._idx, 0) * INT_COLOR_SCALE,
+                this._store.getColor(this._idx, 1) * INT_COLOR_SCALE,
+                this._store.getColor(this._idx, 2) * INT_COLOR_SCALE,
+                this._store.getColor(this._idx, 3) * INT_COLOR_SCALE);
+        return _out;
+    }
+
     /**
      * Set the vertex color.
      */
-    public void setColor(Color _color) {  this._color = _color; }
-    
+    public void setColor(Color _color) { this._store.setColor(this._idx, _color); }
+
     /**
-     * Get the texture coordinate of this vertex.
+     * Get a copy of the texture coordinate of this vertex.
      * @return null if no coordinate
+     * @deprecated Changing the returned point does not change the vertex. Use 
+     * {@link #getTexCoord(Tuple2f)} and {@link #setTexCoord(Point2f)}.
+     */
+    @Deprecated
+    public Point2f getTexCoord() { return this._store.newTexCoord(this._idx); }
+
+    /**
+     * Copy the texture coordinate of this vertex.
+     * @param _out Tuple that receives the coordinate.
+     * @return the tuple that was passed in or null if the vertex has no coordinate
      */
-    public Point2f getTexCoord() { return this._texCoord; }
-    
+    public <T extends Tuple2f> T getTexCoord(T _out) {
+        if(!this._store.hasTexCoord(this._idx)) {
+            return null;
+        }
+        _out.set(this._store.getU(this._idx), this._store.getV(this._idx));
+        return _out;
+    }
+
     /**
      * Set the texture coordinate of this vertex.
      */
-    public void setTexCoord(Point2f _coord) { this._texCoord = _coord; }
-    
+    public void setTexCoord(Point2f _coord) {
+        if(_coord == null) {
+            this._store.removeTexCoord(this._idx);
+        }
+        else {
+            this._store.setTexCoord(this._idx, _coord.x, _coord.y);
+        }
+    }
+
     /**
      * Add a neighboring normal for use when calculating the average normal.
      */
-    protected void addNormal(Vector3f _vec) { this._normals.add(_vec); }
-    
+    protected void addNormal(Vector3f _vec) { this._store.addNormal(this._idx, _vec); }
+
     /**
      * Add a neighboring tangent for use when calculating the average normal.
      */
-    protected void addTangent(Vector3f _vec) { this._tangents.add(_vec); }
-    
-    
+    protected void addTangent(Vector3f _vec) { this._store.addTangent(this._idx, _vec); }
+
     /**
      * Calculate the average of the normal vectors.
      */
     protected Vector3f getNormal() throws Exception {
-        if(this._normals.size() == 0) {
-            LOG.warn("Vertex has no normals: {}", this.getIndex());
-            return newFakeNormal();
-        }
-        
         Vector3f _avgNormal = new Vector3f();
-
-        // calculate an average normal
-        for(Vector3f _normal : this._normals) {
-            _avgNormal.add(_normal);
-        }
-        
-        _avgNormal.normalize();
-        
-        if(Float.isNaN(_avgNormal.x) || Float.isNaN(_avgNormal.y) || Float.isNaN(_avgNormal.z)) {
-            LOG.warn("Could not calculate average normal for vertex: {}", this.getIndex());
-            return newFakeNormal();
-        }
-        
+        this._store.getNormal(this._idx, _avgNormal);
         return _avgNormal;
     }
-    
-    private static Vector3f newFakeNormal() {
-        Vector3f normal = new Vector3f(1f, 1f, 1f);
-        normal.normalize();
-        return normal;
-    }
-    
+
     /**
-     * Calculate the average of the tangent vectors. 
+     * Calculate the average of the tangent vectors.
      */
     protected Vector4f getTangent() throws Exception {
-        if(this._normals.size() == 0) {
-            throw new Exception("No tangents to average for vertex: " + this._idx);
-        }
-        
-        Vector3f _avgTangent = new Vector3f();
-        
-        // calculate an average tangent
-        for(Vector3f _tangent : this._tangents) {
-            _avgTangent.add(_tangent);
-        }
-        
-        _avgTangent.normalize();
-        Vector4f _tangent = new Vector4f(
-                _avgTangent.x, 
-                _avgTangent.y, 
-                _avgTangent.z, 
-                1f);
-        return _tangent;
+        return this._store.getTangent(this._idx);
     }
 }
@@ -0,0 +1,82 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded pool of writers that can be shared by threads that write a scene per request.
+ * Writers are reset when they are returned so that their buffer capacity is reused. The
+ * pool never blocks: a new writer is created when none are idle and a returned writer is
+ * dropped when the pool is full.
+ * @author Chad Juliano
+ */
+public class MeshWriterPool {
+
+    private final static Logger LOG = LoggerFactory.getLogger(MeshWriterPool.class);
+
+    /** Writers that are ready to be borrowed. */
+    private final BlockingQueue<MeshGltfWriter> _idle;
+
+    /** Creates writers when the pool is empty. */
+    private final Supplier<MeshGltfWriter> _factory;
+
+    /**
+     * @param _maxIdle Maximum number of writers kept in the pool.
+     */
+    public MeshWriterPool(int _maxIdle) {
+        this(_maxIdle, MeshGltfWriter::new);
+    }
+
+    /**
+     * @param _maxIdle Maximum number of writers kept in the pool.
+     * @param _factory Creates writers when the pool is empty. This can be used to configure
+     * the arena of new writers.
+     */
+    public MeshWriterPool(int _maxIdle, Supplier<MeshGltfWriter> _factory) {
+        this._idle = new ArrayBlockingQueue<>(_maxIdle);
+        this._factory = _factory;
+    }
+
+    /**
+     * Get an idle writer or create a new one.
+     */
+    public MeshGltfWriter borrow() {
+        MeshGltfWriter _writer = this._idle.poll();
+        if(_writer == null) {
+            _writer = this._factory.get();
+            LOG.debug("Created pooled writer");
+        }
+        return _writer;
+    }
+
+    /**
+     * Reset a writer and return it to the pool. The writer must not be used after this. If an
+     * asynchronous write of the writer is still running the writer is returned when the write 
+     * completes so this does not block.
+     * @return Future that completes when the writer was returned to the pool or dropped.
+     */
+    public CompletableFuture<Void> release(MeshGltfWriter _writer) {
+        return _writer.getPendingWrite().thenRun(() -> {
+            _writer.reset();
+            if(!this._idle.offer(_writer)) {
+                LOG.debug("Pool is full: dropping writer");
+            }
+        });
+    }
+
+    /**
+     * Get the number of writers in the pool.
+     */
+    public int getIdleCount() { return this._idle.size(); }
+}
@@ -6,11 +6,13 @@
 
 package io.github.chadj2.mesh;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 
+import javax.vecmath.Matrix4f;
 import javax.vecmath.Point3f;
 import javax.vecmath.Tuple3f;
+import javax.vecmath.Vector3f;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,9 +20,12 @@ import org.slf4j.LoggerFactory;
 import de.javagl.jgltf.impl.v2.Mesh;
 import de.javagl.jgltf.impl.v2.MeshPrimitive;
 import de.javagl.jgltf.impl.v2.Node;
+import io.github.chadj2.mesh.WriterStats.Phase;
 import io.github.chadj2.mesh.buffer.BufferVecFloat3;
+import io.github.chadj2.mesh.buffer.BufferVecShort3;
 import io.github.chadj2.mesh.buffer.TriangleIndices;
 import io.github.chadj2.mesh.buffer.VertexColors;
+import io.github.chadj2.mesh.jfr.MeshBuildEvent;
 
 /**
  * Base class for constructing glTF Mesh geometry.
@@ -45,8 +50,17 @@ public class TopologyBuilder extends BaseBuilder {
         TRIANGLE_FAN
     }
     
-    /** List of vertices being added to this mesh */
-    protected final List<MeshVertex> _vertexList = new ArrayList<MeshVertex>();
+    private static final Matrix4f IDENTITY = new Matrix4f();
+    
+    static {
+        IDENTITY.setIdentity();
+    }
+    
+    /** Vertices being added to this mesh */
+    final VertexStore _vertexStore = new VertexStore();
+    
+    /** Reused to transform vertices. */
+    private final Point3f _point = new Point3f();
     
     /** Topology mode for MeshPrimitive. This indicates the type of data that will be output by the builder
      * and it can't be altered at runtime. */
@@ -58,6 +72,10 @@ public class TopologyBuilder extends BaseBuilder {
     /** maximum bounds of the vertices. */
     protected Tuple3f _maxBounds;
     
+    /** Indicates if the node of the mesh is created by this builder so that it can have a 
+     * transform for quantized positions. */
+    private boolean _isNodeOwner = false;
+    
     /**
      * @param _name Name of the mesh that will be populated in the glTF.
      * @param _topologyMode Indicates how buffers are interpreted by glTF.
@@ -70,12 +88,17 @@ public class TopologyBuilder extends BaseBuilder {
     /**
      * Returns true if no triangles have been added.
      */
-    public boolean isEmpty() { return this._vertexList.size() == 0; }
+    public boolean isEmpty() { return this._vertexStore.size() == 0; }
+
+    /**
+     * Get the number of vertices that have been added.
+     */
+    public int getVertexCount() { return this._vertexStore.size(); }
 
     /**
      * Clear out any added geometry.
      */
-    public void clear() { this._vertexList.clear(); }
+    public void clear() { this._vertexStore.clear(); }
     
     
     /**
@@ -96,28 +119,125 @@ public class TopologyBuilder extends BaseBuilder {
      * @throws Exception 
      */
     public MeshVertex newVertex(Tuple3f _vertex) throws Exception {
-        Point3f _newVertex = new Point3f(_vertex);
-
-        if(Float.isNaN(_vertex.x) || Float.isNaN(_vertex.y) || Float.isNaN(_vertex.z)) {
-            throw new Exception("Can't add vertex with NaN: " + _vertex.toString());
+        int _idx = addVertex(_vertex.x, _vertex.y, _vertex.z);
+        return new MeshVertex(this._vertexStore, _idx);
+    }
+    
+    /**
+     * Create a new vertex and apply the current offset and scale without allocating a 
+     * MeshVertex.
+     * @return Index of the vertex that is referenced when adding triangles.
+     * @see #newVertex
+     */
+    public int addVertex(float _x, float _y, float _z) throws Exception {
+        if(!Float.isFinite(_x) || !Float.isFinite(_y) || !Float.isFinite(_z)) {
+            throw new Exception("Can't add vertex with NaN or infinity: " + new Point3f(_x, _y, _z).toString());
         }
         
         // apply offset and scale
+        Point3f _newVertex = this._point;
+        _newVertex.set(_x, _y, _z);
         getTransform().transform(_newVertex);
         
-        if(Float.isNaN(_newVertex.x) || Float.isNaN(_newVertex.y) || Float.isNaN(_newVertex.z)) {
-            throw new Exception("Transformed vertex has NaN: " + _newVertex.toString());
+        if(!Float.isFinite(_newVertex.x) || !Float.isFinite(_newVertex.y) || !Float.isFinite(_newVertex.z)) {
+            throw new Exception("Transformed vertex has NaN or infinity: " + _newVertex.toString());
+        }
+        
+        if(this._vertexStore.size() >= TriangleIndices.MAX_INDEX) {
+            String msg = String.format("Trangle idex cannot exceed %d", TriangleIndices.MAX_INDEX);
+            throw new Exception(msg);
         }
         
-        MeshVertex _meshVertex = new MeshVertex(this._vertexList.size(), _newVertex);
+        return this._vertexStore.add(_newVertex.x, _newVertex.y, _newVertex.z);
+    }
+    
+    /**
+     * Add vertices from the remaining X/Y/Z coordinates of a buffer and apply the current 
+     * offset and scale. The coordinates are validated and transformed in a single pass and 
+     * if the transform is identity they are copied in bulk. The buffer position is advanced
+     * past the coordinates. If any coordinate is not valid then no vertices are added.
+     * @param _xyz Packed coordinates with a multiple of 3 remaining values.
+     * @return Index of the first vertex.
+     * @see #addVertex
+     */
+    public int addVertices(FloatBuffer _xyz) throws Exception {
+        if(_xyz.remaining() % 3 != 0) {
+            String msg = String.format("Coordinates must be a multiple of 3: %d", _xyz.remaining());
+            throw new IllegalArgumentException(msg);
+        }
         
-        if(this._vertexList.size() >= TriangleIndices.MAX_INDEX) {
+        int _count = _xyz.remaining() / 3;
+        if(this._vertexStore.size() + _count > TriangleIndices.MAX_INDEX) {
             String msg = String.format("Trangle idex cannot exceed %d", TriangleIndices.MAX_INDEX);
             throw new Exception(msg);
         }
         
-        this._vertexList.add(_meshVertex);
-        return _meshVertex;
+        Matrix4f _transform = getTransform();
+        if(_transform.equals(IDENTITY)) {
+            _transform = null;
+        }
+        return this._vertexStore.addAll(_xyz, _transform);
+    }
+    
+    /**
+     * Add vertices from an array of X/Y/Z coordinates.
+     * @see #addVertices(FloatBuffer)
+     */
+    public int addVertices(float[] _xyz) throws Exception {
+        return addVertices(FloatBuffer.wrap(_xyz));
+    }
+    
+    /**
+     * Set the colors of consecutive vertices from the remaining values of a buffer. The 
+     * colors are in the sRGB color space packed as ARGB values and are converted the same 
+     * way as {@link Color#Color(int)}. The buffer position is advanced past the colors.
+     * @param _firstIdx Index of the first vertex as returned by addVertices().
+     */
+    public void setVertexColors(int _firstIdx, IntBuffer _argb) { 
+        this._vertexStore.setColors(_firstIdx, _argb); 
+    }
+    
+    /**
+     * Set the colors of consecutive vertices from an array of packed ARGB values.
+     * @see #setVertexColors(int, IntBuffer)
+     */
+    public void setVertexColors(int _firstIdx, int[] _argb) { 
+        setVertexColors(_firstIdx, IntBuffer.wrap(_argb)); 
+    }
+    
+    /**
+     * Set the texture coordinates of consecutive vertices from the remaining U/V values of 
+     * a buffer. The buffer position is advanced past the coordinates. Nothing is set if a 
+     * coordinate is NaN or infinity.
+     * @param _firstIdx Index of the first vertex as returned by addVertices().
+     */
+    public void setVertexTexCoords(int _firstIdx, FloatBuffer _uv) {
+        if(_uv.remaining() % 2 != 0) {
+            String msg = String.format("Texture coordinates must be a multiple of 2: %d", _uv.remaining());
+            throw new IllegalArgumentException(msg);
+        }
+        this._vertexStore.setTexCoords(_firstIdx, _uv);
+    }
+    
+    /**
+     * Set the texture coordinates of consecutive vertices from an array of U/V values.
+     * @see #setVertexTexCoords(int, FloatBuffer)
+     */
+    public void setVertexTexCoords(int _firstIdx, float[] _uv) {
+        setVertexTexCoords(_firstIdx, FloatBuffer.wrap(_uv));
+    }
+    
+    /**
+     * Set the color of a vertex added with addVertex().
+     * @param _color Color or null to remove it.
+     */
+    public void setVertexColor(int _idx, Color _color) { this._vertexStore.setColor(_idx, _color); }
+    
+    /**
+     * Set the texture coordinate of a vertex added with addVertex().
+     */
+    public void setVertexTexCoord(int _idx, float _u, float _v) { 
+        this._vertexStore.setTexCoord(_idx, _u, _v); 
     }
     
     /**
@@ -130,9 +250,8 @@ public class TopologyBuilder extends BaseBuilder {
             return null;
         }
         
-        MeshVertex _meshVertex = new MeshVertex(this._vertexList.size(), _vertex);
-        this._vertexList.add(_meshVertex);
-        return _meshVertex;
+        int _idx = this._vertexStore.copy(_vertex.getIndex());
+        return new MeshVertex(this._vertexStore, _idx);
     }
 
     /**
@@ -142,12 +261,28 @@ public class TopologyBuilder extends BaseBuilder {
      * @return Node containing the mesh.
      */
     public Node build(MeshGltfWriter _geoWriter) throws Exception {
-        int _meshIdx = buildMesh(_geoWriter);
+        int _meshIdx;
+        this._isNodeOwner = true;
+        try {
+            _meshIdx = buildMesh(_geoWriter);
+        }
+        finally {
+            this._isNodeOwner = false;
+        }
         
         Node _node = new Node();
         _node.setMesh(_meshIdx);
         _node.setName(this.getName() + "-node");
         
+        if(this._vertices instanceof BufferVecShort3) {
+            // restore the quantized positions
+            BufferVecShort3 _positions = (BufferVecShort3)this._vertices;
+            Tuple3f _offset = _positions.getOffset();
+            float _scale = _positions.getScale();
+            _node.setTranslation(new float[] { _offset.x, _offset.y, _offset.z });
+            _node.setScale(new float[] { _scale, _scale, _scale });
+        }
+        
         _geoWriter.addNode(_node);
         return _node;
     }
@@ -159,18 +294,42 @@ public class TopologyBuilder extends BaseBuilder {
      * @throws Exception
      */
     public int buildMesh(MeshGltfWriter _geoWriter) throws Exception {
+        MeshBuildEvent _event = new MeshBuildEvent();
+        _event.begin();
+        
         MeshPrimitive _meshPrimitive = new MeshPrimitive();
         _meshPrimitive.setMode(this._topologyMode.ordinal());
 
         Mesh _mesh = new Mesh();
-        _geoWriter.getGltf().addMeshes(_mesh);
-        int _meshIdx = _geoWriter.getGltf().getMeshes().indexOf(_mesh);
+        int _meshIdx = _geoWriter.addMesh(_mesh);
         
         //this._name = String.format("%s", this.getName());
         _mesh.setName(this.getName() + "-mesh");
         _mesh.addPrimitives(_meshPrimitive);
 
+        _geoWriter.beginMesh();
+        int _vertexCount = this._vertexStore.size();
+        int _indexCount = getIndexCount();
         buildBuffers(_geoWriter, _meshPrimitive);
+        
+        int _accessorCount = 0;
+        if(_meshPrimitive.getAttributes() != null) {
+            _accessorCount = _meshPrimitive.getAttributes().size();
+        }
+        if(_meshPrimitive.getIndices() != null) {
+            _accessorCount++;
+        }
+        _geoWriter.getStats().addMesh(_mesh.getName(), _vertexCount, _indexCount, _accessorCount);
+        
+        _event.end();
+        if(_event.shouldCommit()) {
+            _event.meshName = _mesh.getName();
+            _event.mode = this._topologyMode.name();
+            _event.vertices = _vertexCount;
+            _event.indices = _indexCount;
+            _event.accessors = _accessorCount;
+            _event.commit();
+        }
 
         LOG.debug("New Mesh[{}]: idx=<{}>", _mesh.getName(), _meshIdx);
         this.clear();
@@ -181,35 +340,82 @@ public class TopologyBuilder extends BaseBuilder {
     protected BufferVecFloat3 _vertices = null;
     
     /**
-     * Generate primitive lists from the MeshVertex list and serialize to buffers.
+     * Get the number of indices that will be written by buildBuffers().
+     */
+    protected int getIndexCount() { return 0; }
+    
+    /**
+     * Generate primitive lists from the vertex store and serialize to buffers.
      * @param _geoWriter Instance of writer class.
      * @param _meshPrimitive The glTF section containing serialized buffers.
      */
     protected void buildBuffers(MeshGltfWriter _geoWriter, MeshPrimitive _meshPrimitive) throws Exception {
-        if(this._vertexList.size() == 0) {
+        VertexStore _store = this._vertexStore;
+        if(_store.size() == 0) {
             throw new Exception("No vertices to build!");
         }
         
+        if(_store.getColorCount() > 0 && _store.getColorCount() != _store.size()) {
+            throw new Exception("Each Vertex must have a color");
+        }
+        
+        long _start = System.nanoTime();
         this._vertices = new BufferVecFloat3(this.getName() + "-vertices");
         VertexColors _colors = new VertexColors(this.getName());
 
-        for(MeshVertex _meshVertex : this._vertexList) {
-            this._vertices.add(_meshVertex.getVertex());
+        for(int _idx = 0; _idx < _store.size(); _idx++) {
+            this._vertices.add(_store.getX(_idx), _store.getY(_idx), _store.getZ(_idx));
             
-            Color _color = _meshVertex.getColor();
-            if(_color != null) {
-                _colors.add(_color);
+            if(_store.getColorCount() > 0) {
+                _colors.add((byte)_store.getColor(_idx, 0), (byte)_store.getColor(_idx, 1), 
+                        (byte)_store.getColor(_idx, 2), (byte)_store.getColor(_idx, 3));
             }
         }
-        
-        if(_colors.size() > 0 && _colors.size() != this._vertexList.size()) {
-            throw new Exception("Each Vertex must have a color");
-        }
+        _geoWriter.getStats().endPhase(Phase.INGEST, _start);
         
         // save bounds for later
         this._minBounds = this._vertices.getMin();
         this._maxBounds = this._vertices.getMax();
+        if(_geoWriter.isMeshQuantization()) {
+            this._vertices = quantizePositions(this._vertices);
+        }
         this._vertices.buildAttrib(_geoWriter, _meshPrimitive, "POSITION");
         _colors.build(_geoWriter, _meshPrimitive);
     }
+    
+    /**
+     * Convert the positions to normalized shorts. If this builder creates the node then the
+     * positions are stored relative to the bounds with a uniform scale so that normals are 
+     * not distorted by the node transform. Otherwise they are only quantized if they are 
+     * already in the range [-1, 1].
+     * @return Quantized positions or the original positions if they can't be quantized.
+     */
+    private BufferVecFloat3 quantizePositions(BufferVecFloat3 _positions) {
+        Point3f _offset = new Point3f();
+        float _scale = 1f;
+        
+        if(this._isNodeOwner) {
+            _offset.interpolate(this._minBounds, this._maxBounds, 0.5f);
+            Vector3f _extent = new Vector3f();
+            _extent.sub(this._maxBounds, this._minBounds);
+            _scale = Math.max(_extent.x, Math.max(_extent.y, _extent.z)) / 2f;
+            if(_scale == 0f) {
+                _scale = 1f;
+            }
+        }
+        else {
+            for(Tuple3f _bound : new Tuple3f[] { this._minBounds, this._maxBounds }) {
+                if(Math.abs(_bound.x) > 1f || Math.abs(_bound.y) > 1f || Math.abs(_bound.z) > 1f) {
+                    LOG.debug("Positions of {} can't be quantized without a node", this.getName());
+                    return _positions;
+                }
+            }
+        }
+        
+        BufferVecShort3 _quantized = new BufferVecShort3(this.getName() + "-vertices", _offset, _scale);
+        for(int _idx = 0; _idx < _positions.size(); _idx++) {
+            _quantized.add(_positions.get(_idx));
+        }
+        return _quantized;
+    }
 }
@@ -6,11 +6,9 @@
 
 package io.github.chadj2.mesh;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.nio.IntBuffer;
+import java.util.Arrays;
 
-import javax.vecmath.Point2f;
 import javax.vecmath.Point3f;
 import javax.vecmath.Tuple3f;
 import javax.vecmath.Vector3f;
@@ -21,9 +19,14 @@ import org.slf4j.LoggerFactory;
 import de.javagl.jgltf.impl.v2.Material;
 import de.javagl.jgltf.impl.v2.MeshPrimitive;
 import de.javagl.jgltf.impl.v2.Node;
+import io.github.chadj2.mesh.WriterStats.Phase;
+import io.github.chadj2.mesh.buffer.BufferVecByte3;
 import io.github.chadj2.mesh.buffer.BufferVecFloat2;
 import io.github.chadj2.mesh.buffer.BufferVecFloat3;
+import io.github.chadj2.mesh.buffer.BufferVecUShort2;
+import io.github.chadj2.mesh.buffer.DracoCompression;
 import io.github.chadj2.mesh.buffer.TriangleIndices;
+import io.github.chadj2.mesh.jfr.BuildBuffersEvent;
 
 /**
  * Build 3D Geometry from triangles or squares. Tangents, indices, and normals are automatically
@@ -35,7 +38,18 @@ public class TriangleBuilder extends TopologyBuilder {
     private final static Logger LOG = LoggerFactory.getLogger(TriangleBuilder.class);
     
     /** The indices keep track of connectivity between triangle vertices. */
-    protected final List<Integer> _indicesList = new ArrayList<Integer>();
+    private int[] _indices = new int[256];
+    
+    /** Number of indices that were added. */
+    private int _indexCount = 0;
+    
+    /** Reused to calculate normals and tangents. */
+    private final Point3f _pos0 = new Point3f();
+    private final Point3f _pos1 = new Point3f();
+    private final Point3f _pos2 = new Point3f();
+    private final Vector3f _vec01 = new Vector3f();
+    private final Vector3f _vec21 = new Vector3f();
+    private final Vector3f _normal = new Vector3f();
     
     /** Suppress additions of normal vectors  */
     private boolean _supressNormals = false;
@@ -67,7 +81,15 @@ public class TriangleBuilder extends TopologyBuilder {
     }
     
     @Override
-    public void clear() { this._indicesList.clear(); }
+    public void clear() { clearIndices(); }
+    
+    /**
+     * Remove the triangles while keeping the vertices and their normals.
+     */
+    protected void clearIndices() { this._indexCount = 0; }
+    
+    @Override
+    protected int getIndexCount() { return this._indexCount; }
     
     /**
      * This method should be called when all shapes have added. It will serialize the MeshVertex
@@ -88,37 +110,103 @@ public class TriangleBuilder extends TopologyBuilder {
      * @see TopologyBuilder#newVertex
      */
     public void addTriangle(MeshVertex _vtx0, MeshVertex _vtx1, MeshVertex _vtx2) {
+        addTriangle(_vtx0.getIndex(), _vtx1.getIndex(), _vtx2.getIndex());
+    }
+    
+    /**
+     * Add a 3D triangle specified by the indices of 3 vertices.
+     * @see TopologyBuilder#addVertex
+     */
+    public void addTriangle(int _idx0, int _idx1, int _idx2) {
+        if(!this._supressNormals) {
+            addNormal(_idx0, _idx1, _idx2);
+        }
+        
         // add indices
-        this._indicesList.add(_vtx0.getIndex());
-        this._indicesList.add(_vtx1.getIndex());
-        this._indicesList.add(_vtx2.getIndex());
+        ensureIndexCapacity(3);
+        this._indices[this._indexCount++] = _idx0;
+        this._indices[this._indexCount++] = _idx1;
+        this._indices[this._indexCount++] = _idx2;
+    }
+    
+    /**
+     * Add triangles from the remaining vertex indices of a buffer. The indices are validated
+     * and copied in a single pass before normals are calculated. The buffer position is 
+     * advanced past the indices. If any index is not valid then no triangles are added.
+     * @param _indices Indices of vertices with a multiple of 3 remaining values.
+     * @see TopologyBuilder#addVertices
+     */
+    public void addTriangles(IntBuffer _indices) {
+        if(_indices.remaining() % 3 != 0) {
+            String msg = String.format("Indices must be a multiple of 3: %d", _indices.remaining());
+            throw new IllegalArgumentException(msg);
+        }
+        
+        int _count = _indices.remaining();
+        int _first = this._indexCount;
+        int _vertexCount = this._vertexStore.size();
+        ensureIndexCapacity(_count);
+        
+        int[] _dest = this._indices;
+        for(int _pos = _first; _pos < _first + _count; _pos++) {
+            int _idx = _indices.get();
+            if(_idx < 0 || _idx >= _vertexCount) {
+                _indices.position(_indices.position() - (_pos - _first) - 1);
+                String msg = String.format("Vertex index %d out of range: %d", _idx, _vertexCount);
+                throw new IndexOutOfBoundsException(msg);
+            }
+            _dest[_pos] = _idx;
+        }
+        this._indexCount += _count;
         
         if(!this._supressNormals) {
-            // calculate normal with cross product
-            final Vector3f _vec01 = new Vector3f();
-            _vec01.sub(_vtx0.getVertex(), _vtx1.getVertex());
-            
-            final Vector3f _vec21 = new Vector3f();
-            _vec21.sub(_vtx2.getVertex(), _vtx1.getVertex());
-            
-            Vector3f _normal = new Vector3f();
-            _normal.cross(_vec21, _vec01);
-            _normal.normalize();
-            
-            if(Float.isNaN(_normal.x) || Float.isNaN(_normal.y) || Float.isNaN(_normal.z)) {
-                LOG.debug("Could not calculate normal for triangle: {},{},{}", 
-                        _vtx0.getIndex(), _vtx1.getIndex(), _vtx2.getIndex());
-                // create a fake normal
-                _normal = new Vector3f(1f, 1f, 1f);
-                _normal.normalize();
+            for(int _pos = _first; _pos < _first + _count; _pos += 3) {
+                addNormal(_dest[_pos], _dest[_pos + 1], _dest[_pos + 2]);
             }
-            
-            // add this normal to each vertex
-            _vtx0.addNormal(_normal);
-            _vtx1.addNormal(_normal);
-            _vtx2.addNormal(_normal);
         }
     }
+    
+    /**
+     * Add triangles from an array of vertex indices.
+     * @see #addTriangles(IntBuffer)
+     */
+    public void addTriangles(int[] _indices) { addTriangles(IntBuffer.wrap(_indices)); }
+    
+    private void ensureIndexCapacity(int _count) {
+        if(this._indexCount + _count > this._indices.length) {
+            int _capacity = Math.max(this._indices.length * 2, this._indexCount + _count);
+            this._indices = Arrays.copyOf(this._indices, _capacity);
+        }
+    }
+    
+    /**
+     * Calculate the normal of a triangle and add it to each of its vertices.
+     */
+    private void addNormal(int _idx0, int _idx1, int _idx2) {
+        VertexStore _store = this._vertexStore;
+        // calculate normal with cross product
+        _store.getPosition(_idx0, this._pos0);
+        _store.getPosition(_idx1, this._pos1);
+        _store.getPosition(_idx2, this._pos2);
+        this._vec01.sub(this._pos0, this._pos1);
+        this._vec21.sub(this._pos2, this._pos1);
+        
+        Vector3f _normal = this._normal;
+        _normal.cross(this._vec21, this._vec01);
+        _normal.normalize();
+        
+        if(Float.isNaN(_normal.x) || Float.isNaN(_normal.y) || Float.isNaN(_normal.z)) {
+            LOG.debug("Could not calculate normal for triangle: {},{},{}", _idx0, _idx1, _idx2);
+            // create a fake normal
+            _normal.set(1f, 1f, 1f);
+            _normal.normalize();
+        }
+        
+        // add this normal to each vertex
+        _store.addNormal(_idx0, _normal);
+        _store.addNormal(_idx1, _normal);
+        _store.addNormal(_idx2, _normal);
+    }
 
     /**
      * Add a 3D square represented by 4 vertices specified counter clockwise. 
@@ -135,65 +223,99 @@ public class TriangleBuilder extends TopologyBuilder {
         
         if(_vtx0 != null && _vtx1 != null && _vtx2 != null) {
             addTriangle(_vtx0, _vtx1, _vtx2);
-            
-            // calculate tangents
-            Vector3f _vec01 = new Vector3f();
-            _vec01.sub(_vtx0.getVertex(), _vtx1.getVertex());
-            _vtx0.addTangent(_vec01);
-            _vtx1.addTangent(_vec01);
+            addTangent(_vtx0.getIndex(), _vtx1.getIndex());
         }
         
         if(_vtx2 != null && _vtx1 != null && _vtx3 != null) {
             addTriangle(_vtx2, _vtx1, _vtx3);
-
-            // calculate tangents
-            Vector3f _vec23 = new Vector3f();
-            _vec23.sub(_vtx2.getVertex(), _vtx3.getVertex());
-            _vtx2.addTangent(_vec23);
-            _vtx3.addTangent(_vec23);
+            addTangent(_vtx2.getIndex(), _vtx3.getIndex());
         }
     }
     
+    /**
+     * Add the tangent of an edge to both of its vertices.
+     */
+    private void addTangent(int _idx0, int _idx1) {
+        this._vertexStore.getPosition(_idx0, this._pos0);
+        this._vertexStore.getPosition(_idx1, this._pos1);
+        this._vec01.sub(this._pos0, this._pos1);
+        this._vertexStore.addTangent(_idx0, this._vec01);
+        this._vertexStore.addTangent(_idx1, this._vec01);
+    }
+    
     protected BufferVecFloat3 _normals = null;
 
     @Override
     protected void buildBuffers(MeshGltfWriter _geoWriter, MeshPrimitive _meshPrimitive) throws Exception {
+        BuildBuffersEvent _event = new BuildBuffersEvent();
+        _event.begin();
+        
+        DracoCompression _draco = _geoWriter.getDracoCompression();
+        if(_draco != null) {
+            // buffers of the primitive are collected by the compression stage
+            _draco.beginPrimitive(_meshPrimitive);
+        }
+        
         super.buildBuffers(_geoWriter, _meshPrimitive);
         
         if(this._material != null) {
-            int _materialIdx = _geoWriter.getGltf().getMaterials().indexOf(this._material);
+            int _materialIdx = _geoWriter.getMaterialIndex(this._material);
             _meshPrimitive.setMaterial(_materialIdx);
         }
 
-        if(this._indicesList.size() == 0) {
+        if(this._indexCount == 0) {
             throw new Exception("Mesh has no indices: " + this.getName());
         }
         
         BufferVecFloat2 _texCoords = new BufferVecFloat2(this.getName() + "-texCoords");
-        this._normals = new BufferVecFloat3(this.getName() + "-normals");
+        if(_geoWriter.isMeshQuantization()) {
+            this._normals = new BufferVecByte3(this.getName() + "-normals");
+        }
+        else {
+            this._normals = new BufferVecFloat3(this.getName() + "-normals");
+        }
         //BufferFloat4 _tangents = new BufferFloat4(this.getName(), "tangents");
         
-        for(MeshVertex _meshVertex : this._vertexList) {
-            Point2f _texCoord = _meshVertex.getTexCoord();
-            if(_texCoord != null) {
-                _texCoords.add(_texCoord);
-            }
-            
-            if(_texCoords.size() > 0 && _texCoord == null) {
-                throw new Exception("Each Vertex must have a texCoord: " + _meshVertex.toString());
+        VertexStore _store = this._vertexStore;
+        WriterStats _stats = _geoWriter.getStats();
+        long _start = System.nanoTime();
+        if(_store.getTexCoordCount() > 0) {
+            for(int _idx = 0; _idx < _store.size(); _idx++) {
+                if(_store.hasTexCoord(_idx)) {
+                    _texCoords.add(_store.getU(_idx), _store.getV(_idx));
+                }
+                else if(_texCoords.size() > 0) {
+                    MeshVertex _meshVertex = new MeshVertex(_store, _idx);
+                    throw new Exception("Each Vertex must have a texCoord: " + _meshVertex.toString());
+                }
             }
-            
-            this._normals.add(_meshVertex.getNormal());
-            
-            // leave out tangents for now.
-            //this._tangents.add(_meshVertex.getTangent());
         }
         
         // copy triangles to the buffer
         TriangleIndices indices  = new TriangleIndices(this.getName());
-        Iterator<Integer> iter = this._indicesList.iterator();
-        while(iter.hasNext()) {
-            indices.add(iter.next(), iter.next(), iter.next());
+        for(int _idx = 0; _idx < this._indexCount; _idx += 3) {
+            indices.add(this._indices[_idx], this._indices[_idx + 1], this._indices[_idx + 2]);
+        }
+        _stats.endPhase(Phase.INGEST, _start);
+        
+        _start = System.nanoTime();
+        Vector3f _normal = this._normal;
+        for(int _idx = 0; _idx < _store.size(); _idx++) {
+            _store.getNormal(_idx, _normal);
+            this._normals.add(_normal.x, _normal.y, _normal.z);
+            
+            // leave out tangents for now.
+            //this._tangents.add(_store.getTangent(_idx));
+        }
+        _stats.endPhase(Phase.NORMALS, _start);
+        
+        if(_geoWriter.isMeshQuantization() && _texCoords.size() > 0 
+                && BufferVecUShort2.isInRange(_texCoords)) {
+            BufferVecFloat2 _quantized = new BufferVecUShort2(this.getName() + "-texCoords");
+            for(int _idx = 0; _idx < _texCoords.size(); _idx++) {
+                _quantized.add(_texCoords.get(_idx));
+            }
+            _texCoords = _quantized;
         }
         
         // flush all buffers to the primitive
@@ -202,7 +324,23 @@ public class TriangleBuilder extends TopologyBuilder {
         this._normals.buildAttrib(_geoWriter, _meshPrimitive, "NORMAL");
         //_tangents.build(_geoWriter, _meshPrimitive);
         
-        this._indicesList.clear();
+        if(_draco != null) {
+            _start = System.nanoTime();
+            _draco.endPrimitive(_geoWriter, this.getName());
+            _stats.endPhase(Phase.ENCODE, _start);
+        }
+        
+        _event.end();
+        if(_event.shouldCommit()) {
+            _event.meshName = this.getName();
+            _event.vertices = _store.size();
+            _event.triangles = this._indexCount / 3;
+            _event.texCoords = _texCoords.size() > 0;
+            _event.draco = _draco != null;
+            _event.commit();
+        }
+        
+        clearIndices();
     }
     
     /**
@@ -0,0 +1,472 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import javax.vecmath.Matrix4f;
+import javax.vecmath.Point2f;
+import javax.vecmath.Point3f;
+import javax.vecmath.Tuple3f;
+import javax.vecmath.Vector3f;
+import javax.vecmath.Vector4f;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Vertices of a builder stored as parallel primitive arrays. Normals and tangents of the
+ * neighboring triangles are summed as they are added so that averaging them only needs
+ * a normalize. The texture coordinate, color and tangent arrays are not allocated until
+ * they are used.
+ * @author Chad Juliano
+ */
+class VertexStore {
+
+    private final static Logger LOG = LoggerFactory.getLogger(VertexStore.class);
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final byte HAS_TEX_COORD = 1;
+    private static final byte HAS_COLOR = 2;
+    
+    /** Components of packed sRGB colors converted the same way as Color(int). */
+    private static final byte[] SRGB_TO_LINEAR = new byte[256];
+    private static final byte[] ALPHA = new byte[256];
+    
+    static {
+        for(int _val = 0; _val < 256; _val++) {
+            Color _color = new Color((_val << 24) | (_val << 16));
+            SRGB_TO_LINEAR[_val] = (byte)_color.getRed();
+            ALPHA[_val] = (byte)_color.getAlpha();
+        }
+    }
+
+    /** Number of vertices. */
+    private int _size = 0;
+
+    private float[] _positions = new float[INITIAL_CAPACITY * 3];
+
+    /** Sum of the normals of the triangles that share each vertex. */
+    private float[] _normalSums = new float[INITIAL_CAPACITY * 3];
+
+    /** Number of normals that were summed. */
+    private int[] _normalCounts = new int[INITIAL_CAPACITY];
+
+    /** Indicates which optional attributes were set. */
+    private byte[] _flags = new byte[INITIAL_CAPACITY];
+
+    private float[] _texCoords = null;
+
+    /** RGBA components with 8 bits each. */
+    private byte[] _colors = null;
+
+    /** Sum of the tangents of each vertex. */
+    private float[] _tangentSums = null;
+
+    /** Number of vertices with a texture coordinate. */
+    private int _texCoordCount = 0;
+
+    /** Number of vertices with a color. */
+    private int _colorCount = 0;
+
+    int size() { return this._size; }
+
+    int getTexCoordCount() { return this._texCoordCount; }
+
+    int getColorCount() { return this._colorCount; }
+
+    void clear() {
+        this._size = 0;
+        this._texCoordCount = 0;
+        this._colorCount = 0;
+    }
+
+    /**
+     * Add a vertex with no normals and return its index.
+     */
+    int add(float _x, float _y, float _z) {
+        if(this._size == this._normalCounts.length) {
+            grow(this._size + 1);
+        }
+
+        int _idx = this._size++;
+        int _pos = _idx * 3;
+        this._positions[_pos] = _x;
+        this._positions[_pos + 1] = _y;
+        this._positions[_pos + 2] = _z;
+        this._normalSums[_pos] = 0f;
+        this._normalSums[_pos + 1] = 0f;
+        this._normalSums[_pos + 2] = 0f;
+        this._normalCounts[_idx] = 0;
+        this._flags[_idx] = 0;
+        if(this._tangentSums != null) {
+            this._tangentSums[_pos] = 0f;
+            this._tangentSums[_pos + 1] = 0f;
+            this._tangentSums[_pos + 2] = 0f;
+        }
+        return _idx;
+    }
+
+    /**
+     * Add vertices from the remaining coordinates of a buffer. The buffer position is 
+     * advanced past the coordinates unless they are not valid.
+     * @param _xyz Packed X/Y/Z coordinates.
+     * @param _transform Transform to apply or null if the coordinates are copied unchanged.
+     * @return Index of the first vertex.
+     */
+    int addAll(FloatBuffer _xyz, Matrix4f _transform) throws Exception {
+        int _start = _xyz.position();
+        int _count = _xyz.remaining() / 3;
+        int _first = reserve(_count);
+        float[] _positions = this._positions;
+        int _pos = _first * 3;
+        int _end = _pos + _count * 3;
+        
+        try {
+            if(_transform == null) {
+                _xyz.get(_positions, _pos, _count * 3);
+                for(; _pos < _end; _pos++) {
+                    if(!Float.isFinite(_positions[_pos])) {
+                        int _base = _pos - _pos % 3;
+                        Point3f _vertex = new Point3f(_positions[_base], _positions[_base + 1], 
+                                _positions[_base + 2]);
+                        throw new Exception("Can't add vertex with NaN or infinity: " + _vertex.toString());
+                    }
+                }
+                return _first;
+            }
+            
+            Matrix4f _m = _transform;
+            for(; _pos < _end; _pos += 3) {
+                float _x = _xyz.get();
+                float _y = _xyz.get();
+                float _z = _xyz.get();
+                if(!Float.isFinite(_x) || !Float.isFinite(_y) || !Float.isFinite(_z)) {
+                    throw new Exception("Can't add vertex with NaN or infinity: " + new Point3f(_x, _y, _z).toString());
+                }
+                
+                // same as Matrix4f.transform(Point3f)
+                float _tx = _m.m00*_x + _m.m01*_y + _m.m02*_z + _m.m03;
+                float _ty = _m.m10*_x + _m.m11*_y + _m.m12*_z + _m.m13;
+                float _tz = _m.m20*_x + _m.m21*_y + _m.m22*_z + _m.m23;
+                if(!Float.isFinite(_tx) || !Float.isFinite(_ty) || !Float.isFinite(_tz)) {
+                    Point3f _vertex = new Point3f(_tx, _ty, _tz);
+                    throw new Exception("Transformed vertex has NaN or infinity: " + _vertex.toString());
+                }
+                
+                _positions[_pos] = _tx;
+                _positions[_pos + 1] = _ty;
+                _positions[_pos + 2] = _tz;
+            }
+            return _first;
+        }
+        catch(Exception _ex) {
+            this._size = _first;
+            _xyz.position(_start);
+            throw _ex;
+        }
+    }
+    
+    /**
+     * Set the colors of consecutive vertices from the remaining values of a buffer.
+     * @param _argb Colors in the sRGB color space packed as ARGB values.
+     */
+    void setColors(int _first, IntBuffer _argb) {
+        int _count = _argb.remaining();
+        checkRange(_first, _count);
+        if(this._colors == null) {
+            this._colors = new byte[this._normalCounts.length * 4];
+        }
+        
+        byte[] _colors = this._colors;
+        for(int _idx = _first; _idx < _first + _count; _idx++) {
+            int _val = _argb.get();
+            int _pos = _idx * 4;
+            _colors[_pos] = SRGB_TO_LINEAR[(_val >> 16) & 0xFF];
+            _colors[_pos + 1] = SRGB_TO_LINEAR[(_val >> 8) & 0xFF];
+            _colors[_pos + 2] = SRGB_TO_LINEAR[_val & 0xFF];
+            _colors[_pos + 3] = ALPHA[_val >>> 24];
+            
+            if((this._flags[_idx] & HAS_COLOR) == 0) {
+                this._flags[_idx] |= HAS_COLOR;
+                this._colorCount++;
+            }
+        }
+    }
+    
+    /**
+     * Set the texture coordinates of consecutive vertices from the remaining values of a 
+     * buffer. Nothing is changed if a coordinate is NaN or infinity.
+     * @param _uv Packed U/V coordinates.
+     */
+    void setTexCoords(int _first, FloatBuffer _uv) {
+        int _count = _uv.remaining() / 2;
+        checkRange(_first, _count);
+        
+        int _start = _uv.position();
+        int _end = _start + _count * 2;
+        for(int _pos = _start; _pos < _end; _pos += 2) {
+            float _u = _uv.get(_pos);
+            float _v = _uv.get(_pos + 1);
+            if(!Float.isFinite(_u) || !Float.isFinite(_v)) {
+                String msg = "Can't set texture coordinate with NaN or infinity: " + new Point2f(_u, _v).toString();
+                throw new IllegalArgumentException(msg);
+            }
+        }
+        
+        if(this._texCoords == null) {
+            this._texCoords = new float[this._normalCounts.length * 2];
+        }
+        _uv.get(this._texCoords, _first * 2, _count * 2);
+        for(int _idx = _first; _idx < _first + _count; _idx++) {
+            if((this._flags[_idx] & HAS_TEX_COORD) == 0) {
+                this._flags[_idx] |= HAS_TEX_COORD;
+                this._texCoordCount++;
+            }
+        }
+    }
+
+    /**
+     * Add a copy of a vertex including its attributes and return its index.
+     */
+    int copy(int _srcIdx) {
+        int _idx = add(getX(_srcIdx), getY(_srcIdx), getZ(_srcIdx));
+        System.arraycopy(this._normalSums, _srcIdx * 3, this._normalSums, _idx * 3, 3);
+        this._normalCounts[_idx] = this._normalCounts[_srcIdx];
+        if(this._tangentSums != null) {
+            System.arraycopy(this._tangentSums, _srcIdx * 3, this._tangentSums, _idx * 3, 3);
+        }
+
+        if(hasTexCoord(_srcIdx)) {
+            setTexCoord(_idx, this._texCoords[_srcIdx * 2], this._texCoords[_srcIdx * 2 + 1]);
+        }
+
+        if(hasColor(_srcIdx)) {
+            System.arraycopy(this._colors, _srcIdx * 4, this._colors, _idx * 4, 4);
+            this._flags[_idx] |= HAS_COLOR;
+            this._colorCount++;
+        }
+        return _idx;
+    }
+
+    float getX(int _idx) { return this._positions[checkIndex(_idx) * 3]; }
+
+    float getY(int _idx) { return this._positions[checkIndex(_idx) * 3 + 1]; }
+
+    float getZ(int _idx) { return this._positions[checkIndex(_idx) * 3 + 2]; }
+
+    void getPosition(int _idx, Tuple3f _result) {
+        int _pos = checkIndex(_idx) * 3;
+        _result.set(this._positions[_pos], this._positions[_pos + 1], this._positions[_pos + 2]);
+    }
+
+    void setPosition(int _idx, float _x, float _y, float _z) {
+        int _pos = checkIndex(_idx) * 3;
+        this._positions[_pos] = _x;
+        this._positions[_pos + 1] = _y;
+        this._positions[_pos + 2] = _z;
+    }
+
+    boolean hasTexCoord(int _idx) { return (this._flags[checkIndex(_idx)] & HAS_TEX_COORD) != 0; }
+
+    float getU(int _idx) { return this._texCoords[checkIndex(_idx) * 2]; }
+
+    float getV(int _idx) { return this._texCoords[checkIndex(_idx) * 2 + 1]; }
+
+    void setTexCoord(int _idx, float _u, float _v) {
+        if(!hasTexCoord(_idx)) {
+            this._flags[_idx] |= HAS_TEX_COORD;
+            this._texCoordCount++;
+        }
+        if(this._texCoords == null) {
+            this._texCoords = new float[this._normalCounts.length * 2];
+        }
+        this._texCoords[_idx * 2] = _u;
+        this._texCoords[_idx * 2 + 1] = _v;
+    }
+
+    void removeTexCoord(int _idx) {
+        if(hasTexCoord(_idx)) {
+            this._flags[_idx] &= ~HAS_TEX_COORD;
+            this._texCoordCount--;
+        }
+    }
+
+    boolean hasColor(int _idx) { return (this._flags[checkIndex(_idx)] & HAS_COLOR) != 0; }
+
+    /**
+     * Get a color component with a value from 0 to 255.
+     * @param _component Index of the red, green, blue or alpha component.
+     */
+    int getColor(int _idx, int _component) {
+        return Byte.toUnsignedInt(this._colors[checkIndex(_idx) * 4 + _component]);
+    }
+
+    void setColor(int _idx, Color _color) {
+        if(_color == null) {
+            if(hasColor(_idx)) {
+                this._flags[_idx] &= ~HAS_COLOR;
+                this._colorCount--;
+            }
+            return;
+        }
+
+        if(!hasColor(_idx)) {
+            this._flags[_idx] |= HAS_COLOR;
+            this._colorCount++;
+        }
+        if(this._colors == null) {
+            this._colors = new byte[this._normalCounts.length * 4];
+        }
+        int _pos = _idx * 4;
+        this._colors[_pos] = (byte)_color.getRed();
+        this._colors[_pos + 1] = (byte)_color.getGreen();
+        this._colors[_pos + 2] = (byte)_color.getBlue();
+        this._colors[_pos + 3] = (byte)_color.getAlpha();
+    }
+
+    int getNormalCount(int _idx) { return this._normalCounts[checkIndex(_idx)]; }
+
+    void addNormal(int _idx, Tuple3f _vec) {
+        int _pos = checkIndex(_idx) * 3;
+        this._normalSums[_pos] += _vec.x;
+        this._normalSums[_pos + 1] += _vec.y;
+        this._normalSums[_pos + 2] += _vec.z;
+        this._normalCounts[_idx]++;
+    }
+
+    void addTangent(int _idx, Tuple3f _vec) {
+        int _pos = checkIndex(_idx) * 3;
+        if(this._tangentSums == null) {
+            this._tangentSums = new float[this._normalCounts.length * 3];
+        }
+        this._tangentSums[_pos] += _vec.x;
+        this._tangentSums[_pos + 1] += _vec.y;
+        this._tangentSums[_pos + 2] += _vec.z;
+    }
+
+    /**
+     * Calculate the average of the normal vectors.
+     * @param _result Vector that is set to the normalized average.
+     */
+    void getNormal(int _idx, Vector3f _result) {
+        if(getNormalCount(_idx) == 0) {
+            LOG.warn("Vertex has no normals: {}", _idx);
+            setFakeNormal(_result);
+            return;
+        }
+
+        int _pos = _idx * 3;
+        _result.set(this._normalSums[_pos], this._normalSums[_pos + 1], this._normalSums[_pos + 2]);
+        _result.normalize();
+
+        if(Float.isNaN(_result.x) || Float.isNaN(_result.y) || Float.isNaN(_result.z)) {
+            LOG.warn("Could not calculate average normal for vertex: {}", _idx);
+            setFakeNormal(_result);
+        }
+    }
+
+    private static void setFakeNormal(Vector3f _result) {
+        _result.set(1f, 1f, 1f);
+        _result.normalize();
+    }
+
+    /**
+     * Calculate the average of the tangent vectors.
+     */
+    Vector4f getTangent(int _idx) throws Exception {
+        if(getNormalCount(_idx) == 0) {
+            throw new Exception("No tangents to average for vertex: " + _idx);
+        }
+
+        Vector3f _avgTangent = new Vector3f();
+        if(this._tangentSums != null) {
+            int _pos = _idx * 3;
+            _avgTangent.set(this._tangentSums[_pos], this._tangentSums[_pos + 1], this._tangentSums[_pos + 2]);
+        }
+
+        _avgTangent.normalize();
+        return new Vector4f(_avgTangent.x, _avgTangent.y, _avgTangent.z, 1f);
+    }
+
+    /**
+     * Get a copy of the position.
+     */
+    Point3f newPosition(int _idx) {
+        Point3f _position = new Point3f();
+        getPosition(_idx, _position);
+        return _position;
+    }
+
+    /**
+     * Get a copy of the texture coordinate or null if it was not set.
+     */
+    Point2f newTexCoord(int _idx) {
+        if(!hasTexCoord(_idx)) {
+            return null;
+        }
+        return new Point2f(getU(_idx), getV(_idx));
+    }
+
+    private void checkRange(int _first, int _count) {
+        if(_first < 0 || _first + _count > this._size) {
+            String msg = String.format("Vertices %d to %d out of range: %d", 
+                    _first, _first + _count - 1, this._size);
+            throw new IndexOutOfBoundsException(msg);
+        }
+    }
+    
+    /**
+     * Add vertices with no attributes or normals and return the index of the first one.
+     */
+    private int reserve(int _count) {
+        int _first = this._size;
+        if(_first + _count > this._normalCounts.length) {
+            grow(_first + _count);
+        }
+        
+        Arrays.fill(this._normalSums, _first * 3, (_first + _count) * 3, 0f);
+        Arrays.fill(this._normalCounts, _first, _first + _count, 0);
+        Arrays.fill(this._flags, _first, _first + _count, (byte)0);
+        if(this._tangentSums != null) {
+            Arrays.fill(this._tangentSums, _first * 3, (_first + _count) * 3, 0f);
+        }
+        this._size += _count;
+        return _first;
+    }
+    
+    private int checkIndex(int _idx) {
+        if(_idx < 0 || _idx >= this._size) {
+            String msg = String.format("Vertex index %d out of range: %d", _idx, this._size);
+            throw new IndexOutOfBoundsException(msg);
+        }
+        return _idx;
+    }
+
+    /**
+     * Grow the arrays to at least double their capacity.
+     */
+    private void grow(int _minCapacity) {
+        int _capacity = Math.max(this._normalCounts.length * 2, _minCapacity);
+        this._positions = Arrays.copyOf(this._positions, _capacity * 3);
+        this._normalSums = Arrays.copyOf(this._normalSums, _capacity * 3);
+        this._normalCounts = Arrays.copyOf(this._normalCounts, _capacity);
+        this._flags = Arrays.copyOf(this._flags, _capacity);
+        if(this._texCoords != null) {
+            this._texCoords = Arrays.copyOf(this._texCoords, _capacity * 2);
+        }
+        if(this._colors != null) {
+            this._colors = Arrays.copyOf(this._colors, _capacity * 4);
+        }
+        if(this._tangentSums != null) {
+            this._tangentSums = Arrays.copyOf(this._tangentSums, _capacity * 3);
+        }
+    }
+}
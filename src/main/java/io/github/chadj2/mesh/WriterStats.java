@@ -0,0 +1,236 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Metrics collected while meshes are built and the glTF is written. Phase times accumulate
+ * over the life of the writer and the BufferView sizes are replaced each time it is
+ * written. Phases can be timed from the threads that run deferred encoders so listeners
+ * may be called concurrently. The other metrics are only recorded by the thread building
+ * the meshes. The metrics are cleared when the writer is reset.
+ * @author Chad Juliano
+ */
+public class WriterStats {
+
+    /**
+     * Phases that are timed.
+     */
+    public enum Phase {
+        /** 
+         * Copying the vertices, colors, texture coordinates and indices of a builder to 
+         * buffers when it is built. The calls that add vertices to the builder are made 
+         * before this and are not timed.
+         */
+        INGEST,
+
+        /** Averaging the normals of the triangles at each vertex. */
+        NORMALS,
+
+        /** 
+         * Encoding and compressing buffers. This is timed where the encoder runs, so arenas 
+         * that defer encoding record it while writing and encoders that run in parallel 
+         * can add up to more than the elapsed time.
+         */
+        ENCODE,
+
+        /** Serializing the glTF JSON. */
+        JSON,
+
+        /** 
+         * Writing the buffers and images. This includes running the encoders of arenas that 
+         * defer encoding. Asynchronous writes are not timed.
+         */
+        IO
+    }
+
+    /**
+     * Receives metrics as they are recorded.
+     */
+    public interface Listener {
+        default void onMesh(MeshStats _mesh) { }
+
+        default void onBufferView(String _name, long _bytes) { }
+
+        /**
+         * @param _nanos Elapsed time of one occurrence of the phase.
+         */
+        default void onPhase(Phase _phase, long _nanos) { }
+    }
+
+    /**
+     * Counts for a mesh that was built.
+     */
+    public static class MeshStats {
+        private final String _name;
+        private final int _vertices;
+        private final int _indices;
+        private final int _accessors;
+
+        MeshStats(String _name, int _vertices, int _indices, int _accessors) {
+            this._name = _name;
+            this._vertices = _vertices;
+            this._indices = _indices;
+            this._accessors = _accessors;
+        }
+
+        public String getName() { return this._name; }
+
+        public int getVertices() { return this._vertices; }
+
+        public int getIndices() { return this._indices; }
+
+        public int getAccessors() { return this._accessors; }
+    }
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final AtomicLongArray _phaseNanos = new AtomicLongArray(Phase.values().length);
+    private final AtomicIntegerArray _phaseCounts = new AtomicIntegerArray(Phase.values().length);
+    private final List<MeshStats> _meshes = new ArrayList<>();
+    private final List<String> _viewNames = new ArrayList<>();
+    private final List<Long> _viewBytes = new ArrayList<>();
+    private final List<Listener> _listeners = new CopyOnWriteArrayList<>();
+
+    public void addListener(Listener _listener) { this._listeners.add(_listener); }
+
+    public void removeListener(Listener _listener) { this._listeners.remove(_listener); }
+
+    /**
+     * Get the total time spent in a phase.
+     */
+    public long getTime(Phase _phase, TimeUnit _unit) {
+        return _unit.convert(this._phaseNanos.get(_phase.ordinal()), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the number of times a phase was timed.
+     */
+    public int getCount(Phase _phase) { return this._phaseCounts.get(_phase.ordinal()); }
+
+    public List<MeshStats> getMeshes() { return Collections.unmodifiableList(this._meshes); }
+
+    /**
+     * Get the number of BufferViews from the last write.
+     */
+    public int getBufferViewCount() { return this._viewNames.size(); }
+
+    public String getBufferViewName(int _idx) { return this._viewNames.get(_idx); }
+
+    /**
+     * Get the bytes stored for a BufferView. This is the compressed size if the BufferView
+     * was compressed.
+     */
+    public long getBufferViewBytes(int _idx) { return this._viewBytes.get(_idx); }
+
+    /**
+     * Add the time since a phase was started. This can be called from any thread.
+     * @param _startNanos Value of System.nanoTime() when the phase started.
+     */
+    public void endPhase(Phase _phase, long _startNanos) {
+        long _nanos = System.nanoTime() - _startNanos;
+        this._phaseNanos.addAndGet(_phase.ordinal(), _nanos);
+        this._phaseCounts.incrementAndGet(_phase.ordinal());
+        for(Listener _listener : this._listeners) {
+            _listener.onPhase(_phase, _nanos);
+        }
+    }
+
+    void addMesh(String _name, int _vertices, int _indices, int _accessors) {
+        MeshStats _mesh = new MeshStats(_name, _vertices, _indices, _accessors);
+        this._meshes.add(_mesh);
+        for(Listener _listener : this._listeners) {
+            _listener.onMesh(_mesh);
+        }
+    }
+
+    /**
+     * Forget the BufferViews of a previous write.
+     */
+    void clearBufferViews() {
+        this._viewNames.clear();
+        this._viewBytes.clear();
+    }
+
+    void addBufferView(String _name, long _bytes) {
+        this._viewNames.add(_name);
+        this._viewBytes.add(_bytes);
+        for(Listener _listener : this._listeners) {
+            _listener.onBufferView(_name, _bytes);
+        }
+    }
+
+    /**
+     * Clear the metrics. Listeners are kept.
+     */
+    public void reset() {
+        for(int _idx = 0; _idx < this._phaseNanos.length(); _idx++) {
+            this._phaseNanos.set(_idx, 0);
+            this._phaseCounts.set(_idx, 0);
+        }
+        this._meshes.clear();
+        clearBufferViews();
+    }
+
+    /**
+     * Write a JSON report of the metrics. The stream is not closed.
+     */
+    public void writeJson(OutputStream _os) throws IOException {
+        try (JsonGenerator _gen = JSON_FACTORY.createGenerator(_os, JsonEncoding.UTF8)) {
+            _gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            _gen.useDefaultPrettyPrinter();
+            _gen.writeStartObject();
+
+            _gen.writeObjectFieldStart("phases");
+            for(Phase _phase : Phase.values()) {
+                _gen.writeObjectFieldStart(_phase.name());
+                _gen.writeNumberField("count", getCount(_phase));
+                _gen.writeNumberField("nanos", getTime(_phase, TimeUnit.NANOSECONDS));
+                _gen.writeEndObject();
+            }
+            _gen.writeEndObject();
+
+            _gen.writeArrayFieldStart("meshes");
+            for(MeshStats _mesh : this._meshes) {
+                _gen.writeStartObject();
+                _gen.writeStringField("name", _mesh.getName());
+                _gen.writeNumberField("vertices", _mesh.getVertices());
+                _gen.writeNumberField("indices", _mesh.getIndices());
+                _gen.writeNumberField("accessors", _mesh.getAccessors());
+                _gen.writeEndObject();
+            }
+            _gen.writeEndArray();
+
+            long _totalBytes = 0;
+            _gen.writeArrayFieldStart("bufferViews");
+            for(int _idx = 0; _idx < getBufferViewCount(); _idx++) {
+                _gen.writeStartObject();
+                _gen.writeStringField("name", getBufferViewName(_idx));
+                _gen.writeNumberField("bytes", getBufferViewBytes(_idx));
+                _gen.writeEndObject();
+                _totalBytes += getBufferViewBytes(_idx);
+            }
+            _gen.writeEndArray();
+            _gen.writeNumberField("totalBytes", _totalBytes);
+
+            _gen.writeEndObject();
+        }
+    }
+}
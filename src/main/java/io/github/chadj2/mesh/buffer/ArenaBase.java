@@ -0,0 +1,146 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Storage for a glTF buffer. This tracks the offsets of the BufferViews as they are reserved 
+ * and subclasses decide where the data is encoded.
+ * @author Chad Juliano
+ */
+public abstract class ArenaBase {
+
+    /**
+     * Largest buffer we will support. The glTF spec allows 2^32 bytes but the jglTF model
+     * stores offsets and lengths as Integer.
+     */
+    public static final long MAX_BUFFER_SIZE = Integer.MAX_VALUE;
+
+    /** BufferViews are aligned to this number of bytes. */
+    public static final int ALIGNMENT = 4;
+
+    /** Bytes reserved for all BufferViews. */
+    private long _size = 0;
+
+    /** Index of the glTF buffer this arena is serialized to. */
+    private int _bufferIdx = 0;
+
+    /** Indicates the data was released after writing. */
+    private boolean _isReleased = false;
+
+    /**
+     * Get the number of bytes reserved. This is also the offset of the next BufferView.
+     */
+    public long size() { return this._size; }
+
+    /**
+     * Get the index of the glTF buffer that BufferViews in this arena reference.
+     */
+    public int getBufferIndex() { return this._bufferIdx; }
+
+    protected void setBufferIndex(int _bufferIdx) { this._bufferIdx = _bufferIdx; }
+
+    /**
+     * Returns true if nothing has been reserved.
+     */
+    public boolean isEmpty() { return this._size == 0; }
+
+    /**
+     * Get the number of bytes of memory held for the data.
+     */
+    public abstract long capacity();
+
+    /**
+     * Reserve space for a BufferView and encode its data. The encoder is given a buffer
+     * of the requested length that it must fill. Subclasses can defer the encoding until the
+     * buffer is written.
+     * @param length Number of bytes the encoder will write.
+     * @param encoder Writes the data.
+     * @return Offset of the data in the glTF buffer.
+     */
+    public abstract long reserve(int length, Consumer<ByteBuffer> encoder);
+
+    /**
+     * Get read-only views of the data. The concatenation of the views is the contents 
+     * of the glTF buffer.
+     */
+    public abstract List<ByteBuffer> getSegments();
+
+    /**
+     * Advance the size of the arena by an aligned length.
+     * @return Offset of the claimed space.
+     */
+    protected long claim(int length) {
+        checkReleased();
+        if(this._size + align(length) > MAX_BUFFER_SIZE) {
+            String msg = String.format("glTF buffer cannot exceed %d bytes: size=%d, length=%d",
+                    MAX_BUFFER_SIZE, this._size, length);
+            throw new IllegalStateException(msg);
+        }
+
+        long _offset = this._size;
+        this._size += align(length);
+        return _offset;
+    }
+
+    /**
+     * Drop the data so that its memory can be reclaimed once the views returned by
+     * getSegments() are no longer referenced. The size is unchanged so the BufferView offsets
+     * remain valid but the arena can't be written again.
+     */
+    public void release() {
+        this._isReleased = true;
+    }
+
+    /**
+     * Discard the contents so the arena can be used again.
+     */
+    public void reset() {
+        this._size = 0;
+        this._isReleased = false;
+    }
+
+    /**
+     * Throw an exception if the data was released.
+     */
+    protected void checkReleased() {
+        if(this._isReleased) {
+            throw new IllegalStateException("Arena was released after writing.");
+        }
+    }
+
+    /**
+     * Get the data as a single buffer. This only copies the data if there is more
+     * than one segment.
+     */
+    public ByteBuffer toByteBuffer() {
+        List<ByteBuffer> _views = getSegments();
+        if(_views.size() == 1) {
+            return _views.get(0);
+        }
+
+        ByteBuffer _result = ByteBuffer.allocate((int)this._size);
+        _result.order(ByteOrder.LITTLE_ENDIAN);
+        for(ByteBuffer _view : _views) {
+            _result.put(_view);
+        }
+
+        _result.flip();
+        return _result;
+    }
+
+    /**
+     * Round a length up to the alignment.
+     */
+    public static int align(int length) {
+        return (length + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+}
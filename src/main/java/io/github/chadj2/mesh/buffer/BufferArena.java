@@ -0,0 +1,212 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Growable storage for the glTF buffer. Space is allocated in fixed size segments as
+ * BufferViews are added so that a writer only holds the memory it actually uses. Subclasses
+ * can be passed to the MeshGltfWriter to change how the data is stored.
+ * @author Chad Juliano
+ */
+public class BufferArena extends ArenaBase {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BufferArena.class);
+
+    /** Default size of each segment. */
+    public static final int DEFAULT_SEGMENT_SIZE = 1024*1024;
+
+    /** Segments allocated so far. The last segment is the one being filled. */
+    private final List<ByteBuffer> _segments = new ArrayList<>();
+
+    /** Segments kept by reset() that can be reused. */
+    private final List<ByteBuffer> _freeSegments = new ArrayList<>();
+
+    /** Minimum size of a new segment. */
+    private final int _segmentSize;
+
+    /** Indicates if segments are allocated outside of the heap. */
+    private final boolean _isDirect;
+
+    /**
+     * Create an arena with 1 MB heap segments.
+     */
+    public BufferArena() {
+        this(DEFAULT_SEGMENT_SIZE, false);
+    }
+
+    /**
+     * @param segmentSize Minimum size of each segment. Allocations larger than this get their own segment.
+     * @param isDirect Allocate segments with ByteBuffer.allocateDirect()
+     */
+    public BufferArena(int segmentSize, boolean isDirect) {
+        if(segmentSize <= 0 || (segmentSize % ALIGNMENT) != 0) {
+            String msg = String.format("Segment size must be a positive multiple of %d: %d",
+                    ALIGNMENT, segmentSize);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this._segmentSize = segmentSize;
+        this._isDirect = isDirect;
+    }
+
+    /**
+     * Create an empty arena with the same settings for the next glTF buffer.
+     */
+    public BufferArena newPartition() {
+        BufferArena _arena = newArena();
+        _arena.setBufferIndex(getBufferIndex() + 1);
+        return _arena;
+    }
+
+    /**
+     * Create an empty arena with the same settings. Subclasses override this so that
+     * partitions have the same type.
+     */
+    protected BufferArena newArena() {
+        return new BufferArena(this._segmentSize, this._isDirect);
+    }
+
+    /**
+     * Get the minimum size of each segment.
+     */
+    public int getSegmentSize() { return this._segmentSize; }
+
+    /**
+     * Returns true if segments are allocated outside of the heap.
+     */
+    public boolean isDirect() { return this._isDirect; }
+
+    /**
+     * Get the number of bytes reserved by all segments.
+     */
+    @Override
+    public long capacity() {
+        long _capacity = 0;
+        for(ByteBuffer _segment : this._segments) {
+            _capacity += _segment.capacity();
+        }
+        for(ByteBuffer _segment : this._freeSegments) {
+            _capacity += _segment.capacity();
+        }
+        return _capacity;
+    }
+
+    /**
+     * Allocate space for a BufferView starting at offset size(). The returned buffer has position
+     * zero and a limit of the requested length. The allocation is padded so that the next
+     * allocation will be aligned.
+     * @param length Number of bytes to be written.
+     * @return Little endian buffer to write the data.
+     */
+    public ByteBuffer allocate(int length) {
+        int _padded = align(length);
+        claim(length);
+
+        ByteBuffer _segment = null;
+        if(!this._segments.isEmpty()) {
+            _segment = this._segments.get(this._segments.size() - 1);
+        }
+
+        if(_segment == null || _segment.remaining() < _padded) {
+            _segment = newSegment(Math.max(this._segmentSize, _padded));
+        }
+
+        ByteBuffer _slice = _segment.slice();
+        _slice.limit(length);
+        _slice.order(ByteOrder.LITTLE_ENDIAN);
+
+        // a reused segment may have old data in the padding
+        for(int _pos = length; _pos < _padded; _pos++) {
+            _segment.put(_segment.position() + _pos, (byte)0);
+        }
+
+        _segment.position(_segment.position() + _padded);
+        return _slice;
+    }
+
+    @Override
+    public long reserve(int length, Consumer<ByteBuffer> encoder) {
+        long _offset = size();
+        ByteBuffer _buffer = allocate(length);
+        encoder.accept(_buffer);
+        return _offset;
+    }
+
+    /**
+     * Drop the segments so that their memory can be reclaimed once the views returned by
+     * getSegments() are no longer referenced. The size is unchanged so the BufferView offsets
+     * remain valid but the arena can't be written again.
+     */
+    @Override
+    public void release() {
+        this._segments.clear();
+        super.release();
+    }
+
+    /**
+     * Discard the contents so the arena can be used again. The segments are kept and reused
+     * by later allocations unless the arena was released.
+     */
+    @Override
+    public void reset() {
+        this._freeSegments.addAll(this._segments);
+        this._segments.clear();
+        super.reset();
+    }
+
+    private ByteBuffer newSegment(int capacity) {
+        for(int _idx = 0; _idx < this._freeSegments.size(); _idx++) {
+            ByteBuffer _segment = this._freeSegments.get(_idx);
+            if(_segment.capacity() >= capacity) {
+                this._freeSegments.remove(_idx);
+                _segment.clear();
+                this._segments.add(_segment);
+                return _segment;
+            }
+        }
+
+        ByteBuffer _segment;
+        if(this._isDirect) {
+            _segment = ByteBuffer.allocateDirect(capacity);
+        }
+        else {
+            _segment = ByteBuffer.allocate(capacity);
+        }
+
+        _segment.order(ByteOrder.LITTLE_ENDIAN);
+        this._segments.add(_segment);
+        LOG.debug("New segment[{}]: capacity=<{} bytes> direct=<{}>",
+                this._segments.size() - 1, capacity, this._isDirect);
+        return _segment;
+    }
+
+    /**
+     * Get read-only views of the allocated data. The concatenation of the views is the
+     * contents of the glTF buffer.
+     */
+    @Override
+    public List<ByteBuffer> getSegments() {
+        checkReleased();
+        List<ByteBuffer> _result = new ArrayList<>(this._segments.size());
+        for(ByteBuffer _segment : this._segments) {
+            ByteBuffer _view = _segment.asReadOnlyBuffer();
+            _view.flip();
+            _view.order(ByteOrder.LITTLE_ENDIAN);
+            _result.add(_view);
+        }
+        return _result;
+    }
+}
@@ -7,27 +7,31 @@
 package io.github.chadj2.mesh.buffer;
 
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
+import java.nio.ByteOrder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.javagl.jgltf.impl.v2.Accessor;
 import de.javagl.jgltf.impl.v2.BufferView;
-import de.javagl.jgltf.impl.v2.GlTF;
 import de.javagl.jgltf.impl.v2.MeshPrimitive;
 import io.github.chadj2.mesh.MeshGltfWriter;
+import io.github.chadj2.mesh.WriterStats;
+import io.github.chadj2.mesh.WriterStats.Phase;
 import io.github.chadj2.mesh.extinst.GlTFMeshGpuInstancing;
+import io.github.chadj2.mesh.jfr.BufferViewEvent;
 
 /**
- * Base class for primitive serializers.
+ * Base class for primitive serializers. Subclasses store the primitives in arrays.
  * @author Chad Juliano
  */
 public abstract class BufferBase<T> {
     private static final Logger LOG = LoggerFactory.getLogger(BufferBase.class);
     
     protected final String _name;
-    protected final ArrayList<T> _list = new ArrayList<>();
+    
+    /** Encoded primitives that are reused while the buffer is built or null. */
+    private ByteBuffer _encoded = null;
     
     public BufferBase(String _name) {
         this._name = _name;
@@ -37,23 +41,38 @@ public abstract class BufferBase<T> {
 
     public abstract T getMax();
     
-    public void add(T _primitive) {  this._list.add(_primitive); }
+    public abstract void add(T _primitive);
     
-    public T get(int idx) { return this._list.get(idx); }
+    public abstract T get(int idx);
     
-    public int size() { return this._list.size(); }
+    public abstract int size();
+
+    public abstract void clear();
 
-    public void clear() { this._list.clear(); }
+    /**
+     * Get the number of bytes that will be written by writeBuf().
+     */
+    protected abstract int getByteLength();
 
     protected abstract void writeBuf(ByteBuffer _buffer);
+
+    /**
+     * Get the EXT_meshopt_compression mode for this buffer or null if it can't be compressed.
+     */
+    protected MeshoptEncoder.Mode getMeshoptMode() { return null; }
+
+    /**
+     * Get the filter that can be applied when the MeshoptCompression has it enabled.
+     */
+    protected MeshoptEncoder.Filter getMeshoptFilter() { return MeshoptEncoder.Filter.NONE; }
     
     public final Accessor buildAttrib(MeshGltfWriter _geoWriter, MeshPrimitive _meshPirimitive, String _attribute) {
-        Accessor _accessor = buildBuffer(_geoWriter);
+        Accessor _accessor = buildBuffer(_geoWriter, _meshPirimitive, _attribute);
         if(_accessor == null) {
             return null;
         }
         
-        int _accessorIdx = _geoWriter.getGltf().getAccessors().indexOf(_accessor);
+        int _accessorIdx = _geoWriter.getAccessorIndex(_accessor);
         _meshPirimitive.addAttributes(_attribute, _accessorIdx);
         return _accessor;
     }
@@ -64,32 +83,89 @@ public abstract class BufferBase<T> {
             return null;
         }
         
-        int _accessorIdx = _geoWriter.getGltf().getAccessors().indexOf(_accessor);
+        int _accessorIdx = _geoWriter.getAccessorIndex(_accessor);
         _meshInstancing.addAttributes(_attribute, _accessorIdx);
         return _accessor;
     }
     
+    /**
+     * Build the buffer and its accessor. If the writer has a BufferDedup then the accessor 
+     * of an identical buffer is returned instead when there is one.
+     */
     protected final Accessor buildBuffer(MeshGltfWriter _geoWriter) {
         if(size() == 0) {
             return null;
         }
         
-        BufferView _bufferView = this.addBufferView(_geoWriter.getGltf(), _geoWriter.getBuffer());
-        Accessor _accessor = this.addAccessor(_geoWriter.getGltf(), _bufferView);
+        return buildShared(_geoWriter);
+    }
+    
+    private Accessor buildShared(MeshGltfWriter _geoWriter) {
+        BufferDedup _dedup = _geoWriter.getBufferDedup();
+        if(_dedup == null) {
+            BufferView _bufferView = this.addBufferView(_geoWriter, _geoWriter.getArena(this.getByteLength()));
+            return this.addAccessor(_geoWriter, _bufferView);
+        }
+        
+        ByteBuffer _raw = encodeHeap(_geoWriter.getStats());
+        Accessor _accessor = _dedup.find(this.getClass(), _raw);
+        if(_accessor != null) {
+            return _accessor;
+        }
+        
+        try {
+            this._encoded = _raw;
+            BufferView _bufferView = this.addBufferView(_geoWriter, _geoWriter.getArena(this.getByteLength()));
+            _accessor = this.addAccessor(_geoWriter, _bufferView);
+        }
+        finally {
+            this._encoded = null;
+        }
+        
+        _dedup.add(this.getClass(), _raw, _accessor);
         return _accessor;
     }
     
-    protected Accessor addAccessor(GlTF _gltf, BufferView _bufferView) {
-        int _bufferIdx = _gltf.getBufferViews().indexOf(_bufferView);
+    /**
+     * Build the buffer of a primitive. If the primitive is being compressed by the 
+     * DracoCompression then the data is added to it and the accessor only gets a BufferView 
+     * when the fallback is enabled.
+     * @param _attribute Name of the attribute or null for the indices.
+     */
+    protected final Accessor buildBuffer(MeshGltfWriter _geoWriter, MeshPrimitive _meshPrimitive, 
+            String _attribute) {
+        DracoCompression _draco = _geoWriter.getDracoCompression();
+        if(_draco == null || !_draco.isCompressing(_meshPrimitive) || size() == 0) {
+            return buildBuffer(_geoWriter);
+        }
+        
+        BufferView _bufferView = null;
+        if(_draco.isFallback()) {
+            _bufferView = this.addBufferView(_geoWriter, _geoWriter.getArena(this.getByteLength()));
+        }
+        
+        Accessor _accessor = this.addAccessor(_geoWriter, _bufferView);
+        _draco.add(_attribute, _accessor, encodeHeap(_geoWriter.getStats()));
+        return _accessor;
+    }
+    
+    /**
+     * @param _bufferView BufferView with the data or null if the data is only stored 
+     * compressed.
+     */
+    protected Accessor addAccessor(MeshGltfWriter _geoWriter, BufferView _bufferView) {
+        Integer _bufferIdx = null;
         
         Accessor _accessor = new Accessor();
-        _gltf.addAccessors(_accessor);
+        _geoWriter.addAccessor(_accessor);
         
-        _accessor.setBufferView(_bufferIdx);
-        _accessor.setByteOffset(0);
+        if(_bufferView != null) {
+            _bufferIdx = _geoWriter.getBufferViewIndex(_bufferView);
+            _accessor.setBufferView(_bufferIdx);
+            _accessor.setByteOffset(0);
+        }
         _accessor.setCount(this.size());
 
-        //int _idx = _gltf.getAccessors().indexOf(_accessor);
         String _type = this.getClass().getSimpleName();
         String _accessorName = String.format("%s-%s", this._name, _type);
         _accessor.setName(_accessorName);
@@ -97,33 +173,108 @@ public abstract class BufferBase<T> {
         return _accessor;
     }
     
-    protected BufferView addBufferView(GlTF _gltf, ByteBuffer _buffer) {
-        int _startPos = _buffer.position();
-        this.writeBuf(_buffer);
-        int _length = _buffer.position() - _startPos;
+    protected BufferView addBufferView(MeshGltfWriter _geoWriter, ArenaBase _arena) {
+        BufferViewEvent _event = new BufferViewEvent();
+        _event.begin();
+        
+        int _length = this.getByteLength();
 
         BufferView _bufferView = new BufferView();
-        _gltf.addBufferViews(_bufferView);
-        _bufferView.setBuffer(0);
-        _bufferView.setByteOffset(_startPos);
-        _bufferView.setByteLength(_length);
+        _geoWriter.addBufferView(_bufferView);
 
-        //int _idx = _gltf.getBufferViews().indexOf(_bufferView);
         String _type = this.getClass().getSimpleName();
         String _bufViewName = String.format("%s-%s", this._name, _type);
         _bufferView.setName(_bufViewName);
-        LOG.debug("BufferView[{}]: start={}, size={}", _bufViewName, _startPos, _length);
-
-        BufferBase.alignWords(_buffer);
+        
+        long _storedLength = reserveView(_geoWriter, _arena, _bufferView, _length);
+        
+        _event.end();
+        if(_event.shouldCommit()) {
+            _event.viewName = _bufViewName;
+            _event.count = this.size();
+            _event.bytes = _length;
+            _event.storedBytes = _storedLength;
+            _event.buffer = _arena.getBufferIndex();
+            _event.commit();
+        }
         return _bufferView;
     }
+    
+    /**
+     * Reserve the data of the BufferView in the arena.
+     * @return Number of bytes reserved.
+     */
+    private long reserveView(MeshGltfWriter _geoWriter, ArenaBase _arena, BufferView _bufferView, 
+            int _length) {
+        WriterStats _stats = _geoWriter.getStats();
+        MeshoptCompression _meshopt = _geoWriter.getMeshoptCompression();
+        if(_meshopt != null && this.getMeshoptMode() != null) {
+            // the compressed size is not known until the primitives are encoded
+            ByteBuffer _raw = encodeHeap(_stats);
+            
+            long _compressedSize = _meshopt.getCompressedSize();
+            long _start = System.nanoTime();
+            boolean _isCompressed = _meshopt.compress(_bufferView, _raw, this.size(), 
+                    this.getMeshoptMode(), this.getMeshoptFilter(), _arena);
+            _stats.endPhase(Phase.ENCODE, _start);
+            if(_isCompressed) {
+                return _meshopt.getCompressedSize() - _compressedSize;
+            }
+            
+            long _startPos = _arena.reserve(_length, _buffer -> _buffer.put(_raw));
+            setBufferRange(_bufferView, _arena, _startPos, _length);
+            return _length;
+        }
+        
+        long _startPos;
+        if(this._encoded != null) {
+            ByteBuffer _raw = this._encoded.duplicate();
+            _startPos = _arena.reserve(_length, _buffer -> _buffer.put(_raw));
+        }
+        else {
+            // the arena may run the encoder later on another thread
+            _startPos = _arena.reserve(_length, _buffer -> this.encode(_buffer, _stats));
+        }
+        setBufferRange(_bufferView, _arena, _startPos, _length);
+        return _length;
+    }
+    
+    private static void setBufferRange(BufferView _bufferView, ArenaBase _arena, 
+            long _startPos, int _length) {
+        _bufferView.setBuffer(_arena.getBufferIndex());
+        _bufferView.setByteOffset((int)_startPos);
+        _bufferView.setByteLength(_length);
+        LOG.debug("BufferView[{}]: buffer={} start={}, size={}", _bufferView.getName(), 
+                _arena.getBufferIndex(), _startPos, _length);
+    }
 
-    private static void alignWords(ByteBuffer _byteBuffer) {
-        int _limit = _byteBuffer.position();
-        int _padding = _limit % 4;
+    /**
+     * Write the primitives to a new little endian buffer that is ready to be read.
+     */
+    private ByteBuffer encodeHeap(WriterStats _stats) {
+        if(this._encoded != null) {
+            return this._encoded.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        }
+        
+        ByteBuffer _raw = ByteBuffer.allocate(this.getByteLength()).order(ByteOrder.LITTLE_ENDIAN);
+        this.encode(_raw, _stats);
+        _raw.flip();
+        return _raw;
+    }
+
+    /**
+     * Write the primitives to a buffer reserved in the arena. The time is recorded as the 
+     * ENCODE phase.
+     */
+    private void encode(ByteBuffer _buffer, WriterStats _stats) {
+        long _start = System.nanoTime();
+        this.writeBuf(_buffer);
+        _stats.endPhase(Phase.ENCODE, _start);
         
-        for(int _i = 0; _i < _padding; _i++) {
-            _byteBuffer.put((byte)0);
+        if(_buffer.hasRemaining()) {
+            String msg = String.format("Buffer %s wrote %d of %d bytes", 
+                    this._name, _buffer.position(), _buffer.limit());
+            throw new IllegalStateException(msg);
         }
     }
 }
\ No newline at end of file
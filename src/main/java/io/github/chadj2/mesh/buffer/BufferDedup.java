@@ -0,0 +1,189 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.javagl.jgltf.impl.v2.Accessor;
+
+/**
+ * Stage that shares Accessors and BufferViews between buffers with identical content. The
+ * encoded bytes of each buffer are hashed with xxHash64 and if they match a buffer of the
+ * same type that was already written then its Accessor is reused instead of writing the
+ * bytes again. The encoded bytes are kept on the heap so that matches can be verified.
+ * @author Chad Juliano
+ */
+public class BufferDedup {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BufferDedup.class);
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    /**
+     * Buffer that was written.
+     */
+    private static class Entry {
+        final Class<?> _type;
+        final ByteBuffer _data;
+        final Accessor _accessor;
+
+        Entry(Class<?> _type, ByteBuffer _data, Accessor _accessor) {
+            this._type = _type;
+            this._data = _data;
+            this._accessor = _accessor;
+        }
+    }
+
+    /** Buffers that were written indexed by the hash of their content. */
+    private final Map<Long, List<Entry>> _entries = new HashMap<>();
+
+    /** Number of buffers that reused an Accessor. */
+    private int _sharedCount = 0;
+
+    /** Bytes that were not written because they were shared. */
+    private long _savedSize = 0;
+
+    /**
+     * Get the number of buffers that reused an existing Accessor.
+     */
+    public int getSharedCount() { return this._sharedCount; }
+
+    /**
+     * Get the number of bytes that were not written because they were shared.
+     */
+    public long getSavedSize() { return this._savedSize; }
+
+    /**
+     * Find the Accessor of a buffer with the same type and content.
+     * @param _type Class of the buffer that determines the Accessor type.
+     * @param _data Encoded content of the buffer.
+     * @return Existing Accessor or null if there is no match.
+     */
+    Accessor find(Class<?> _type, ByteBuffer _data) {
+        List<Entry> _list = this._entries.get(hash(_data));
+        if(_list == null) {
+            return null;
+        }
+
+        for(Entry _entry : _list) {
+            if(_entry._type == _type && _entry._data.equals(_data)) {
+                this._sharedCount++;
+                this._savedSize += _data.remaining();
+                LOG.debug("Shared {}: size=<{} bytes>", _entry._accessor.getName(), _data.remaining());
+                return _entry._accessor;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Remember a buffer that was written so it can be shared.
+     */
+    void add(Class<?> _type, ByteBuffer _data, Accessor _accessor) {
+        this._entries.computeIfAbsent(hash(_data), _key -> new ArrayList<>())
+            .add(new Entry(_type, _data.asReadOnlyBuffer(), _accessor));
+    }
+
+    /**
+     * Log the bytes that were saved. This does nothing if no buffers were shared.
+     */
+    public void logStats() {
+        if(this._sharedCount == 0) {
+            return;
+        }
+        LOG.info("Shared {} buffers: saved <{} bytes>", this._sharedCount, this._savedSize);
+    }
+
+    /**
+     * Forget the written buffers so the stage can be used for another scene.
+     */
+    public void reset() {
+        this._entries.clear();
+        this._sharedCount = 0;
+        this._savedSize = 0;
+    }
+
+    /**
+     * Compute the xxHash64 of the remaining bytes with a seed of 0. The position of the
+     * buffer is not changed.
+     */
+    public static long hash(ByteBuffer _data) {
+        ByteBuffer _in = _data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int _length = _in.remaining();
+        long _hash;
+
+        if(_length >= 32) {
+            long _v1 = PRIME1 + PRIME2;
+            long _v2 = PRIME2;
+            long _v3 = 0;
+            long _v4 = -PRIME1;
+            while(_in.remaining() >= 32) {
+                _v1 = round(_v1, _in.getLong());
+                _v2 = round(_v2, _in.getLong());
+                _v3 = round(_v3, _in.getLong());
+                _v4 = round(_v4, _in.getLong());
+            }
+
+            _hash = Long.rotateLeft(_v1, 1) + Long.rotateLeft(_v2, 7)
+                    + Long.rotateLeft(_v3, 12) + Long.rotateLeft(_v4, 18);
+            _hash = mergeRound(_hash, _v1);
+            _hash = mergeRound(_hash, _v2);
+            _hash = mergeRound(_hash, _v3);
+            _hash = mergeRound(_hash, _v4);
+        }
+        else {
+            _hash = PRIME5;
+        }
+
+        _hash += _length;
+
+        while(_in.remaining() >= 8) {
+            _hash ^= round(0, _in.getLong());
+            _hash = Long.rotateLeft(_hash, 27) * PRIME1 + PRIME4;
+        }
+
+        if(_in.remaining() >= 4) {
+            _hash ^= Integer.toUnsignedLong(_in.getInt()) * PRIME1;
+            _hash = Long.rotateLeft(_hash, 23) * PRIME2 + PRIME3;
+        }
+
+        while(_in.hasRemaining()) {
+            _hash ^= Byte.toUnsignedLong(_in.get()) * PRIME5;
+            _hash = Long.rotateLeft(_hash, 11) * PRIME1;
+        }
+
+        _hash ^= _hash >>> 33;
+        _hash *= PRIME2;
+        _hash ^= _hash >>> 29;
+        _hash *= PRIME3;
+        _hash ^= _hash >>> 32;
+        return _hash;
+    }
+
+    private static long round(long _acc, long _lane) {
+        _acc += _lane * PRIME2;
+        _acc = Long.rotateLeft(_acc, 31);
+        return _acc * PRIME1;
+    }
+
+    private static long mergeRound(long _acc, long _val) {
+        _acc ^= round(0, _val);
+        return _acc * PRIME1 + PRIME4;
+    }
+}
@@ -7,9 +7,10 @@
 package io.github.chadj2.mesh.buffer;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 
 import de.javagl.jgltf.impl.v2.BufferView;
-import de.javagl.jgltf.impl.v2.GlTF;
 import io.github.chadj2.mesh.MeshGltfWriter;
 import io.github.chadj2.mesh.extsm.PropertyTableProperty;
 
@@ -19,6 +20,8 @@ import io.github.chadj2.mesh.extsm.PropertyTableProperty;
  */
 public class BufferMetadataString extends BufferBase<String>  {
     
+    private final ArrayList<String> _list = new ArrayList<>();
+    
     private final BufferShort _offsets;
 
     public BufferMetadataString(String name) {
@@ -32,20 +35,44 @@ public class BufferMetadataString extends BufferBase<String>  {
      * @return
      */
     public PropertyTableProperty createProperty(MeshGltfWriter _writer) {
-        GlTF gltf = _writer.getGltf();
         PropertyTableProperty ptProp = new PropertyTableProperty();
         
-        BufferView valuesBv = addBufferView(_writer.getGltf(), _writer.getBuffer());
-        int valuesIdx = gltf.getBufferViews().indexOf(valuesBv);
+        // Offsets are calculated before the values are reserved because the arena 
+        // may defer encoding of the values.
+        this._offsets.clear();
+        int offset = 0;
+        for(String val : this._list) {
+            this._offsets.add((short)offset);
+            offset += val.getBytes(StandardCharsets.UTF_8).length;
+        }
+        
+        // the last offset is the end of the last string
+        this._offsets.add((short)offset);
+        
+        BufferView valuesBv = addBufferView(_writer, _writer.getArena(getByteLength()));
+        int valuesIdx = _writer.getBufferViewIndex(valuesBv);
         ptProp.setValues(valuesIdx);
 
-        BufferView offsetsBv = this._offsets.addBufferView(_writer.getGltf(), _writer.getBuffer());
-        int offsetsIdx = gltf.getBufferViews().indexOf(offsetsBv);
+        BufferView offsetsBv = this._offsets.addBufferView(_writer, 
+                _writer.getArena(this._offsets.getByteLength()));
+        int offsetsIdx = _writer.getBufferViewIndex(offsetsBv);
         ptProp.setStringOffsets(offsetsIdx);
         ptProp.setStringOffsetType("UINT16");
         return ptProp;
     }
 
+    @Override
+    public void add(String _primitive) { this._list.add(_primitive); }
+    
+    @Override
+    public String get(int idx) { return this._list.get(idx); }
+    
+    @Override
+    public int size() { return this._list.size(); }
+    
+    @Override
+    public void clear() { this._list.clear(); }
+
     @Override
     public String getMin() {
         throw new UnsupportedOperationException("not implimented");
@@ -56,15 +83,19 @@ public class BufferMetadataString extends BufferBase<String>  {
         throw new UnsupportedOperationException("not implimented");
     }
 
+    @Override
+    protected int getByteLength() {
+        int length = 0;
+        for(String val : this._list) {
+            length += val.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return length;
+    }
+
     @Override
     protected void writeBuf(ByteBuffer buffer) {
-        int startPos = buffer.position();
-        
         for(String val : this._list) {
-            int offset = buffer.position() - startPos;
-            this._offsets.add((short)offset);
-            
-            byte[] bytes = val.getBytes();
+            byte[] bytes = val.getBytes(StandardCharsets.UTF_8);
             buffer.put(bytes);
         }
     }
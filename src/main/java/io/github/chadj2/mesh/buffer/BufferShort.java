@@ -7,49 +7,73 @@
 package io.github.chadj2.mesh.buffer;
 
 import java.nio.ByteBuffer;
-import java.util.Collections;
 
 import de.javagl.jgltf.impl.v2.Accessor;
 import de.javagl.jgltf.impl.v2.BufferView;
-import de.javagl.jgltf.impl.v2.GlTF;
 import de.javagl.jgltf.model.GltfConstants;
+import io.github.chadj2.mesh.MeshGltfWriter;
 
 public class BufferShort extends BufferBase<Short> {
     
+    private final ShortStore _store = new ShortStore();
+    
     public BufferShort(String _name) {
         super(_name);
     }
 
+    @Override
+    public void add(Short _primitive) { add(_primitive.shortValue()); }
+    
+    public void add(short _primitive) { this._store.add(_primitive); }
+    
+    @Override
+    public Short get(int idx) { return this._store.get(idx); }
+    
+    @Override
+    public int size() { return this._store.size(); }
+    
+    @Override
+    public void clear() { this._store.clear(); }
+
+    /**
+     * Get the bits of the smallest unsigned value.
+     */
     @Override
     public Short getMin() { 
-        return Collections.min(this._list);
+        return (short)this._store.getMin();
     }
     
+    /**
+     * Get the bits of the largest unsigned value.
+     */
     @Override
     public Short getMax() {
-        return Collections.max(this._list);
+        return (short)this._store.getMax();
     }
 
     @Override
-    protected Accessor addAccessor(GlTF _gltf, BufferView _bufferView) {
-        Accessor _accessor = super.addAccessor(_gltf, _bufferView);
+    protected Accessor addAccessor(MeshGltfWriter _geoWriter, BufferView _bufferView) {
+        Accessor _accessor = super.addAccessor(_geoWriter, _bufferView);
         _accessor.setComponentType(GltfConstants.GL_UNSIGNED_SHORT);
         _accessor.setType("SCALAR");
         
         _accessor.setMax(new Number[] { 
-                getMax() });
+                this._store.getMax() });
         
         _accessor.setMin(new Number[] { 
-                getMin() });
+                this._store.getMin() });
         
         return _accessor;
     }
     
+    @Override
+    protected int getByteLength() {
+        return this._store.size() * Short.BYTES;
+    }
+    
     @Override
     protected void writeBuf(ByteBuffer _buffer) {
-        for(short _s : this._list) {
-            _buffer.putShort(_s);
-        }
+        this._store.write(_buffer);
     }
     
 }
@@ -6,11 +6,9 @@
 
 package io.github.chadj2.mesh.buffer;
 
-import java.nio.ByteBuffer;
-
 import de.javagl.jgltf.impl.v2.BufferView;
-import de.javagl.jgltf.impl.v2.GlTF;
 import de.javagl.jgltf.model.GltfConstants;
+import io.github.chadj2.mesh.MeshGltfWriter;
 
 public abstract class BufferVecBase<T> extends BufferBase<T> {
     
@@ -22,10 +20,13 @@ public abstract class BufferVecBase<T> extends BufferBase<T> {
     }
     
     @Override
-    protected BufferView addBufferView(GlTF _gltf, ByteBuffer _buffer) {
-        BufferView _bufferView = super.addBufferView(_gltf, _buffer);
+    protected BufferView addBufferView(MeshGltfWriter _geoWriter, ArenaBase _arena) {
+        BufferView _bufferView = super.addBufferView(_geoWriter, _arena);
         _bufferView.setTarget(GltfConstants.GL_ARRAY_BUFFER);
         _bufferView.setByteStride(this._byteStride);
         return _bufferView;
     }
+    
+    @Override
+    protected MeshoptEncoder.Mode getMeshoptMode() { return MeshoptEncoder.Mode.ATTRIBUTES; }
 }
@@ -0,0 +1,68 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.buffer;
+
+import java.nio.ByteBuffer;
+
+import javax.vecmath.Tuple3f;
+
+import de.javagl.jgltf.impl.v2.Accessor;
+import de.javagl.jgltf.impl.v2.BufferView;
+import de.javagl.jgltf.model.GltfConstants;
+import io.github.chadj2.mesh.MeshGltfWriter;
+
+/**
+ * Serializer for unit vectors like normals as normalized BYTE vectors with 
+ * KHR_mesh_quantization. Vectors are padded to 4 bytes because vertex attributes must be 
+ * aligned to 4 bytes.
+ * @author Chad Juliano
+ */
+public class BufferVecByte3 extends BufferVecFloat3 {
+
+    public BufferVecByte3(String _name) {
+        super(_name, Byte.BYTES * 4);
+    }
+
+    private static byte quantize(float _value) {
+        return (byte)MeshQuantization.toSigned(_value, Byte.MAX_VALUE);
+    }
+
+    @Override
+    protected Accessor addAccessor(MeshGltfWriter _geoWriter, BufferView _bufferView) {
+        Accessor _accessor = super.addAccessor(_geoWriter, _bufferView);
+        _accessor.setComponentType(GltfConstants.GL_BYTE);
+        _accessor.setNormalized(true);
+
+        // bounds are the stored integers
+        Tuple3f _min = this.getMin();
+        _accessor.setMin(new Number[] { quantize(_min.x), quantize(_min.y), quantize(_min.z) });
+
+        Tuple3f _max = this.getMax();
+        _accessor.setMax(new Number[] { quantize(_max.x), quantize(_max.y), quantize(_max.z) });
+
+        MeshQuantization.addExtension(_geoWriter.getGltf());
+        return _accessor;
+    }
+
+    @Override
+    protected int getByteLength() {
+        return this.size() * Byte.BYTES * 4;
+    }
+
+    @Override
+    protected void writeBuf(ByteBuffer _buffer) {
+        for(int _i = 0; _i < this.size(); _i++) {
+            _buffer.put(quantize(getComponent(_i, 0)));
+            _buffer.put(quantize(getComponent(_i, 1)));
+            _buffer.put(quantize(getComponent(_i, 2)));
+            _buffer.put((byte)0);
+        }
+    }
+
+    @Override
+    protected MeshoptEncoder.Filter getMeshoptFilter() { return MeshoptEncoder.Filter.OCTAHEDRAL; }
+}
@@ -13,64 +13,83 @@ import javax.vecmath.Vector2f;
 
 import de.javagl.jgltf.impl.v2.Accessor;
 import de.javagl.jgltf.impl.v2.BufferView;
-import de.javagl.jgltf.impl.v2.GlTF;
 import de.javagl.jgltf.model.GltfConstants;
+import io.github.chadj2.mesh.MeshGltfWriter;
 
 public class BufferVecFloat2 extends BufferVecBase<Tuple2f>  {
 
+    private final FloatStore _store = new FloatStore(2);
+    
     public BufferVecFloat2(String _name) {
         super(_name, Float.BYTES * 2);
     }
     
+    /**
+     * @param byteStride Stride of subclasses that write other component types.
+     */
+    protected BufferVecFloat2(String _name, int byteStride) {
+        super(_name, byteStride);
+    }
+    
+    @Override
+    public void add(Tuple2f _primitive) { add(_primitive.x, _primitive.y); }
+    
+    public void add(float _x, float _y) { this._store.add(_x, _y); }
+    
+    /**
+     * Get a copy of a vector.
+     */
+    @Override
+    public Tuple2f get(int idx) {
+        return new Vector2f(this._store.get(idx, 0), this._store.get(idx, 1));
+    }
+    
+    /**
+     * Get a component of a vector without creating a copy.
+     */
+    protected float getComponent(int _idx, int _component) { return this._store.get(_idx, _component); }
+    
+    @Override
+    public int size() { return this._store.size(); }
+    
+    @Override
+    public void clear() { this._store.clear(); }
+    
     @Override
     public Tuple2f getMin() {
-        Tuple2f min = new Vector2f();
-        min.x = Float.POSITIVE_INFINITY;
-        min.y = Float.POSITIVE_INFINITY;
-        
-        for(Tuple2f val : this._list) {
-            min.x =  Math.min(min.x, val.x);
-            min.y =  Math.min(min.y, val.y);
-        }
-        
-        return min;
+        return new Vector2f(this._store.getMin(0), this._store.getMin(1));
     }
     
     @Override
     public Tuple2f getMax() {
-        Tuple2f max = new Vector2f();
-        max.x = Float.NEGATIVE_INFINITY;
-        max.y = Float.NEGATIVE_INFINITY;
-        
-        for(Tuple2f val : this._list) {
-            max.x =  Math.max(max.x, val.x);
-            max.y =  Math.max(max.y, val.y);
-        }
-        
-        return max;
+        return new Vector2f(this._store.getMax(0), this._store.getMax(1));
     }
     
     @Override
-    protected Accessor addAccessor(GlTF _gltf, BufferView _bufferView) {
-        Accessor _accessor = super.addAccessor(_gltf, _bufferView);
+    protected Accessor addAccessor(MeshGltfWriter _geoWriter, BufferView _bufferView) {
+        Accessor _accessor = super.addAccessor(_geoWriter, _bufferView);
         _accessor.setComponentType(GltfConstants.GL_FLOAT);
         _accessor.setType("VEC2");
 
         Tuple2f min = this.getMin();
         _accessor.setMin(new Number[] { min.x, min.y });
         
-        Tuple2f max = this.getMin();
+        Tuple2f max = this.getMax();
         _accessor.setMax(new Number[] { max.x, max.y });
 
         return _accessor;
     }
     
+    @Override
+    protected int getByteLength() {
+        return this._store.size() * Float.BYTES * 2;
+    }
+    
     @Override
     protected void writeBuf(ByteBuffer _buffer) {
-        for(int _i = 0; _i < this._list.size(); _i++) {
-            Tuple2f _vec = this._list.get(_i);
-            _buffer.putFloat(_vec.x);
-            _buffer.putFloat(_vec.y);
-        }
+        this._store.write(_buffer);
     }
+    
+    @Override
+    protected MeshoptEncoder.Filter getMeshoptFilter() { return MeshoptEncoder.Filter.EXPONENTIAL; }
 }
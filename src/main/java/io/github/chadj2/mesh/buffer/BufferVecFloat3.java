@@ -13,69 +13,83 @@ import javax.vecmath.Vector3f;
 
 import de.javagl.jgltf.impl.v2.Accessor;
 import de.javagl.jgltf.impl.v2.BufferView;
-import de.javagl.jgltf.impl.v2.GlTF;
 import de.javagl.jgltf.model.GltfConstants;
+import io.github.chadj2.mesh.MeshGltfWriter;
 
 public class BufferVecFloat3 extends BufferVecBase<Tuple3f>  {
 
+    private final FloatStore _store = new FloatStore(3);
+    
     public BufferVecFloat3(String _name) {
         super(_name, Float.BYTES * 3);
     }
     
+    /**
+     * @param byteStride Stride of subclasses that write other component types.
+     */
+    protected BufferVecFloat3(String _name, int byteStride) {
+        super(_name, byteStride);
+    }
+    
+    @Override
+    public void add(Tuple3f _primitive) { add(_primitive.x, _primitive.y, _primitive.z); }
+    
+    public void add(float _x, float _y, float _z) { this._store.add(_x, _y, _z); }
+    
+    /**
+     * Get a copy of a vector.
+     */
+    @Override
+    public Tuple3f get(int idx) {
+        return new Vector3f(this._store.get(idx, 0), this._store.get(idx, 1), this._store.get(idx, 2));
+    }
+    
+    /**
+     * Get a component of a vector without creating a copy.
+     */
+    protected float getComponent(int _idx, int _component) { return this._store.get(_idx, _component); }
+    
+    @Override
+    public int size() { return this._store.size(); }
+    
+    @Override
+    public void clear() { this._store.clear(); }
+    
     @Override
     public Tuple3f getMin() {
-        Tuple3f min = new Vector3f();
-        min.x = Float.POSITIVE_INFINITY;
-        min.y = Float.POSITIVE_INFINITY;
-        min.z = Float.POSITIVE_INFINITY;
-        
-        for(Tuple3f val : this._list) {
-            min.x =  Math.min(min.x, val.x);
-            min.y =  Math.min(min.y, val.y);
-            min.z =  Math.min(min.z, val.z);
-        }
-        
-        return min;
+        return new Vector3f(this._store.getMin(0), this._store.getMin(1), this._store.getMin(2));
     }
     
     @Override
     public Tuple3f getMax() {
-        Tuple3f max = new Vector3f();
-        max.x = Float.NEGATIVE_INFINITY;
-        max.y = Float.NEGATIVE_INFINITY;
-        max.z = Float.NEGATIVE_INFINITY;
-        
-        for(Tuple3f val : this._list) {
-            max.x =  Math.max(max.x, val.x);
-            max.y =  Math.max(max.y, val.y);
-            max.z =  Math.max(max.z, val.z);
-        }
-        
-        return max;
+        return new Vector3f(this._store.getMax(0), this._store.getMax(1), this._store.getMax(2));
     }
     
     @Override
-    protected Accessor addAccessor(GlTF _gltf, BufferView _bufferView) {
-        Accessor _accessor = super.addAccessor(_gltf, _bufferView);
+    protected Accessor addAccessor(MeshGltfWriter _geoWriter, BufferView _bufferView) {
+        Accessor _accessor = super.addAccessor(_geoWriter, _bufferView);
         _accessor.setComponentType(GltfConstants.GL_FLOAT);
         _accessor.setType("VEC3");
         
         Tuple3f min = this.getMin();
         _accessor.setMin(new Number[] { min.x, min.y, min.z });
         
-        Tuple3f max = this.getMin();
+        Tuple3f max = this.getMax();
         _accessor.setMax(new Number[] { max.x, max.y, max.z });
         
         return _accessor;
     }
     
+    @Override
+    protected int getByteLength() {
+        return this._store.size() * Float.BYTES * 3;
+    }
+    
     @Override
     protected void writeBuf(ByteBuffer _buffer) {
-        for(int _i = 0; _i < this._list.size(); _i++) {
-            Tuple3f _vec = this._list.get(_i);
-            _buffer.putFloat(_vec.x);
-            _buffer.putFloat(_vec.y);
-            _buffer.putFloat(_vec.z);
-        }
+        this._store.write(_buffer);
     }
+    
+    @Override
+    protected MeshoptEncoder.Filter getMeshoptFilter() { return MeshoptEncoder.Filter.EXPONENTIAL; }
 }
@@ -13,74 +13,79 @@ import javax.vecmath.Vector4f;
 
 import de.javagl.jgltf.impl.v2.Accessor;
 import de.javagl.jgltf.impl.v2.BufferView;
-import de.javagl.jgltf.impl.v2.GlTF;
 import de.javagl.jgltf.model.GltfConstants;
+import io.github.chadj2.mesh.MeshGltfWriter;
 
 public class BufferVecFloat4 extends BufferVecBase<Tuple4f> {
     
+    private final FloatStore _store = new FloatStore(4);
+    
     public BufferVecFloat4(String _name) {
         super(_name, Float.BYTES * 4);
     }
     
+    @Override
+    public void add(Tuple4f _primitive) { add(_primitive.x, _primitive.y, _primitive.z, _primitive.w); }
+    
+    public void add(float _x, float _y, float _z, float _w) { this._store.add(_x, _y, _z, _w); }
+    
+    /**
+     * Get a copy of a vector.
+     */
+    @Override
+    public Tuple4f get(int idx) {
+        return new Vector4f(this._store.get(idx, 0), this._store.get(idx, 1), 
+                this._store.get(idx, 2), this._store.get(idx, 3));
+    }
+    
+    /**
+     * Get a component of a vector without creating a copy.
+     */
+    protected float getComponent(int _idx, int _component) { return this._store.get(_idx, _component); }
+    
+    @Override
+    public int size() { return this._store.size(); }
+    
+    @Override
+    public void clear() { this._store.clear(); }
+    
     @Override
     public Tuple4f getMin() {
-        Tuple4f min = new Vector4f();
-        min.x = Float.POSITIVE_INFINITY;
-        min.y = Float.POSITIVE_INFINITY;
-        min.z = Float.POSITIVE_INFINITY;
-        min.w = Float.POSITIVE_INFINITY;
-        
-        for(Tuple4f val : this._list) {
-            min.x =  Math.min(min.x, val.x);
-            min.y =  Math.min(min.y, val.y);
-            min.z =  Math.min(min.z, val.z);
-            min.w =  Math.min(min.w, val.w);
-        }
-        
-        return min;
+        return new Vector4f(this._store.getMin(0), this._store.getMin(1), 
+                this._store.getMin(2), this._store.getMin(3));
     }
     
     @Override
     public Tuple4f getMax() {
-        Tuple4f max = new Vector4f();
-        max.x = Float.NEGATIVE_INFINITY;
-        max.y = Float.NEGATIVE_INFINITY;
-        max.z = Float.NEGATIVE_INFINITY;
-        max.w = Float.NEGATIVE_INFINITY;
-        
-        for(Tuple4f val : this._list) {
-            max.x =  Math.max(max.x, val.x);
-            max.y =  Math.max(max.y, val.y);
-            max.z =  Math.max(max.z, val.z);
-            max.w =  Math.min(max.w, val.w);
-        }
-        
-        return max;
+        return new Vector4f(this._store.getMax(0), this._store.getMax(1), 
+                this._store.getMax(2), this._store.getMax(3));
     }
     
     @Override
-    protected Accessor addAccessor(GlTF _gltf, BufferView _bufferView) {
-        Accessor _accessor = super.addAccessor(_gltf, _bufferView);
+    protected Accessor addAccessor(MeshGltfWriter _geoWriter, BufferView _bufferView) {
+        Accessor _accessor = super.addAccessor(_geoWriter, _bufferView);
         _accessor.setComponentType(GltfConstants.GL_FLOAT);
         _accessor.setType("VEC4");
         
         Tuple4f min = this.getMin();
         _accessor.setMin(new Number[] { min.x, min.y, min.z, min.w });
         
-        Tuple4f max = this.getMin();
+        Tuple4f max = this.getMax();
         _accessor.setMax(new Number[] { max.x, max.y, max.z, max.w });
         
         return _accessor;
     }
     
+    @Override
+    protected int getByteLength() {
+        return this._store.size() * Float.BYTES * 4;
+    }
+    
     @Override
     protected void writeBuf(ByteBuffer _buffer) {
-        for(int _i = 0; _i < this._list.size(); _i++) {
-            Tuple4f _vec = this._list.get(_i);
-            _buffer.putFloat(_vec.x);
-            _buffer.putFloat(_vec.y);
-            _buffer.putFloat(_vec.z);
-            _buffer.putFloat(_vec.w);
-        }
+        this._store.write(_buffer);
     }
+    
+    @Override
+    protected MeshoptEncoder.Filter getMeshoptFilter() { return MeshoptEncoder.Filter.EXPONENTIAL; }
 }
@@ -12,11 +12,12 @@ import javax.vecmath.Tuple4f;
 
 import de.javagl.jgltf.impl.v2.Accessor;
 import de.javagl.jgltf.impl.v2.BufferView;
-import de.javagl.jgltf.impl.v2.GlTF;
 import de.javagl.jgltf.model.GltfConstants;
+import io.github.chadj2.mesh.MeshGltfWriter;
 
 /**
- * Support EXT_mesh_gpu_instancing
+ * Support EXT_mesh_gpu_instancing. Rotations are stored as normalized SHORT quaternions 
+ * which can be compressed with the meshopt QUATERNION filter.
  * @author Chad Juliano
  */
 public class BufferVecQuat extends BufferVecFloat4 {
@@ -26,57 +27,60 @@ public class BufferVecQuat extends BufferVecFloat4 {
     }
     
     @Override
-    protected Accessor addAccessor(GlTF _gltf, BufferView _bufferView) {
-        Accessor _accessor = super.addAccessor(_gltf, _bufferView);
-        _accessor.setComponentType(GltfConstants.GL_BYTE);
+    protected Accessor addAccessor(MeshGltfWriter _geoWriter, BufferView _bufferView) {
+        Accessor _accessor = super.addAccessor(_geoWriter, _bufferView);
+        _accessor.setComponentType(GltfConstants.GL_SHORT);
+        _accessor.setNormalized(true);
         _accessor.setType("VEC4");
         
-        Tuple4f max = this.getMin();
-        _accessor.setMax(new Number[] { 
-                floatToByte(max.x), 
-                floatToByte(max.y), 
-                floatToByte(max.z), 
-                floatToByte(max.w) });
-
+        // bounds are the stored integers
         Tuple4f min = this.getMin();
+        _accessor.setMin(new Number[] { 
+                quantize(min.x), 
+                quantize(min.y), 
+                quantize(min.z), 
+                quantize(min.w) });
+
+        Tuple4f max = this.getMax();
         _accessor.setMax(new Number[] { 
-                floatToByte(min.x), 
-                floatToByte(min.y), 
-                floatToByte(min.z), 
-                floatToByte(min.w) });
+                quantize(max.x), 
+                quantize(max.y), 
+                quantize(max.z), 
+                quantize(max.w) });
         
         return _accessor;
     }
     
+    @Override
+    protected int getByteLength() {
+        return this.size() * Short.BYTES * 4;
+    }
+    
     @Override
     protected void writeBuf(ByteBuffer _buffer) {
-        for(int _i = 0; _i < this._list.size(); _i++) {
-            Tuple4f _vec = this._list.get(_i);
-            _buffer.put(floatToByte(_vec.x));
-            _buffer.put(floatToByte(_vec.y));
-            _buffer.put(floatToByte(_vec.z));
-            _buffer.put(floatToByte(_vec.w));
+        for(int _i = 0; _i < this.size(); _i++) {
+            _buffer.putShort(quantize(getComponent(_i, 0)));
+            _buffer.putShort(quantize(getComponent(_i, 1)));
+            _buffer.putShort(quantize(getComponent(_i, 2)));
+            _buffer.putShort(quantize(getComponent(_i, 3)));
         }
     }
     
     /**
      * @see "https://registry.khronos.org/glTF/specs/2.0/glTF-2.0.html#animations"
-     * @param fVal
-     * @return
      */
-    private static byte floatToByte(float fVal) {
-        Integer iVal = Math.round(fVal * Byte.MAX_VALUE);
-        if(iVal < Byte.MIN_VALUE || iVal > Byte.MAX_VALUE) {
-            throw new RuntimeException(String.format("Value overflow: %d", iVal));
-        }
-        return iVal.byteValue();
+    private static short quantize(float fVal) {
+        return (short)MeshQuantization.toSigned(fVal, Short.MAX_VALUE);
     }
     
     @Override
-    protected BufferView addBufferView(GlTF _gltf, ByteBuffer _buffer) {
-        BufferView _bufferView = super.addBufferView(_gltf, _buffer);
+    protected BufferView addBufferView(MeshGltfWriter _geoWriter, ArenaBase _arena) {
+        BufferView _bufferView = super.addBufferView(_geoWriter, _arena);
         _bufferView.setTarget(GltfConstants.GL_ARRAY_BUFFER);
-        _bufferView.setByteStride(Byte.BYTES * 4);
+        _bufferView.setByteStride(Short.BYTES * 4);
         return _bufferView;
     }
+    
+    @Override
+    protected MeshoptEncoder.Filter getMeshoptFilter() { return MeshoptEncoder.Filter.QUATERNION; }
 }
@@ -0,0 +1,90 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.buffer;
+
+import java.nio.ByteBuffer;
+
+import javax.vecmath.Tuple3f;
+import javax.vecmath.Vector3f;
+
+import de.javagl.jgltf.impl.v2.Accessor;
+import de.javagl.jgltf.impl.v2.BufferView;
+import de.javagl.jgltf.model.GltfConstants;
+import io.github.chadj2.mesh.MeshGltfWriter;
+
+/**
+ * Serializer for positions as normalized SHORT vectors with KHR_mesh_quantization. Each 
+ * vector is stored as (value - offset) / scale so the node that uses the mesh must apply 
+ * the offset as translation and the scale as uniform scale. Vectors are padded to 8 bytes
+ * because vertex attributes must be aligned to 4 bytes.
+ * @author Chad Juliano
+ */
+public class BufferVecShort3 extends BufferVecFloat3 {
+
+    private final Tuple3f _offset;
+
+    private final float _scale;
+
+    /**
+     * @param _offset Value that is subtracted before scaling.
+     * @param _scale Divisor that maps the values into the range [-1, 1].
+     */
+    public BufferVecShort3(String _name, Tuple3f _offset, float _scale) {
+        super(_name, Short.BYTES * 4);
+        this._offset = new Vector3f(_offset);
+        this._scale = _scale;
+    }
+
+    public Tuple3f getOffset() { return this._offset; }
+
+    public float getScale() { return this._scale; }
+
+    private short quantize(float _value, float _offset) {
+        return (short)MeshQuantization.toSigned((_value - _offset) / this._scale, Short.MAX_VALUE);
+    }
+
+    @Override
+    protected Accessor addAccessor(MeshGltfWriter _geoWriter, BufferView _bufferView) {
+        Accessor _accessor = super.addAccessor(_geoWriter, _bufferView);
+        _accessor.setComponentType(GltfConstants.GL_SHORT);
+        _accessor.setNormalized(true);
+
+        // bounds are the stored integers
+        Tuple3f _min = this.getMin();
+        _accessor.setMin(new Number[] { 
+                quantize(_min.x, this._offset.x), 
+                quantize(_min.y, this._offset.y), 
+                quantize(_min.z, this._offset.z) });
+
+        Tuple3f _max = this.getMax();
+        _accessor.setMax(new Number[] { 
+                quantize(_max.x, this._offset.x), 
+                quantize(_max.y, this._offset.y), 
+                quantize(_max.z, this._offset.z) });
+
+        MeshQuantization.addExtension(_geoWriter.getGltf());
+        return _accessor;
+    }
+
+    @Override
+    protected int getByteLength() {
+        return this.size() * Short.BYTES * 4;
+    }
+
+    @Override
+    protected void writeBuf(ByteBuffer _buffer) {
+        for(int _i = 0; _i < this.size(); _i++) {
+            _buffer.putShort(quantize(getComponent(_i, 0), this._offset.x));
+            _buffer.putShort(quantize(getComponent(_i, 1), this._offset.y));
+            _buffer.putShort(quantize(getComponent(_i, 2), this._offset.z));
+            _buffer.putShort((short)0);
+        }
+    }
+
+    @Override
+    protected MeshoptEncoder.Filter getMeshoptFilter() { return MeshoptEncoder.Filter.NONE; }
+}
@@ -0,0 +1,78 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.buffer;
+
+import java.nio.ByteBuffer;
+
+import javax.vecmath.Tuple2f;
+
+import de.javagl.jgltf.impl.v2.Accessor;
+import de.javagl.jgltf.impl.v2.BufferView;
+import de.javagl.jgltf.model.GltfConstants;
+import io.github.chadj2.mesh.MeshGltfWriter;
+
+/**
+ * Serializer for texture coordinates as normalized UNSIGNED_SHORT vectors with 
+ * KHR_mesh_quantization. Values must be in the range [0, 1].
+ * @author Chad Juliano
+ */
+public class BufferVecUShort2 extends BufferVecFloat2 {
+
+    private static final int MAX_VALUE = 0xffff;
+
+    public BufferVecUShort2(String _name) {
+        super(_name, Short.BYTES * 2);
+    }
+
+    /**
+     * Indicates if the values of a buffer are in the range that can be stored.
+     */
+    public static boolean isInRange(BufferVecFloat2 _buffer) {
+        Tuple2f _min = _buffer.getMin();
+        Tuple2f _max = _buffer.getMax();
+        return _min.x >= 0f && _min.y >= 0f && _max.x <= 1f && _max.y <= 1f;
+    }
+
+    private static short quantize(float _value) {
+        return (short)MeshQuantization.toUnsigned(_value, MAX_VALUE);
+    }
+
+    @Override
+    protected Accessor addAccessor(MeshGltfWriter _geoWriter, BufferView _bufferView) {
+        Accessor _accessor = super.addAccessor(_geoWriter, _bufferView);
+        _accessor.setComponentType(GltfConstants.GL_UNSIGNED_SHORT);
+        _accessor.setNormalized(true);
+
+        // bounds are the stored integers
+        Tuple2f _min = this.getMin();
+        _accessor.setMin(new Number[] { 
+                Short.toUnsignedInt(quantize(_min.x)), Short.toUnsignedInt(quantize(_min.y)) });
+
+        Tuple2f _max = this.getMax();
+        _accessor.setMax(new Number[] { 
+                Short.toUnsignedInt(quantize(_max.x)), Short.toUnsignedInt(quantize(_max.y)) });
+
+        MeshQuantization.addExtension(_geoWriter.getGltf());
+        return _accessor;
+    }
+
+    @Override
+    protected int getByteLength() {
+        return this.size() * Short.BYTES * 2;
+    }
+
+    @Override
+    protected void writeBuf(ByteBuffer _buffer) {
+        for(int _i = 0; _i < this.size(); _i++) {
+            _buffer.putShort(quantize(getComponent(_i, 0)));
+            _buffer.putShort(quantize(getComponent(_i, 1)));
+        }
+    }
+
+    @Override
+    protected MeshoptEncoder.Filter getMeshoptFilter() { return MeshoptEncoder.Filter.NONE; }
+}
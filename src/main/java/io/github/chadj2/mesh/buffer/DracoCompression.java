@@ -0,0 +1,342 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.buffer;
+
+import java.nio.ByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.javagl.jgltf.impl.v2.Accessor;
+import de.javagl.jgltf.impl.v2.BufferView;
+import de.javagl.jgltf.impl.v2.GlTF;
+import de.javagl.jgltf.impl.v2.MeshPrimitive;
+import de.javagl.jgltf.model.GltfConstants;
+import io.github.chadj2.mesh.MeshGltfWriter;
+import io.github.chadj2.mesh.buffer.DracoEncoder.AttributeType;
+import io.github.chadj2.mesh.buffer.DracoEncoder.DataType;
+import io.github.chadj2.mesh.extdraco.MeshPrimitiveDracoMeshCompression;
+
+/**
+ * Output stage that compresses triangle primitives with KHR_draco_mesh_compression. The
+ * attributes and indices of a primitive are collected between beginPrimitive() and
+ * endPrimitive() and then stored as a single Draco BufferView. The accessors are still
+ * added but they only get BufferViews if the fallback is enabled. Float attributes are
+ * quantized so compression is lossy.
+ * @author Chad Juliano
+ */
+public class DracoCompression {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DracoCompression.class);
+
+    public static final String EXTENSION = "KHR_draco_mesh_compression";
+
+    /** Quantization bits for each type of attribute. */
+    private int _positionBits = 14;
+    private int _normalBits = 10;
+    private int _texCoordBits = 12;
+    private int _genericBits = 12;
+
+    /** Indicates if the uncompressed accessors are kept. */
+    private boolean _isFallback = false;
+
+    /** Number of primitives that were compressed. */
+    private int _primitiveCount = 0;
+
+    /** Bytes of the compressed attributes and indices before compression. */
+    private long _rawSize = 0;
+
+    /** Bytes of the Draco BufferViews. */
+    private long _compressedSize = 0;
+
+    /** Primitive that is being collected. */
+    private MeshPrimitive _primitive = null;
+    private DracoEncoder _encoder = null;
+    private MeshPrimitiveDracoMeshCompression _ext = null;
+    private int[] _indices = null;
+    private int _numPoints = 0;
+
+    /**
+     * Set the number of bits used to quantize float attributes. Each value must be between 1
+     * and DracoEncoder.MAX_QUANTIZATION_BITS.
+     * @param _position Bits for POSITION.
+     * @param _normal Bits for NORMAL.
+     * @param _texCoord Bits for TEXCOORD attributes.
+     * @param _generic Bits for other float attributes.
+     */
+    public void setQuantizationBits(int _position, int _normal, int _texCoord, int _generic) {
+        for(int _bits : new int[] { _position, _normal, _texCoord, _generic }) {
+            if(_bits < 1 || _bits > DracoEncoder.MAX_QUANTIZATION_BITS) {
+                String msg = String.format("Quantization bits must be between 1 and %d: %d",
+                        DracoEncoder.MAX_QUANTIZATION_BITS, _bits);
+                throw new IllegalArgumentException(msg);
+            }
+        }
+        this._positionBits = _position;
+        this._normalBits = _normal;
+        this._texCoordBits = _texCoord;
+        this._genericBits = _generic;
+    }
+
+    /**
+     * Keep the uncompressed accessors so that clients without Draco support can load the
+     * file. If this is disabled then the extension is required.
+     */
+    public void setFallback(boolean _isFallback) { this._isFallback = _isFallback; }
+
+    public boolean isFallback() { return this._isFallback; }
+
+    /**
+     * Get the number of primitives that were compressed.
+     */
+    public int getPrimitiveCount() { return this._primitiveCount; }
+
+    /**
+     * Get the size of the compressed attributes and indices before compression.
+     */
+    public long getRawSize() { return this._rawSize; }
+
+    /**
+     * Get the size of the Draco BufferViews.
+     */
+    public long getCompressedSize() { return this._compressedSize; }
+
+    /**
+     * Start collecting the buffers of a triangle primitive. A primitive that was not ended
+     * because its build failed is discarded.
+     */
+    public void beginPrimitive(MeshPrimitive _meshPrimitive) {
+        this._primitive = _meshPrimitive;
+        this._encoder = new DracoEncoder();
+        this._ext = new MeshPrimitiveDracoMeshCompression();
+        this._indices = null;
+        this._numPoints = 0;
+    }
+
+    /**
+     * Indicates if the buffers of the primitive are being collected.
+     */
+    boolean isCompressing(MeshPrimitive _meshPrimitive) {
+        return this._primitive != null && this._primitive == _meshPrimitive;
+    }
+
+    /**
+     * Add the data of an accessor to the primitive.
+     * @param _attribute Name of the attribute or null for the indices.
+     * @param _accessor Accessor with the type of the data.
+     * @param _raw Data in little endian order.
+     */
+    void add(String _attribute, Accessor _accessor, ByteBuffer _raw) {
+        this._rawSize += _raw.remaining();
+        int _componentType = _accessor.getComponentType();
+        int _componentSize = getComponentSize(_componentType);
+        int _components = getComponents(_accessor.getType());
+
+        // elements can be padded to a multiple of 4 bytes
+        int _count = _accessor.getCount();
+        int _stride = _raw.remaining() / _count;
+
+        int[] _ints = null;
+        float[] _floats = null;
+        if(_componentType == GltfConstants.GL_FLOAT) {
+            _floats = new float[_count * _components];
+        }
+        else {
+            _ints = new int[_count * _components];
+        }
+
+        for(int _idx = 0; _idx < _count; _idx++) {
+            for(int _comp = 0; _comp < _components; _comp++) {
+                int _pos = _raw.position() + _idx * _stride + _comp * _componentSize;
+                if(_floats != null) {
+                    _floats[_idx * _components + _comp] = _raw.getFloat(_pos);
+                }
+                else {
+                    _ints[_idx * _components + _comp] = getInt(_raw, _pos, _componentType);
+                }
+            }
+        }
+
+        if(_attribute == null) {
+            this._indices = _ints;
+            return;
+        }
+
+        this._numPoints = _count;
+
+        AttributeType _type = getAttributeType(_attribute);
+        int _id;
+        if(_floats != null) {
+            _id = this._encoder.addQuantizedAttribute(_type, _floats, _components, getBits(_type));
+        }
+        else {
+            DataType _dataType = getDataType(_accessor.getComponentType());
+            boolean _normalized = Boolean.TRUE.equals(_accessor.isNormalized());
+            _id = this._encoder.addIntegerAttribute(_type, _dataType, _normalized, _ints, _components);
+        }
+
+        this._ext.addAttributes(_attribute, _id);
+    }
+
+    /**
+     * Encode the collected buffers and add the Draco BufferView to the primitive.
+     * @param _name Name used for the BufferView.
+     */
+    public void endPrimitive(MeshGltfWriter _geoWriter, String _name) {
+        if(this._primitive == null) {
+            throw new IllegalStateException("Draco primitive was not started");
+        }
+        if(this._indices == null) {
+            throw new IllegalStateException("Draco primitive has no indices: " + _name);
+        }
+
+        byte[] _data = this._encoder.encode(this._indices, this._numPoints);
+
+        BufferView _bufferView = new BufferView();
+        _geoWriter.addBufferView(_bufferView);
+        _bufferView.setName(String.format("%s-%s", _name, DracoEncoder.class.getSimpleName()));
+
+        ArenaBase _arena = _geoWriter.getArena(_data.length);
+        long _startPos = _arena.reserve(_data.length, _buffer -> _buffer.put(_data));
+        _bufferView.setBuffer(_arena.getBufferIndex());
+        _bufferView.setByteOffset((int)_startPos);
+        _bufferView.setByteLength(_data.length);
+
+        this._ext.setBufferView(_geoWriter.getBufferViewIndex(_bufferView));
+        this._primitive.addExtensions(EXTENSION, this._ext);
+
+        this._primitiveCount++;
+        this._compressedSize += _data.length;
+        LOG.debug("Draco compressed {}: points=<{}> triangles=<{}> size=<{} bytes>",
+                _bufferView.getName(), this._numPoints, this._indices.length / 3, _data.length);
+
+        this._primitive = null;
+        this._encoder = null;
+        this._ext = null;
+        this._indices = null;
+    }
+
+    /**
+     * Declare the extension. This does nothing if no primitives were compressed.
+     */
+    public void addExtension(GlTF _gltf) {
+        if(this._primitiveCount == 0) {
+            return;
+        }
+
+        if(_gltf.getExtensionsUsed() == null || !_gltf.getExtensionsUsed().contains(EXTENSION)) {
+            _gltf.addExtensionsUsed(EXTENSION);
+            if(!this._isFallback) {
+                // the accessors have no data
+                _gltf.addExtensionsRequired(EXTENSION);
+            }
+        }
+
+        LOG.info("Draco compressed {} primitives: <{} bytes> to <{} bytes>",
+                this._primitiveCount, this._rawSize, this._compressedSize);
+    }
+
+    /**
+     * Forget the compressed primitives so the stage can be used for another scene.
+     */
+    public void reset() {
+        this._primitive = null;
+        this._encoder = null;
+        this._ext = null;
+        this._indices = null;
+        this._primitiveCount = 0;
+        this._rawSize = 0;
+        this._compressedSize = 0;
+    }
+
+    private int getBits(AttributeType _type) {
+        switch(_type) {
+            case POSITION:
+                return this._positionBits;
+            case NORMAL:
+                return this._normalBits;
+            case TEX_COORD:
+                return this._texCoordBits;
+            default:
+                return this._genericBits;
+        }
+    }
+
+    private static AttributeType getAttributeType(String _attribute) {
+        if(_attribute.equals("POSITION")) {
+            return AttributeType.POSITION;
+        }
+        if(_attribute.equals("NORMAL")) {
+            return AttributeType.NORMAL;
+        }
+        if(_attribute.startsWith("COLOR_")) {
+            return AttributeType.COLOR;
+        }
+        if(_attribute.startsWith("TEXCOORD_")) {
+            return AttributeType.TEX_COORD;
+        }
+        return AttributeType.GENERIC;
+    }
+
+    private static int getComponents(String _type) {
+        switch(_type) {
+            case "SCALAR":
+                return 1;
+            case "VEC2":
+                return 2;
+            case "VEC3":
+                return 3;
+            case "VEC4":
+                return 4;
+            default:
+                throw new IllegalArgumentException("Draco can't compress accessor type: " + _type);
+        }
+    }
+
+    private static int getComponentSize(int _componentType) {
+        switch(_componentType) {
+            case GltfConstants.GL_BYTE:
+            case GltfConstants.GL_UNSIGNED_BYTE:
+                return Byte.BYTES;
+            case GltfConstants.GL_SHORT:
+            case GltfConstants.GL_UNSIGNED_SHORT:
+                return Short.BYTES;
+            default:
+                return Integer.BYTES;
+        }
+    }
+
+    private static DataType getDataType(int _componentType) {
+        switch(_componentType) {
+            case GltfConstants.GL_BYTE:
+                return DataType.INT8;
+            case GltfConstants.GL_UNSIGNED_BYTE:
+                return DataType.UINT8;
+            case GltfConstants.GL_SHORT:
+                return DataType.INT16;
+            case GltfConstants.GL_UNSIGNED_SHORT:
+                return DataType.UINT16;
+            default:
+                return DataType.UINT32;
+        }
+    }
+
+    private static int getInt(ByteBuffer _raw, int _pos, int _componentType) {
+        switch(_componentType) {
+            case GltfConstants.GL_BYTE:
+                return _raw.get(_pos);
+            case GltfConstants.GL_UNSIGNED_BYTE:
+                return Byte.toUnsignedInt(_raw.get(_pos));
+            case GltfConstants.GL_SHORT:
+                return _raw.getShort(_pos);
+            case GltfConstants.GL_UNSIGNED_SHORT:
+                return Short.toUnsignedInt(_raw.getShort(_pos));
+            default:
+                return _raw.getInt(_pos);
+        }
+    }
+}
@@ -0,0 +1,539 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.buffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encoder for triangle meshes in the Draco bitstream (version 2.2) used by the
+ * KHR_draco_mesh_compression extension. Connectivity is stored with the sequential mesh
+ * encoding so the decoded points have the same order as the input. Float attributes are
+ * quantized and integer attributes are stored as they are. All values are delta coded
+ * with the wrap transform and compressed with the rANS symbol coder. The output only
+ * depends on the input so the same mesh always gives the same bytes.
+ * @see "https://google.github.io/draco/spec/"
+ * @author Chad Juliano
+ */
+public final class DracoEncoder {
+
+    /**
+     * Semantic of an attribute. The ordinal is the Draco attribute type.
+     */
+    public enum AttributeType {
+        POSITION,
+        NORMAL,
+        COLOR,
+        TEX_COORD,
+        GENERIC
+    }
+
+    /**
+     * Data type of an attribute after it is decoded.
+     */
+    public enum DataType {
+        INT8(1),
+        UINT8(2),
+        INT16(3),
+        UINT16(4),
+        INT32(5),
+        UINT32(6),
+        FLOAT32(9);
+
+        private final int _id;
+
+        DataType(int _id) { this._id = _id; }
+    }
+
+    private static final byte[] MAGIC = { 'D', 'R', 'A', 'C', 'O' };
+
+    private static final int VERSION_MAJOR = 2;
+
+    private static final int VERSION_MINOR = 2;
+
+    private static final int TRIANGULAR_MESH = 1;
+
+    private static final int MESH_SEQUENTIAL_ENCODING = 0;
+
+    private static final int SEQUENTIAL_COMPRESSED_INDICES = 0;
+
+    private static final int SEQUENTIAL_ENCODER_INTEGER = 1;
+
+    private static final int SEQUENTIAL_ENCODER_QUANTIZATION = 2;
+
+    private static final int PREDICTION_DIFFERENCE = 0;
+
+    private static final int PREDICTION_TRANSFORM_WRAP = 1;
+
+    private static final int SYMBOL_CODING_RAW = 1;
+
+    /** Largest symbol bit length supported by the raw symbol coding. */
+    private static final int MAX_RAW_BIT_LENGTH = 18;
+
+    /** Largest number of quantization bits. This keeps the symbols within the raw coding. */
+    public static final int MAX_QUANTIZATION_BITS = 16;
+
+    /** Renormalization base of the rANS coder. */
+    private static final int ANS_IO_BASE = 256;
+
+    private static class Attribute {
+        AttributeType _type;
+        DataType _dataType;
+        int _components;
+        boolean _normalized;
+
+        /** Values converted to integers. */
+        int[] _values;
+
+        /** Quantization parameters if the attribute is float. */
+        float[] _min;
+        float _range;
+        int _bits = 0;
+    }
+
+    private final List<Attribute> _attributes = new ArrayList<>();
+
+    /**
+     * Add a float attribute that will be quantized.
+     * @param _values Components of each point.
+     * @param _components Number of components per point.
+     * @param _bits Quantization bits from 1 to MAX_QUANTIZATION_BITS.
+     * @return unique id of the attribute in the Draco mesh.
+     */
+    public int addQuantizedAttribute(AttributeType _type, float[] _values, int _components,
+            int _bits) {
+        if(_bits < 1 || _bits > MAX_QUANTIZATION_BITS) {
+            String msg = String.format("Quantization bits must be between 1 and %d: %d",
+                    MAX_QUANTIZATION_BITS, _bits);
+            throw new IllegalArgumentException(msg);
+        }
+
+        Attribute _attr = newAttribute(_type, DataType.FLOAT32, false, _values.length, _components);
+        _attr._bits = _bits;
+        _attr._min = new float[_components];
+        Arrays.fill(_attr._min, Float.POSITIVE_INFINITY);
+        float[] _max = new float[_components];
+        Arrays.fill(_max, Float.NEGATIVE_INFINITY);
+
+        for(int _idx = 0; _idx < _values.length; _idx++) {
+            int _comp = _idx % _components;
+            _attr._min[_comp] = Math.min(_attr._min[_comp], _values[_idx]);
+            _max[_comp] = Math.max(_max[_comp], _values[_idx]);
+        }
+
+        // one range is shared by all components
+        float _range = 0f;
+        for(int _comp = 0; _comp < _components; _comp++) {
+            _range = Math.max(_range, _max[_comp] - _attr._min[_comp]);
+        }
+        if(_range == 0f) {
+            _range = 1f;
+        }
+        _attr._range = _range;
+
+        int _maxQuantized = (1 << _bits) - 1;
+        float _inverseDelta = _maxQuantized / _range;
+        _attr._values = new int[_values.length];
+        for(int _idx = 0; _idx < _values.length; _idx++) {
+            float _value = (_values[_idx] - _attr._min[_idx % _components]) * _inverseDelta;
+            int _quantized = (int)Math.floor(_value + 0.5f);
+            _attr._values[_idx] = Math.max(0, Math.min(_maxQuantized, _quantized));
+        }
+
+        return addAttribute(_attr);
+    }
+
+    /**
+     * Add an integer attribute that will be stored without loss.
+     * @param _dataType Type of the decoded values.
+     * @param _normalized Indicates that the values are normalized when converted to float.
+     * @param _values Components of each point.
+     * @param _components Number of components per point.
+     * @return unique id of the attribute in the Draco mesh.
+     */
+    public int addIntegerAttribute(AttributeType _type, DataType _dataType, boolean _normalized,
+            int[] _values, int _components) {
+        if(_dataType == DataType.FLOAT32) {
+            throw new IllegalArgumentException("Float attributes must be quantized");
+        }
+
+        Attribute _attr = newAttribute(_type, _dataType, _normalized, _values.length, _components);
+        _attr._values = _values.clone();
+        return addAttribute(_attr);
+    }
+
+    private static Attribute newAttribute(AttributeType _type, DataType _dataType,
+            boolean _normalized, int _length, int _components) {
+        if(_components < 1 || _components > 4 || _length % _components != 0) {
+            String msg = String.format("Attribute with %d values can't have %d components",
+                    _length, _components);
+            throw new IllegalArgumentException(msg);
+        }
+
+        Attribute _attr = new Attribute();
+        _attr._type = _type;
+        _attr._dataType = _dataType;
+        _attr._normalized = _normalized;
+        _attr._components = _components;
+        return _attr;
+    }
+
+    private int addAttribute(Attribute _attr) {
+        this._attributes.add(_attr);
+        return this._attributes.size() - 1;
+    }
+
+    /**
+     * Get the number of attributes that were added.
+     */
+    public int getAttributeCount() { return this._attributes.size(); }
+
+    /**
+     * Encode the triangles and the attributes.
+     * @param _indices Indices of the triangle corners.
+     * @param _numPoints Number of points. Each attribute must have a value for every point.
+     * @return Draco bitstream
+     */
+    public byte[] encode(int[] _indices, int _numPoints) {
+        if(_indices.length % 3 != 0) {
+            String msg = String.format("Triangle index count must be a multiple of 3: %d",
+                    _indices.length);
+            throw new IllegalArgumentException(msg);
+        }
+        for(Attribute _attr : this._attributes) {
+            if(_attr._values.length != _numPoints * _attr._components) {
+                String msg = String.format("Attribute %s has %d values for %d points",
+                        _attr._type, _attr._values.length / _attr._components, _numPoints);
+                throw new IllegalArgumentException(msg);
+            }
+        }
+
+        Output _out = new Output(_indices.length + _numPoints * 4);
+
+        // header
+        for(byte _b : MAGIC) {
+            _out.put(_b);
+        }
+        _out.put(VERSION_MAJOR);
+        _out.put(VERSION_MINOR);
+        _out.put(TRIANGULAR_MESH);
+        _out.put(MESH_SEQUENTIAL_ENCODING);
+        _out.putShort(0);
+
+        encodeConnectivity(_indices, _numPoints, _out);
+
+        if(this._attributes.isEmpty()) {
+            _out.put(0);
+            return _out.toArray();
+        }
+
+        // all attributes are stored with a single sequential decoder
+        _out.put(1);
+        _out.putVarint(this._attributes.size());
+        for(int _id = 0; _id < this._attributes.size(); _id++) {
+            Attribute _attr = this._attributes.get(_id);
+            _out.put(_attr._type.ordinal());
+            _out.put(_attr._dataType._id);
+            _out.put(_attr._components);
+            _out.put(_attr._normalized ? 1 : 0);
+            _out.putVarint(_id);
+        }
+        for(Attribute _attr : this._attributes) {
+            _out.put(_attr._bits > 0 ? SEQUENTIAL_ENCODER_QUANTIZATION : SEQUENTIAL_ENCODER_INTEGER);
+        }
+
+        for(Attribute _attr : this._attributes) {
+            encodeValues(_attr, _out);
+        }
+
+        // data needed to transform the integer values back to floats
+        for(Attribute _attr : this._attributes) {
+            if(_attr._bits == 0) {
+                continue;
+            }
+            for(float _min : _attr._min) {
+                _out.putFloat(_min);
+            }
+            _out.putFloat(_attr._range);
+            _out.put(_attr._bits);
+        }
+
+        return _out.toArray();
+    }
+
+    /**
+     * Store the indices as differences from the previous index.
+     */
+    private static void encodeConnectivity(int[] _indices, int _numPoints, Output _out) {
+        _out.putVarint(_indices.length / 3);
+        _out.putVarint(_numPoints);
+        _out.put(SEQUENTIAL_COMPRESSED_INDICES);
+
+        int[] _symbols = new int[_indices.length];
+        int _last = 0;
+        for(int _idx = 0; _idx < _indices.length; _idx++) {
+            int _index = _indices[_idx];
+            if(_index < 0 || _index >= _numPoints) {
+                String msg = String.format("Index %d is out of range for %d points",
+                        _index, _numPoints);
+                throw new IllegalArgumentException(msg);
+            }
+
+            // the sign is stored in the lowest bit
+            int _diff = _index - _last;
+            _symbols[_idx] = (Math.abs(_diff) << 1) | (_diff < 0 ? 1 : 0);
+            _last = _index;
+        }
+
+        encodeSymbols(_symbols, _out);
+    }
+
+    /**
+     * Encode the values of an attribute with the difference prediction and the wrap transform.
+     */
+    private static void encodeValues(Attribute _attr, Output _out) {
+        int[] _values = _attr._values;
+        int _components = _attr._components;
+
+        _out.put(PREDICTION_DIFFERENCE);
+        _out.put(PREDICTION_TRANSFORM_WRAP);
+
+        int _min = Integer.MAX_VALUE;
+        int _max = Integer.MIN_VALUE;
+        for(int _value : _values) {
+            _min = Math.min(_min, _value);
+            _max = Math.max(_max, _value);
+        }
+        if(_values.length == 0) {
+            _min = 0;
+            _max = 0;
+        }
+
+        // corrections outside of half the range wrap around to the other side
+        int _maxDif = 1 + (_max - _min);
+        int _maxCorrection = _maxDif / 2;
+        int _minCorrection = -_maxCorrection;
+        if((_maxDif & 1) == 0) {
+            _maxCorrection -= 1;
+        }
+
+        int[] _symbols = new int[_values.length];
+        for(int _idx = 0; _idx < _values.length; _idx++) {
+            // the first value is predicted from zero clamped to the range
+            int _predicted = _idx < _components
+                    ? Math.max(_min, Math.min(_max, 0)) : _values[_idx - _components];
+            int _correction = _values[_idx] - _predicted;
+            if(_correction < _minCorrection) {
+                _correction += _maxDif;
+            }
+            else if(_correction > _maxCorrection) {
+                _correction -= _maxDif;
+            }
+
+            // the sign is stored in the lowest bit
+            _symbols[_idx] = _correction >= 0 ? (_correction << 1) : ((-(_correction + 1)) << 1) | 1;
+        }
+
+        // values are compressed
+        _out.put(1);
+        encodeSymbols(_symbols, _out);
+
+        // wrap transform
+        _out.putInt(_min);
+        _out.putInt(_max);
+    }
+
+    /**
+     * Compress symbols with the raw scheme of the rANS symbol coder. The probability table
+     * is stored before the compressed data.
+     */
+    private static void encodeSymbols(int[] _symbols, Output _out) {
+        if(_symbols.length == 0) {
+            return;
+        }
+
+        int _maxSymbol = 0;
+        for(int _symbol : _symbols) {
+            _maxSymbol = Math.max(_maxSymbol, _symbol);
+        }
+        if(_maxSymbol >= (1 << (MAX_RAW_BIT_LENGTH - 1))) {
+            String msg = String.format("Symbol is too large for raw coding: %d", _maxSymbol);
+            throw new IllegalArgumentException(msg);
+        }
+
+        long[] _freqs = new long[_maxSymbol + 1];
+        for(int _symbol : _symbols) {
+            _freqs[_symbol]++;
+        }
+        int _unique = 0;
+        for(long _freq : _freqs) {
+            if(_freq > 0) {
+                _unique++;
+            }
+        }
+
+        // the decoder derives the precision from the bit length
+        int _bitLength = Math.max(1, Math.min(MAX_RAW_BIT_LENGTH, 32 - Integer.numberOfLeadingZeros(_unique)));
+        int _precisionBits = Math.max(12, Math.min(20, (3 * _bitLength) / 2));
+        int _precision = 1 << _precisionBits;
+
+        _out.put(SYMBOL_CODING_RAW);
+        _out.put(_bitLength);
+
+        int[] _probs = normalizeFrequencies(_freqs, _symbols.length, _precision);
+        int[] _cumProbs = new int[_probs.length];
+        for(int _idx = 1; _idx < _probs.length; _idx++) {
+            _cumProbs[_idx] = _cumProbs[_idx - 1] + _probs[_idx - 1];
+        }
+
+        encodeProbabilityTable(_probs, _out);
+
+        // symbols are encoded in reverse so the decoder reads them in order
+        long _ransBase = 4L * _precision;
+        Output _ans = new Output(_symbols.length);
+        long _state = _ransBase;
+        for(int _idx = _symbols.length - 1; _idx >= 0; _idx--) {
+            int _prob = _probs[_symbols[_idx]];
+            while(_state >= (_ransBase / _precision) * ANS_IO_BASE * _prob) {
+                _ans.put((int)(_state % ANS_IO_BASE));
+                _state /= ANS_IO_BASE;
+            }
+            _state = (_state / _prob) * _precision + _state % _prob + _cumProbs[_symbols[_idx]];
+        }
+
+        // the final state is stored at the end with its size in the top 2 bits
+        int _final = (int)(_state - _ransBase);
+        if(_final < (1 << 6)) {
+            _ans.put(_final);
+        }
+        else if(_final < (1 << 14)) {
+            _ans.putLE((1 << 14) | _final, 2);
+        }
+        else if(_final < (1 << 22)) {
+            _ans.putLE((2 << 22) | _final, 3);
+        }
+        else {
+            _ans.putLE((3 << 30) | _final, 4);
+        }
+
+        _out.putVarint(_ans._size);
+        _out.put(_ans._data, _ans._size);
+    }
+
+    /**
+     * Scale the frequencies so that they sum to the precision. Every symbol that occurs
+     * gets a probability of at least 1.
+     */
+    private static int[] normalizeFrequencies(long[] _freqs, long _total, int _precision) {
+        int[] _probs = new int[_freqs.length];
+        long _sum = 0;
+        for(int _idx = 0; _idx < _freqs.length; _idx++) {
+            if(_freqs[_idx] == 0) {
+                continue;
+            }
+            long _prob = (2 * _freqs[_idx] * _precision + _total) / (2 * _total);
+            _probs[_idx] = (int)Math.max(1, _prob);
+            _sum += _probs[_idx];
+        }
+
+        // rounding error is taken from or given to the most probable symbols
+        while(_sum != _precision) {
+            int _top = 0;
+            for(int _idx = 1; _idx < _probs.length; _idx++) {
+                if(_probs[_idx] > _probs[_top]) {
+                    _top = _idx;
+                }
+            }
+
+            long _adjust = _sum > _precision
+                    ? -Math.min(_sum - _precision, _probs[_top] - 1) : _precision - _sum;
+            _probs[_top] += _adjust;
+            _sum += _adjust;
+
+            if(_adjust == 0) {
+                throw new IllegalStateException("Can't normalize symbol frequencies");
+            }
+        }
+
+        return _probs;
+    }
+
+    /**
+     * Store the probabilities with 2 bits for the number of extra bytes. Runs of symbols
+     * that don't occur are stored as a count.
+     */
+    private static void encodeProbabilityTable(int[] _probs, Output _out) {
+        _out.putVarint(_probs.length);
+
+        for(int _idx = 0; _idx < _probs.length; _idx++) {
+            int _prob = _probs[_idx];
+            if(_prob == 0) {
+                // the last symbol always has a probability so the run ends before it
+                int _offset = 0;
+                while(_offset < (1 << 6) - 1 && _probs[_idx + _offset + 1] == 0) {
+                    _offset++;
+                }
+                _out.put((_offset << 2) | 3);
+                _idx += _offset;
+                continue;
+            }
+
+            int _extraBytes = _prob >= (1 << 14) ? 2 : (_prob >= (1 << 6) ? 1 : 0);
+            _out.put((_prob << 2) | _extraBytes);
+            for(int _b = 0; _b < _extraBytes; _b++) {
+                _out.put(_prob >> (8 * (_b + 1) - 2));
+            }
+        }
+    }
+
+    /**
+     * Growable output in little endian order.
+     */
+    private static class Output {
+        private byte[] _data;
+        private int _size = 0;
+
+        Output(int _capacity) {
+            this._data = new byte[Math.max(_capacity, 16)];
+        }
+
+        void put(int _byte) {
+            if(this._size == this._data.length) {
+                this._data = Arrays.copyOf(this._data, this._data.length * 2);
+            }
+            this._data[this._size++] = (byte)_byte;
+        }
+
+        void put(byte[] _bytes, int _length) {
+            for(int _idx = 0; _idx < _length; _idx++) {
+                put(_bytes[_idx]);
+            }
+        }
+
+        void putLE(int _value, int _bytes) {
+            for(int _b = 0; _b < _bytes; _b++) {
+                put(_value >>> (8 * _b));
+            }
+        }
+
+        void putShort(int _value) { putLE(_value, 2); }
+
+        void putInt(int _value) { putLE(_value, 4); }
+
+        void putFloat(float _value) { putLE(Float.floatToIntBits(_value), 4); }
+
+        void putVarint(long _value) {
+            do {
+                put((int)(_value & 127) | (_value > 127 ? 128 : 0));
+                _value >>>= 7;
+            } while(_value != 0);
+        }
+
+        byte[] toArray() { return Arrays.copyOf(this._data, this._size); }
+    }
+}
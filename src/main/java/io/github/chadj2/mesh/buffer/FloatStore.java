@@ -0,0 +1,126 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Growable array of float vectors. The bounds of each component are updated as vectors 
+ * are added so they don't need to be calculated when the buffer is built.
+ * @author Chad Juliano
+ */
+class FloatStore {
+    
+    private static final int INITIAL_CAPACITY = 16;
+    
+    private final int _components;
+    private final float[] _min;
+    private final float[] _max;
+    
+    private float[] _data;
+    
+    /** Number of vectors. */
+    private int _size = 0;
+    
+    /**
+     * @param _components Number of components in each vector.
+     */
+    FloatStore(int _components) {
+        this._components = _components;
+        this._data = new float[INITIAL_CAPACITY * _components];
+        this._min = new float[_components];
+        this._max = new float[_components];
+        clear();
+    }
+    
+    int size() { return this._size; }
+    
+    void clear() {
+        this._size = 0;
+        Arrays.fill(this._min, Float.POSITIVE_INFINITY);
+        Arrays.fill(this._max, Float.NEGATIVE_INFINITY);
+    }
+    
+    void add(float _x, float _y) {
+        int _pos = reserve(2);
+        this._data[_pos] = _x;
+        this._data[_pos + 1] = _y;
+        track(0, _x);
+        track(1, _y);
+    }
+    
+    void add(float _x, float _y, float _z) {
+        int _pos = reserve(3);
+        this._data[_pos] = _x;
+        this._data[_pos + 1] = _y;
+        this._data[_pos + 2] = _z;
+        track(0, _x);
+        track(1, _y);
+        track(2, _z);
+    }
+    
+    void add(float _x, float _y, float _z, float _w) {
+        int _pos = reserve(4);
+        this._data[_pos] = _x;
+        this._data[_pos + 1] = _y;
+        this._data[_pos + 2] = _z;
+        this._data[_pos + 3] = _w;
+        track(0, _x);
+        track(1, _y);
+        track(2, _z);
+        track(3, _w);
+    }
+    
+    float get(int _idx, int _component) {
+        Objects.checkIndex(_idx, this._size);
+        return this._data[_idx * this._components + _component];
+    }
+    
+    /**
+     * Get the smallest value of a component or positive infinity if there are no vectors.
+     */
+    float getMin(int _component) { return this._min[_component]; }
+    
+    /**
+     * Get the largest value of a component or negative infinity if there are no vectors.
+     */
+    float getMax(int _component) { return this._max[_component]; }
+    
+    /**
+     * Write all the components with the byte order of the buffer.
+     */
+    void write(ByteBuffer _buffer) {
+        int _length = this._size * this._components;
+        _buffer.asFloatBuffer().put(this._data, 0, _length);
+        _buffer.position(_buffer.position() + _length * Float.BYTES);
+    }
+    
+    private void track(int _component, float _value) {
+        this._min[_component] = Math.min(this._min[_component], _value);
+        this._max[_component] = Math.max(this._max[_component], _value);
+    }
+    
+    /**
+     * Make room for a vector and return its position in the array.
+     */
+    private int reserve(int _components) {
+        if(_components != this._components) {
+            String msg = String.format("Vector has %d components but the buffer has %d", 
+                    _components, this._components);
+            throw new IllegalArgumentException(msg);
+        }
+        
+        int _pos = this._size * this._components;
+        if(_pos + this._components > this._data.length) {
+            this._data = Arrays.copyOf(this._data, this._data.length * 2);
+        }
+        this._size++;
+        return _pos;
+    }
+}
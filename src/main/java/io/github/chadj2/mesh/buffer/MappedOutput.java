@@ -0,0 +1,167 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.buffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Arena that defers encoding of BufferViews until the output file is mapped. Only the
+ * offsets and lengths are tracked while the meshes are built and the primitives are encoded
+ * directly into the mapped file. The buffers that were added must not be changed until the
+ * file is written. A mapped file holds a single glTF buffer so the primitives can't exceed 
+ * MAX_BUFFER_SIZE (2 GiB) and the writer can't partition them into multiple buffers.
+ * @see io.github.chadj2.mesh.MeshGltfWriter#writeGltf(java.nio.file.Path, MappedOutput)
+ * @author Chad Juliano
+ */
+public class MappedOutput extends ArenaBase {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MappedOutput.class);
+
+    /** Default size of each mapped region of the file. */
+    public static final int DEFAULT_REGION_SIZE = 256*1024*1024;
+
+    /**
+     * Encoder for a BufferView that will be run when the file is mapped.
+     */
+    private static class Reservation {
+        final long _offset;
+        final int _length;
+        final Consumer<ByteBuffer> _encoder;
+
+        Reservation(long offset, int length, Consumer<ByteBuffer> encoder) {
+            this._offset = offset;
+            this._length = length;
+            this._encoder = encoder;
+        }
+    }
+
+    /** Reservations in order of offset. */
+    private final List<Reservation> _reservations = new ArrayList<>();
+
+    /** Size of each region of the file that is mapped. */
+    private final int _regionSize;
+
+    public MappedOutput() {
+        this(DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * @param regionSize Size of each region that is mapped. BufferViews larger than this
+     * will get their own region.
+     */
+    public MappedOutput(int regionSize) {
+        if(regionSize <= 0) {
+            throw new IllegalArgumentException("Region size must be positive: " + regionSize);
+        }
+
+        this._regionSize = regionSize;
+    }
+
+    @Override
+    public long reserve(int length, Consumer<ByteBuffer> encoder) {
+        long offset = claim(length);
+        this._reservations.add(new Reservation(offset, length, encoder));
+        return offset;
+    }
+
+    /**
+     * The data is not held in memory until it is encoded.
+     */
+    @Override
+    public long capacity() { return 0; }
+
+    @Override
+    protected long claim(int length) {
+        if(size() + align(length) > MAX_BUFFER_SIZE) {
+            String msg = String.format("MappedOutput holds a single glTF buffer that cannot exceed %d bytes: "
+                    + "size=%d, length=%d", MAX_BUFFER_SIZE, size(), length);
+            throw new IllegalStateException(msg);
+        }
+        return super.claim(length);
+    }
+
+    /**
+     * Encode the deferred BufferViews into the file. The regions of the file are mapped
+     * as they are needed.
+     * @param channel File opened for read and write.
+     * @param position Position in the file corresponding to offset zero of the arena.
+     */
+    public void encode(FileChannel channel, long position) throws IOException {
+        checkReleased();
+        MappedByteBuffer region = null;
+        long regionStart = 0;
+        long regionEnd = 0;
+        int regionCount = 0;
+
+        for(Reservation res : this._reservations) {
+            if(region == null || res._offset + res._length > regionEnd) {
+                // map a new region starting at this reservation
+                long regionLength = Math.min(Math.max(this._regionSize, res._length),
+                        size() - res._offset);
+                regionStart = res._offset;
+                regionEnd = regionStart + regionLength;
+                region = channel.map(FileChannel.MapMode.READ_WRITE,
+                        position + regionStart, regionLength);
+                region.order(ByteOrder.LITTLE_ENDIAN);
+                regionCount++;
+            }
+
+            ByteBuffer slice = region.duplicate();
+            slice.position((int)(res._offset - regionStart));
+            slice = slice.slice();
+            slice.limit(res._length);
+            slice.order(ByteOrder.LITTLE_ENDIAN);
+            res._encoder.accept(slice);
+        }
+
+        LOG.debug("Encoded mapped output: size=<{} bytes> bufferViews=<{}> regions=<{}>",
+                size(), this._reservations.size(), regionCount);
+    }
+
+    /**
+     * Encode the deferred BufferViews into heap buffers. This is used when the writer is not
+     * writing a mapped file.
+     */
+    @Override
+    public List<ByteBuffer> getSegments() {
+        checkReleased();
+        List<ByteBuffer> result = new ArrayList<>(this._reservations.size());
+        for(Reservation res : this._reservations) {
+            ByteBuffer buffer = ByteBuffer.allocate(align(res._length));
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            ByteBuffer slice = buffer.duplicate();
+            slice.limit(res._length);
+            slice.order(ByteOrder.LITTLE_ENDIAN);
+            res._encoder.accept(slice);
+            result.add(buffer);
+        }
+        return result;
+    }
+
+    @Override
+    public void release() {
+        this._reservations.clear();
+        super.release();
+    }
+
+    @Override
+    public void reset() {
+        this._reservations.clear();
+        super.reset();
+    }
+}
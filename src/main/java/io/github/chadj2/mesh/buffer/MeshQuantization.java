@@ -0,0 +1,53 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.buffer;
+
+import de.javagl.jgltf.impl.v2.GlTF;
+
+/**
+ * Helpers for the KHR_mesh_quantization extension that allows vertex attributes to be 
+ * stored as normalized integers.
+ * @see BufferVecShort3
+ * @see BufferVecByte3
+ * @see BufferVecUShort2
+ * @author Chad Juliano
+ */
+public final class MeshQuantization {
+
+    public static final String EXTENSION = "KHR_mesh_quantization";
+
+    private MeshQuantization() { }
+
+    /**
+     * Declare the extension if it was not already. Clients must support it because the 
+     * attribute types are not allowed by the core spec.
+     */
+    static void addExtension(GlTF _gltf) {
+        if(_gltf.getExtensionsUsed() == null || !_gltf.getExtensionsUsed().contains(EXTENSION)) {
+            _gltf.addExtensionsUsed(EXTENSION);
+            _gltf.addExtensionsRequired(EXTENSION);
+        }
+    }
+
+    /**
+     * Convert a value in the range [-1, 1] to a normalized signed integer.
+     * @param _max Largest integer value.
+     */
+    static int toSigned(float _value, int _max) {
+        float _clamped = Math.max(-1f, Math.min(1f, _value));
+        return Math.round(_clamped * _max);
+    }
+
+    /**
+     * Convert a value in the range [0, 1] to a normalized unsigned integer.
+     * @param _max Largest integer value.
+     */
+    static int toUnsigned(float _value, int _max) {
+        float _clamped = Math.max(0f, Math.min(1f, _value));
+        return Math.round(_clamped * _max);
+    }
+}
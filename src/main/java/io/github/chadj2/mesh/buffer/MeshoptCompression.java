@@ -0,0 +1,436 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.javagl.jgltf.impl.v2.Accessor;
+import de.javagl.jgltf.impl.v2.Buffer;
+import de.javagl.jgltf.impl.v2.BufferView;
+import de.javagl.jgltf.impl.v2.GlTF;
+import io.github.chadj2.mesh.buffer.MeshoptEncoder.Filter;
+import io.github.chadj2.mesh.buffer.MeshoptEncoder.Mode;
+import io.github.chadj2.mesh.extmeshopt.BufferMeshoptCompression;
+import io.github.chadj2.mesh.extmeshopt.BufferViewMeshoptCompression;
+
+/**
+ * Output stage that compresses BufferViews with EXT_meshopt_compression. The compressed data
+ * is stored in the arenas and the original BufferViews point to a fallback buffer without
+ * data that is added when the glTF is written. BufferViews are only compressed if that
+ * makes them smaller, so the others are stored normally. Compression is lossless unless
+ * a filter is enabled.
+ * @author Chad Juliano
+ */
+public class MeshoptCompression {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MeshoptCompression.class);
+
+    public static final String EXTENSION = "EXT_meshopt_compression";
+
+    /** Bits of mantissa kept by the exponential filter or 0 if it is disabled. */
+    private int _expBits = 0;
+
+    /** Bits of each coordinate kept by the octahedral filter or 0 if it is disabled. */
+    private int _octBits = 0;
+
+    /** Bits of each component kept by the quaternion filter or 0 if it is disabled. */
+    private int _quatBits = 0;
+
+    /** BufferViews that were compressed and need the index of the fallback buffer. */
+    private final List<BufferView> _views = new ArrayList<>();
+
+    /** Bounds of the decoded values of BufferViews that were filtered. */
+    private final Map<BufferView, Number[][]> _filteredBounds = new IdentityHashMap<>();
+
+    /** Size of the fallback buffer. */
+    private long _fallbackSize = 0;
+
+    /** Bytes of the compressed BufferViews before compression. */
+    private long _rawSize = 0;
+
+    /** Bytes of the compressed BufferViews after compression. */
+    private long _compressedSize = 0;
+
+    /**
+     * Apply the EXPONENTIAL filter to float attributes. This makes them smaller at the cost
+     * of precision.
+     * @param _bits Bits of mantissa to keep from 1 to 24 or 0 to disable the filter.
+     */
+    public void setExponentialBits(int _bits) {
+        if(_bits < 0 || _bits > 24) {
+            String msg = String.format("Exponential filter bits must be between 0 and 24: %d", _bits);
+            throw new IllegalArgumentException(msg);
+        }
+        this._expBits = _bits;
+    }
+
+    /**
+     * Apply the OCTAHEDRAL filter to quantized normals. This makes them smaller at the cost 
+     * of precision.
+     * @param _bits Bits of each octahedral coordinate from 1 to 16 or 0 to disable the 
+     * filter. This is limited to 8 for normals stored as bytes.
+     */
+    public void setOctahedralBits(int _bits) {
+        if(_bits < 0 || _bits > 16) {
+            String msg = String.format("Octahedral filter bits must be between 0 and 16: %d", _bits);
+            throw new IllegalArgumentException(msg);
+        }
+        this._octBits = _bits;
+    }
+
+    /**
+     * Apply the QUATERNION filter to quantized rotations. This makes them smaller at the cost 
+     * of precision.
+     * @param _bits Bits of each component from 4 to 16 or 0 to disable the filter.
+     */
+    public void setQuaternionBits(int _bits) {
+        if(_bits != 0 && (_bits < 4 || _bits > 16)) {
+            String msg = String.format("Quaternion filter bits must be 0 or between 4 and 16: %d", _bits);
+            throw new IllegalArgumentException(msg);
+        }
+        this._quatBits = _bits;
+    }
+
+    /**
+     * Get the number of BufferViews that were compressed.
+     */
+    public int getViewCount() { return this._views.size(); }
+
+    /**
+     * Get the size of the compressed BufferViews before compression.
+     */
+    public long getRawSize() { return this._rawSize; }
+
+    /**
+     * Get the size of the compressed BufferViews after compression.
+     */
+    public long getCompressedSize() { return this._compressedSize; }
+
+    /**
+     * Compress the data of a BufferView and reserve it in the arena. The BufferView is
+     * pointed at the fallback buffer.
+     * @param _raw Uncompressed data of the BufferView.
+     * @param _count Number of elements in the data.
+     * @return false if the data can't be compressed or would not get smaller.
+     */
+    boolean compress(BufferView _bufferView, ByteBuffer _raw, int _count, Mode _mode,
+            Filter _filter, ArenaBase _arena) {
+        int _length = _raw.remaining();
+        int _stride = _length / _count;
+
+        if(_mode == Mode.ATTRIBUTES
+                && (_stride % 4 != 0 || _stride > MeshoptEncoder.MAX_VERTEX_SIZE)) {
+            return false;
+        }
+        if(_mode != Mode.ATTRIBUTES && _stride != 2 && _stride != 4) {
+            return false;
+        }
+        if(_mode == Mode.TRIANGLES && _count % 3 != 0) {
+            return false;
+        }
+
+        ByteBuffer _filtered = (_mode == Mode.ATTRIBUTES) ? applyFilter(_raw, _count, _stride, _filter) : null;
+        if(_filtered == null) {
+            _filtered = _raw;
+            _filter = Filter.NONE;
+        }
+
+        byte[] _data;
+        switch(_mode) {
+            case TRIANGLES:
+                _data = MeshoptEncoder.encodeIndexBuffer(
+                        MeshoptEncoder.readIndices(_raw, _count, _stride));
+                break;
+            case INDICES:
+                _data = MeshoptEncoder.encodeIndexSequence(
+                        MeshoptEncoder.readIndices(_raw, _count, _stride));
+                break;
+            default:
+                _data = MeshoptEncoder.encodeVertexBuffer(_filtered, _count, _stride);
+                break;
+        }
+
+        if(_data.length >= _length) {
+            return false;
+        }
+
+        long _offset = _arena.reserve(_data.length, _buffer -> _buffer.put(_data));
+
+        BufferViewMeshoptCompression _ext = new BufferViewMeshoptCompression();
+        _ext.setBuffer(_arena.getBufferIndex());
+        _ext.setByteOffset((int)_offset);
+        _ext.setByteLength(_data.length);
+        _ext.setByteStride(_stride);
+        _ext.setCount(_count);
+        _ext.setMode(_mode.name());
+        if(_filter != Filter.NONE) {
+            _ext.setFilter(_filter.name());
+        }
+        _bufferView.addExtensions(EXTENSION, _ext);
+        if(_filter != Filter.NONE) {
+            this._filteredBounds.put(_bufferView, getFilteredBounds(_filter, _filtered, _count, _stride));
+        }
+
+        _bufferView.setByteOffset((int)this._fallbackSize);
+        _bufferView.setByteLength(_length);
+        this._fallbackSize += BufferArena.align(_length);
+        this._views.add(_bufferView);
+
+        this._rawSize += _length;
+        this._compressedSize += _data.length;
+        LOG.debug("Compressed {}: mode={} filter={} size=<{} bytes> compressed=<{} bytes>",
+                _bufferView.getName(), _mode, _filter, _length, _data.length);
+        return true;
+    }
+
+    /**
+     * Apply a filter that is enabled to the data of a BufferView.
+     * @return Filtered data or null if the filter is disabled or does not apply.
+     */
+    private ByteBuffer applyFilter(ByteBuffer _raw, int _count, int _stride, Filter _filter) {
+        switch(_filter) {
+            case EXPONENTIAL:
+                if(this._expBits == 0) {
+                    return null;
+                }
+                return MeshoptEncoder.encodeFilterExp(_raw.asFloatBuffer(), _count, _stride,
+                        this._expBits);
+            case OCTAHEDRAL:
+                // 4 normalized bytes or shorts with the 4th kept as padding
+                if(this._octBits == 0 || (_stride != 4 && _stride != 8)) {
+                    return null;
+                }
+                return MeshoptEncoder.encodeFilterOct(toFloats(_raw, _count * 4, _stride / 4), 
+                        _count, _stride, Math.min(this._octBits, _stride * 2));
+            case QUATERNION:
+                if(this._quatBits == 0 || _stride != 8) {
+                    return null;
+                }
+                return MeshoptEncoder.encodeFilterQuat(toFloats(_raw, _count * 4, Short.BYTES), 
+                        _count, this._quatBits);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Convert normalized signed integers to floats as a client would read them.
+     * @param _size Size of each integer in bytes.
+     */
+    private static FloatBuffer toFloats(ByteBuffer _raw, int _length, int _size) {
+        ByteBuffer _src = _raw.duplicate().order(_raw.order());
+        FloatBuffer _result = FloatBuffer.allocate(_length);
+        for(int _i = 0; _i < _length; _i++) {
+            if(_size == Byte.BYTES) {
+                _result.put(Math.max(_src.get() / (float)Byte.MAX_VALUE, -1f));
+            }
+            else {
+                _result.put(Math.max(_src.getShort() / (float)Short.MAX_VALUE, -1f));
+            }
+        }
+        _result.flip();
+        return _result;
+    }
+
+    /**
+     * Add the fallback buffer after the buffers of the arenas and declare the extension.
+     * This does nothing if no BufferViews were compressed.
+     * @param _buffers Buffers of the arenas.
+     */
+    public void addFallbackBuffer(GlTF _gltf, List<Buffer> _buffers) {
+        if(this._views.isEmpty()) {
+            return;
+        }
+
+        BufferMeshoptCompression _ext = new BufferMeshoptCompression();
+        _ext.setFallback(true);
+
+        Buffer _fallback = new Buffer();
+        _fallback.setByteLength((int)this._fallbackSize);
+        _fallback.addExtensions(EXTENSION, _ext);
+
+        int _fallbackIdx = _buffers.size();
+        _buffers.add(_fallback);
+        for(BufferView _bufferView : this._views) {
+            _bufferView.setBuffer(_fallbackIdx);
+        }
+        setFilteredBounds(_gltf);
+
+        // the fallback has no data so clients must support the extension
+        if(_gltf.getExtensionsUsed() == null || !_gltf.getExtensionsUsed().contains(EXTENSION)) {
+            _gltf.addExtensionsUsed(EXTENSION);
+        }
+        if(_gltf.getExtensionsRequired() == null || !_gltf.getExtensionsRequired().contains(EXTENSION)) {
+            _gltf.addExtensionsRequired(EXTENSION);
+        }
+
+        LOG.info("Meshopt compressed {} BufferViews: <{} bytes> to <{} bytes>",
+                this._views.size(), this._rawSize, this._compressedSize);
+    }
+
+    /**
+     * Replace the min and max of accessors of filtered BufferViews with the bounds of the 
+     * decoded values. The filter is lossy so the bounds of the original values would not 
+     * match the data a client reads.
+     */
+    private void setFilteredBounds(GlTF _gltf) {
+        if(this._filteredBounds.isEmpty() || _gltf.getAccessors() == null) {
+            return;
+        }
+
+        List<BufferView> _bufferViews = _gltf.getBufferViews();
+        for(Accessor _accessor : _gltf.getAccessors()) {
+            Integer _bufferViewIdx = _accessor.getBufferView();
+            if(_bufferViewIdx == null || _accessor.getMin() == null) {
+                continue;
+            }
+
+            Number[][] _bounds = this._filteredBounds.get(_bufferViews.get(_bufferViewIdx));
+            if(_bounds != null) {
+                _accessor.setMin(_bounds[0]);
+                _accessor.setMax(_bounds[1]);
+            }
+        }
+    }
+
+    /**
+     * Get the component bounds of filtered data as the decoder reconstructs it.
+     * @return min and max of each component.
+     */
+    private static Number[][] getFilteredBounds(Filter _filter, ByteBuffer _filtered, int _count, 
+            int _stride) {
+        ByteBuffer _src = _filtered.duplicate().order(_filtered.order());
+        int _components;
+        switch(_filter) {
+            case OCTAHEDRAL:
+                // the 4th component is padding of the VEC3 accessor
+                _components = 3;
+                break;
+            case QUATERNION:
+                _components = 4;
+                break;
+            default:
+                _components = _stride / Float.BYTES;
+                break;
+        }
+
+        Number[] _min = new Number[_components];
+        Number[] _max = new Number[_components];
+        Number[] _decoded = new Number[4];
+        int[] _data = new int[4];
+
+        for(int _i = 0; _i < _count; _i++) {
+            switch(_filter) {
+                case OCTAHEDRAL:
+                    for(int _k = 0; _k < 4; _k++) {
+                        _data[_k] = (_stride == 4) ? _src.get() : _src.getShort();
+                    }
+                    decodeOct(_data, (_stride == 4) ? Byte.MAX_VALUE : Short.MAX_VALUE, _decoded);
+                    break;
+                case QUATERNION:
+                    for(int _k = 0; _k < 4; _k++) {
+                        _data[_k] = _src.getShort();
+                    }
+                    decodeQuat(_data, _decoded);
+                    break;
+                default:
+                    for(int _k = 0; _k < _components; _k++) {
+                        _decoded[_k] = decodeExp(_src.getInt());
+                    }
+                    break;
+            }
+
+            for(int _k = 0; _k < _components; _k++) {
+                float _f = _decoded[_k].floatValue();
+                if(_i == 0 || _f < _min[_k].floatValue()) {
+                    _min[_k] = _decoded[_k];
+                }
+                if(_i == 0 || _f > _max[_k].floatValue()) {
+                    _max[_k] = _decoded[_k];
+                }
+            }
+        }
+
+        return new Number[][] { _min, _max };
+    }
+
+    /**
+     * Decode an EXPONENTIAL filtered value. The signed 24 bit mantissa and 8 bit exponent 
+     * are combined as in the decoder.
+     */
+    private static float decodeExp(int _v) {
+        int _m = (_v << 8) >> 8;
+        int _e = _v >> 24;
+        return (float)_m * Float.intBitsToFloat((_e + 127) << 23);
+    }
+
+    /**
+     * Decode an OCTAHEDRAL filtered vector to the normalized integers of the decoder.
+     * @param _max Largest value of the integers.
+     */
+    private static void decodeOct(int[] _data, int _max, Number[] _result) {
+        // z is reconstructed from the 3rd component which encodes 1.0
+        float _x = _data[0];
+        float _y = _data[1];
+        float _z = _data[2] - Math.abs(_x) - Math.abs(_y);
+
+        // fix the octahedral coordinates for z < 0
+        float _t = (_z >= 0f) ? 0f : _z;
+        _x += (_x >= 0f) ? _t : -_t;
+        _y += (_y >= 0f) ? _t : -_t;
+
+        float _s = _max / (float)Math.sqrt(_x * _x + _y * _y + _z * _z);
+        _result[0] = roundSigned(_x * _s);
+        _result[1] = roundSigned(_y * _s);
+        _result[2] = roundSigned(_z * _s);
+        _result[3] = _data[3];
+    }
+
+    /**
+     * Decode a QUATERNION filtered rotation to the normalized shorts of the decoder.
+     */
+    private static void decodeQuat(int[] _data, Number[] _result) {
+        // the scale is recovered from the high bits of the 4th component
+        float _ss = (float)(1.0 / Math.sqrt(2.0)) / (_data[3] | 3);
+        float _x = _data[0] * _ss;
+        float _y = _data[1] * _ss;
+        float _z = _data[2] * _ss;
+
+        // the dropped component is recovered because the quaternion has unit length
+        float _ww = 1f - _x * _x - _y * _y - _z * _z;
+        float _w = (float)Math.sqrt(_ww >= 0f ? _ww : 0f);
+
+        int _qc = _data[3] & 3;
+        _result[(_qc + 1) & 3] = roundSigned(_x * Short.MAX_VALUE);
+        _result[(_qc + 2) & 3] = roundSigned(_y * Short.MAX_VALUE);
+        _result[(_qc + 3) & 3] = roundSigned(_z * Short.MAX_VALUE);
+        _result[_qc] = roundSigned(_w * Short.MAX_VALUE);
+    }
+
+    private static int roundSigned(float _v) {
+        return (int)(_v + (_v >= 0f ? 0.5f : -0.5f));
+    }
+
+    /**
+     * Forget the compressed BufferViews so the stage can be used for another scene.
+     */
+    public void reset() {
+        this._views.clear();
+        this._filteredBounds.clear();
+        this._fallbackSize = 0;
+        this._rawSize = 0;
+        this._compressedSize = 0;
+    }
+}
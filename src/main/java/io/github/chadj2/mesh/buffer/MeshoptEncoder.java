@@ -0,0 +1,704 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Encoders for the bitstreams and filters of the EXT_meshopt_compression extension. The
+ * output is compatible with the meshoptimizer decoders (vertex codec version 0 and index
+ * codec version 1). Filters are applied to the data before it is passed to the attribute
+ * codec and the decoder reverses them after decompression.
+ * @see "https://github.com/KhronosGroup/glTF/tree/main/extensions/2.0/Vendor/EXT_meshopt_compression"
+ * @author Chad Juliano
+ */
+public final class MeshoptEncoder {
+
+    /**
+     * Compression mode of a BufferView.
+     */
+    public enum Mode {
+        /** Vertex attributes encoded with the attribute codec. */
+        ATTRIBUTES,
+        /** Triangle list indices encoded with the triangle codec. */
+        TRIANGLES,
+        /** Index sequences encoded with the index codec. */
+        INDICES
+    }
+
+    /**
+     * Filter applied to attributes before compression.
+     */
+    public enum Filter {
+        /** No filter. */
+        NONE,
+        /** Unit vectors stored as octahedral coordinates in 8 or 16 bit integers. */
+        OCTAHEDRAL,
+        /** Unit quaternions stored as 3 components in 16 bit integers. */
+        QUATERNION,
+        /** Floats stored with a 24 bit mantissa and an 8 bit exponent shared by each element. */
+        EXPONENTIAL
+    }
+
+    private static final int VERTEX_HEADER = 0xa0;
+
+    private static final int INDEX_HEADER = 0xe0;
+
+    private static final int SEQUENCE_HEADER = 0xd0;
+
+    private static final int INDEX_VERSION = 1;
+
+    /** Maximum bytes of vertex data encoded in a block. */
+    private static final int VERTEX_BLOCK_SIZE_BYTES = 8192;
+
+    private static final int VERTEX_BLOCK_MAX_SIZE = 256;
+
+    private static final int BYTE_GROUP_SIZE = 16;
+
+    /** The first vertex is padded to this size at the end of the stream. */
+    private static final int TAIL_MAX_SIZE = 32;
+
+    /** Largest vertex the attribute codec supports. */
+    public static final int MAX_VERTEX_SIZE = 256;
+
+    /** Rotations of a triangle that put the given corner first. */
+    private static final int[][] TRIANGLE_INDEX_ORDER = { {0, 1, 2}, {1, 2, 0}, {2, 0, 1} };
+
+    /**
+     * Pairs of vertex FIFO codes encoded in 4 bits. The table is appended to the triangle
+     * stream and also serves as the padding the decoder expects.
+     */
+    private static final byte[] CODE_AUX_TABLE = {
+            0x00, 0x76, (byte)0x87, 0x56, 0x67, 0x78, (byte)0xa9, (byte)0x86,
+            0x65, (byte)0x89, 0x68, (byte)0x98, 0x01, 0x69, 0x00, 0x00 };
+
+    /** Largest vertex FIFO index encoded for the third vertex of an edge match. */
+    private static final int FEC_MAX = 13;
+
+    private MeshoptEncoder() { }
+
+    /**
+     * Growable output of an encoder.
+     */
+    private static class Output {
+        private byte[] _data;
+        private int _size = 0;
+
+        Output(int _capacity) {
+            this._data = new byte[Math.max(_capacity, 16)];
+        }
+
+        void put(int _byte) {
+            if(this._size == this._data.length) {
+                this._data = Arrays.copyOf(this._data, this._data.length * 2);
+            }
+            this._data[this._size++] = (byte)_byte;
+        }
+
+        void putVByte(int _value) {
+            // 32 bit value in up to 5 groups of 7 bits
+            do {
+                put((_value & 127) | (Integer.compareUnsigned(_value, 127) > 0 ? 128 : 0));
+                _value >>>= 7;
+            } while(_value != 0);
+        }
+
+        byte[] toArray() { return Arrays.copyOf(this._data, this._size); }
+    }
+
+    /**
+     * Compress vertex attributes with the attribute codec.
+     * @param _vertices Data of the vertices starting at the position of the buffer.
+     * @param _count Number of vertices.
+     * @param _stride Size of each vertex in bytes. This must be a multiple of 4.
+     */
+    public static byte[] encodeVertexBuffer(ByteBuffer _vertices, int _count, int _stride) {
+        if(_stride <= 0 || _stride > MAX_VERTEX_SIZE || _stride % 4 != 0) {
+            String msg = String.format("Vertex size must be a multiple of 4 up to %d: %d",
+                    MAX_VERTEX_SIZE, _stride);
+            throw new IllegalArgumentException(msg);
+        }
+
+        byte[] _data = new byte[_count * _stride];
+        _vertices.duplicate().get(_data);
+
+        Output _out = new Output(_data.length / 2 + TAIL_MAX_SIZE);
+        _out.put(VERTEX_HEADER);
+
+        byte[] _firstVertex = new byte[_stride];
+        if(_count > 0) {
+            System.arraycopy(_data, 0, _firstVertex, 0, _stride);
+        }
+        byte[] _lastVertex = _firstVertex.clone();
+
+        int _blockSize = Math.min((VERTEX_BLOCK_SIZE_BYTES / _stride) & ~(BYTE_GROUP_SIZE - 1),
+                VERTEX_BLOCK_MAX_SIZE);
+        byte[] _deltas = new byte[VERTEX_BLOCK_MAX_SIZE];
+
+        for(int _start = 0; _start < _count; _start += _blockSize) {
+            int _blockCount = Math.min(_blockSize, _count - _start);
+            encodeVertexBlock(_out, _data, _start, _blockCount, _stride, _lastVertex, _deltas);
+        }
+
+        // the first vertex is written at the end padded to 32 bytes
+        for(int _i = _stride; _i < TAIL_MAX_SIZE; _i++) {
+            _out.put(0);
+        }
+        for(byte _b : _firstVertex) {
+            _out.put(_b);
+        }
+
+        return _out.toArray();
+    }
+
+    private static void encodeVertexBlock(Output _out, byte[] _data, int _start, int _count,
+            int _stride, byte[] _lastVertex, byte[] _deltas) {
+        // groups are rounded up so the deltas past the count must be zero
+        int _groupedCount = (_count + BYTE_GROUP_SIZE - 1) & ~(BYTE_GROUP_SIZE - 1);
+        Arrays.fill(_deltas, 0, _groupedCount, (byte)0);
+
+        for(int _k = 0; _k < _stride; _k++) {
+            int _offset = _start * _stride + _k;
+            int _prev = _lastVertex[_k];
+
+            for(int _i = 0; _i < _count; _i++) {
+                int _value = _data[_offset];
+                _deltas[_i] = zigzag8(_value - _prev);
+                _prev = _value;
+                _offset += _stride;
+            }
+
+            encodeBytes(_out, _deltas, _groupedCount);
+        }
+
+        System.arraycopy(_data, (_start + _count - 1) * _stride, _lastVertex, 0, _stride);
+    }
+
+    private static byte zigzag8(int _delta) {
+        int _v = _delta & 0xff;
+        return (byte)(((byte)_v >> 7) ^ (_v << 1));
+    }
+
+    /**
+     * Encode groups of 16 bytes with 0, 2, 4 or 8 bits per byte. A 2 bit code for each group
+     * is written in the header before the groups.
+     */
+    private static void encodeBytes(Output _out, byte[] _buffer, int _length) {
+        int _groups = _length / BYTE_GROUP_SIZE;
+        int[] _bits = new int[_groups];
+        int _headerSize = (_groups + 3) / 4;
+        byte[] _header = new byte[_headerSize];
+
+        for(int _group = 0; _group < _groups; _group++) {
+            int _offset = _group * BYTE_GROUP_SIZE;
+            int _bestBits = 8;
+            int _bestSize = measureGroup(_buffer, _offset, 8);
+
+            for(int _b = 1; _b < 8; _b *= 2) {
+                int _size = measureGroup(_buffer, _offset, _b);
+                if(_size < _bestSize) {
+                    _bestBits = _b;
+                    _bestSize = _size;
+                }
+            }
+
+            int _bitsLog2 = Integer.numberOfTrailingZeros(_bestBits);
+            _header[_group / 4] |= _bitsLog2 << ((_group % 4) * 2);
+            _bits[_group] = _bestBits;
+        }
+
+        for(byte _b : _header) {
+            _out.put(_b);
+        }
+
+        for(int _group = 0; _group < _groups; _group++) {
+            encodeGroup(_out, _buffer, _group * BYTE_GROUP_SIZE, _bits[_group]);
+        }
+    }
+
+    private static int measureGroup(byte[] _buffer, int _offset, int _bits) {
+        if(_bits == 1) {
+            for(int _i = 0; _i < BYTE_GROUP_SIZE; _i++) {
+                if(_buffer[_offset + _i] != 0) {
+                    return Integer.MAX_VALUE;
+                }
+            }
+            return 0;
+        }
+
+        if(_bits == 8) {
+            return BYTE_GROUP_SIZE;
+        }
+
+        int _result = BYTE_GROUP_SIZE * _bits / 8;
+        int _sentinel = (1 << _bits) - 1;
+        for(int _i = 0; _i < BYTE_GROUP_SIZE; _i++) {
+            if((_buffer[_offset + _i] & 0xff) >= _sentinel) {
+                _result++;
+            }
+        }
+        return _result;
+    }
+
+    private static void encodeGroup(Output _out, byte[] _buffer, int _offset, int _bits) {
+        if(_bits == 1) {
+            return;
+        }
+
+        if(_bits == 8) {
+            for(int _i = 0; _i < BYTE_GROUP_SIZE; _i++) {
+                _out.put(_buffer[_offset + _i]);
+            }
+            return;
+        }
+
+        // values that don't fit are replaced with a sentinel and follow as full bytes
+        int _perByte = 8 / _bits;
+        int _sentinel = (1 << _bits) - 1;
+        for(int _i = 0; _i < BYTE_GROUP_SIZE; _i += _perByte) {
+            int _byte = 0;
+            for(int _k = 0; _k < _perByte; _k++) {
+                int _value = Math.min(_buffer[_offset + _i + _k] & 0xff, _sentinel);
+                _byte = (_byte << _bits) | _value;
+            }
+            _out.put(_byte);
+        }
+
+        for(int _i = 0; _i < BYTE_GROUP_SIZE; _i++) {
+            if((_buffer[_offset + _i] & 0xff) >= _sentinel) {
+                _out.put(_buffer[_offset + _i]);
+            }
+        }
+    }
+
+    /**
+     * Compress triangle list indices with the triangle codec. Triangles may be rotated but
+     * their winding order is preserved.
+     * @param _indices Indices with 3 for each triangle.
+     */
+    public static byte[] encodeIndexBuffer(int[] _indices) {
+        if(_indices.length % 3 != 0) {
+            String msg = String.format("Index count is not a multiple of 3: %d", _indices.length);
+            throw new IllegalArgumentException(msg);
+        }
+
+        int _triCount = _indices.length / 3;
+        byte[] _codes = new byte[_triCount];
+        Output _data = new Output(_triCount + CODE_AUX_TABLE.length);
+
+        int[] _edgeFifo = new int[16 * 2];
+        Arrays.fill(_edgeFifo, -1);
+        int[] _vertexFifo = new int[16];
+        Arrays.fill(_vertexFifo, -1);
+        int _edgeOffset = 0;
+        int _vertexOffset = 0;
+        int _next = 0;
+        int _last = 0;
+
+        for(int _tri = 0; _tri < _triCount; _tri++) {
+            int _i = _tri * 3;
+            int _fer = getEdgeFifo(_edgeFifo, _indices[_i], _indices[_i + 1], _indices[_i + 2],
+                    _edgeOffset);
+
+            if(_fer >= 0 && (_fer >> 2) < 15) {
+                // the matched edge implicitly rotates the triangle
+                int[] _order = TRIANGLE_INDEX_ORDER[_fer & 3];
+                int _a = _indices[_i + _order[0]];
+                int _b = _indices[_i + _order[1]];
+                int _c = _indices[_i + _order[2]];
+
+                int _fe = _fer >> 2;
+                int _fc = getVertexFifo(_vertexFifo, _c, _vertexOffset);
+
+                int _fec;
+                if(_fc >= 1 && _fc < FEC_MAX) {
+                    _fec = _fc;
+                }
+                else if(_c == _next) {
+                    _fec = 0;
+                    _next++;
+                }
+                else {
+                    _fec = 15;
+                }
+
+                // strip-like sequences are encoded relative to the last free index
+                if(_fec == 15 && _c + 1 == _last) {
+                    _fec = 13;
+                    _last = _c;
+                }
+                if(_fec == 15 && _c == _last + 1) {
+                    _fec = 14;
+                    _last = _c;
+                }
+
+                _codes[_tri] = (byte)((_fe << 4) | _fec);
+
+                if(_fec == 15) {
+                    encodeIndex(_data, _c, _last);
+                    _last = _c;
+                }
+
+                if(_fec == 0 || _fec >= FEC_MAX) {
+                    _vertexFifo[_vertexOffset] = _c;
+                    _vertexOffset = (_vertexOffset + 1) & 15;
+                }
+
+                _edgeOffset = pushEdgeFifo(_edgeFifo, _c, _b, _edgeOffset);
+                _edgeOffset = pushEdgeFifo(_edgeFifo, _a, _c, _edgeOffset);
+            }
+            else {
+                int _rotation = (_indices[_i + 1] == _next) ? 1 : (_indices[_i + 2] == _next) ? 2 : 0;
+                int[] _order = TRIANGLE_INDEX_ORDER[_rotation];
+                int _a = _indices[_i + _order[0]];
+                int _b = _indices[_i + _order[1]];
+                int _c = _indices[_i + _order[2]];
+
+                // a triangle of 0, 1, 2 restarts the sequence of new vertices
+                boolean _reset = false;
+                if(_a == 0 && _b == 1 && _c == 2 && _next > 0) {
+                    _reset = true;
+                    _next = 0;
+                    Arrays.fill(_vertexFifo, -1);
+                }
+
+                int _fb = getVertexFifo(_vertexFifo, _b, _vertexOffset);
+                int _fc = getVertexFifo(_vertexFifo, _c, _vertexOffset);
+
+                int _fea = 15;
+                if(_a == _next) {
+                    _fea = 0;
+                    _next++;
+                }
+
+                int _feb = 15;
+                if(_fb >= 0 && _fb < 14) {
+                    _feb = _fb + 1;
+                }
+                else if(_b == _next) {
+                    _feb = 0;
+                    _next++;
+                }
+
+                int _fec = 15;
+                if(_fc >= 0 && _fc < 14) {
+                    _fec = _fc + 1;
+                }
+                else if(_c == _next) {
+                    _fec = 0;
+                    _next++;
+                }
+
+                int _codeAux = (_feb << 4) | _fec;
+                int _codeAuxIdx = getCodeAuxIndex(_codeAux);
+
+                if(_fea == 0 && _codeAuxIdx >= 0 && _codeAuxIdx < 14 && !_reset) {
+                    _codes[_tri] = (byte)((15 << 4) | _codeAuxIdx);
+                }
+                else {
+                    _codes[_tri] = (byte)((15 << 4) | 14 | _fea);
+                    _data.put(_codeAux);
+                }
+
+                if(_fea == 15) {
+                    encodeIndex(_data, _a, _last);
+                    _last = _a;
+                }
+                if(_feb == 15) {
+                    encodeIndex(_data, _b, _last);
+                    _last = _b;
+                }
+                if(_fec == 15) {
+                    encodeIndex(_data, _c, _last);
+                    _last = _c;
+                }
+
+                if(_fea == 0 || _fea == 15) {
+                    _vertexFifo[_vertexOffset] = _a;
+                    _vertexOffset = (_vertexOffset + 1) & 15;
+                }
+                if(_feb == 0 || _feb == 15) {
+                    _vertexFifo[_vertexOffset] = _b;
+                    _vertexOffset = (_vertexOffset + 1) & 15;
+                }
+                if(_fec == 0 || _fec == 15) {
+                    _vertexFifo[_vertexOffset] = _c;
+                    _vertexOffset = (_vertexOffset + 1) & 15;
+                }
+
+                _edgeOffset = pushEdgeFifo(_edgeFifo, _b, _a, _edgeOffset);
+                _edgeOffset = pushEdgeFifo(_edgeFifo, _c, _b, _edgeOffset);
+                _edgeOffset = pushEdgeFifo(_edgeFifo, _a, _c, _edgeOffset);
+            }
+        }
+
+        // the table is used by the decoder and is also the padding it requires
+        for(byte _b : CODE_AUX_TABLE) {
+            _data.put(_b);
+        }
+
+        byte[] _encoded = _data.toArray();
+        byte[] _result = new byte[1 + _codes.length + _encoded.length];
+        _result[0] = (byte)(INDEX_HEADER | INDEX_VERSION);
+        System.arraycopy(_codes, 0, _result, 1, _codes.length);
+        System.arraycopy(_encoded, 0, _result, 1 + _codes.length, _encoded.length);
+        return _result;
+    }
+
+    /**
+     * Find an edge of the triangle in the edge FIFO.
+     * @return FIFO index shifted left by 2 with the matching edge in the low bits or -1.
+     */
+    private static int getEdgeFifo(int[] _fifo, int _a, int _b, int _c, int _offset) {
+        for(int _i = 0; _i < 16; _i++) {
+            int _idx = ((_offset - 1 - _i) & 15) * 2;
+            int _e0 = _fifo[_idx];
+            int _e1 = _fifo[_idx + 1];
+
+            if(_e0 == _a && _e1 == _b) {
+                return (_i << 2) | 0;
+            }
+            if(_e0 == _b && _e1 == _c) {
+                return (_i << 2) | 1;
+            }
+            if(_e0 == _c && _e1 == _a) {
+                return (_i << 2) | 2;
+            }
+        }
+        return -1;
+    }
+
+    private static int pushEdgeFifo(int[] _fifo, int _a, int _b, int _offset) {
+        _fifo[_offset * 2] = _a;
+        _fifo[_offset * 2 + 1] = _b;
+        return (_offset + 1) & 15;
+    }
+
+    private static int getVertexFifo(int[] _fifo, int _v, int _offset) {
+        for(int _i = 0; _i < 16; _i++) {
+            if(_fifo[(_offset - 1 - _i) & 15] == _v) {
+                return _i;
+            }
+        }
+        return -1;
+    }
+
+    private static int getCodeAuxIndex(int _codeAux) {
+        for(int _i = 0; _i < CODE_AUX_TABLE.length; _i++) {
+            if((CODE_AUX_TABLE[_i] & 0xff) == _codeAux) {
+                return _i;
+            }
+        }
+        return -1;
+    }
+
+    private static void encodeIndex(Output _out, int _index, int _last) {
+        int _d = _index - _last;
+        _out.putVByte((_d << 1) ^ (_d >> 31));
+    }
+
+    /**
+     * Compress a sequence of indices with the index codec. This is intended for index data
+     * that is not a triangle list.
+     */
+    public static byte[] encodeIndexSequence(int[] _indices) {
+        Output _out = new Output(_indices.length + 5);
+        _out.put(SEQUENCE_HEADER | INDEX_VERSION);
+
+        int[] _last = new int[2];
+        int _current = 0;
+
+        for(int _index : _indices) {
+            // switch baselines when the delta does not fit in a byte
+            int _cd = _index - _last[_current];
+            if(Math.abs(_cd) >= 30) {
+                _current ^= 1;
+            }
+
+            int _d = _index - _last[_current];
+            int _v = (_d << 1) ^ (_d >> 31);
+
+            // the low bit selects the baseline
+            _out.putVByte((_v << 1) | _current);
+            _last[_current] = _index;
+        }
+
+        for(int _i = 0; _i < 4; _i++) {
+            _out.put(0);
+        }
+
+        return _out.toArray();
+    }
+
+    /**
+     * Copy triangle or sequence indices from a buffer written by an index BufferView.
+     * @param _indexSize Size of each index in bytes. This must be 2 or 4.
+     */
+    public static int[] readIndices(ByteBuffer _buffer, int _count, int _indexSize) {
+        ByteBuffer _src = _buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int[] _indices = new int[_count];
+        for(int _i = 0; _i < _count; _i++) {
+            _indices[_i] = (_indexSize == 2) ? (_src.getShort() & 0xffff) : _src.getInt();
+        }
+        return _indices;
+    }
+
+    /**
+     * Apply the OCTAHEDRAL filter to unit vectors. The 4th component of each element is
+     * kept as a normalized value like a tangent sign.
+     * @param _data 4 floats for each vector.
+     * @param _stride Size of the filtered element. This is 4 for 8 bit and 8 for 16 bit output.
+     * @param _bits Bits used for each octahedral coordinate up to 8 or 16.
+     */
+    public static ByteBuffer encodeFilterOct(FloatBuffer _data, int _count, int _stride, int _bits) {
+        if((_stride != 4 && _stride != 8) || _bits < 1 || _bits > _stride * 2) {
+            String msg = String.format("Invalid octahedral filter: stride=%d bits=%d", _stride, _bits);
+            throw new IllegalArgumentException(msg);
+        }
+
+        ByteBuffer _result = newFilterBuffer(_count * _stride);
+        FloatBuffer _src = _data.duplicate();
+        int _byteBits = _stride * 2;
+
+        for(int _i = 0; _i < _count; _i++) {
+            float _nx = _src.get();
+            float _ny = _src.get();
+            float _nz = _src.get();
+            float _nw = _src.get();
+
+            // project the vector onto the octahedron and fold the lower half
+            float _nl = Math.abs(_nx) + Math.abs(_ny) + Math.abs(_nz);
+            float _ns = (_nl == 0f) ? 0f : 1f / _nl;
+            _nx *= _ns;
+            _ny *= _ns;
+
+            float _u = (_nz >= 0f) ? _nx : (1 - Math.abs(_ny)) * (_nx >= 0f ? 1f : -1f);
+            float _v = (_nz >= 0f) ? _ny : (1 - Math.abs(_nx)) * (_ny >= 0f ? 1f : -1f);
+
+            int _fu = quantizeSnorm(_u, _bits);
+            int _fv = quantizeSnorm(_v, _bits);
+            int _fo = quantizeSnorm(1f, _bits);
+            int _fw = quantizeSnorm(_nw, _byteBits);
+
+            if(_stride == 4) {
+                _result.put((byte)_fu).put((byte)_fv).put((byte)_fo).put((byte)_fw);
+            }
+            else {
+                _result.putShort((short)_fu).putShort((short)_fv)
+                    .putShort((short)_fo).putShort((short)_fw);
+            }
+        }
+
+        _result.flip();
+        return _result;
+    }
+
+    /**
+     * Apply the QUATERNION filter to unit quaternions. The output has 16 bit components
+     * and a stride of 8.
+     * @param _data 4 floats for each quaternion in x, y, z, w order.
+     * @param _bits Bits used for each component from 4 to 16.
+     */
+    public static ByteBuffer encodeFilterQuat(FloatBuffer _data, int _count, int _bits) {
+        if(_bits < 4 || _bits > 16) {
+            String msg = String.format("Invalid quaternion filter: bits=%d", _bits);
+            throw new IllegalArgumentException(msg);
+        }
+
+        ByteBuffer _result = newFilterBuffer(_count * 8);
+        FloatBuffer _src = _data.duplicate();
+        float[] _q = new float[4];
+        float _scaler = (float)Math.sqrt(2.0);
+
+        for(int _i = 0; _i < _count; _i++) {
+            _src.get(_q);
+
+            // the largest component is dropped and recovered from the others
+            int _qc = 0;
+            _qc = Math.abs(_q[1]) > Math.abs(_q[_qc]) ? 1 : _qc;
+            _qc = Math.abs(_q[2]) > Math.abs(_q[_qc]) ? 2 : _qc;
+            _qc = Math.abs(_q[3]) > Math.abs(_q[_qc]) ? 3 : _qc;
+
+            // q and -q are the same rotation so the sign is discarded
+            float _sign = (_q[_qc] < 0f) ? -1f : 1f;
+
+            _result.putShort((short)quantizeSnorm(_q[(_qc + 1) & 3] * _scaler * _sign, _bits));
+            _result.putShort((short)quantizeSnorm(_q[(_qc + 2) & 3] * _scaler * _sign, _bits));
+            _result.putShort((short)quantizeSnorm(_q[(_qc + 3) & 3] * _scaler * _sign, _bits));
+            _result.putShort((short)((quantizeSnorm(1f, _bits) & ~3) | _qc));
+        }
+
+        _result.flip();
+        return _result;
+    }
+
+    /**
+     * Apply the EXPONENTIAL filter to float attributes. Each element shares the exponent
+     * of its largest component and the mantissas are rounded to the given number of bits.
+     * @param _data Float components of the elements.
+     * @param _stride Size of each element in bytes.
+     * @param _bits Bits of mantissa to keep from 1 to 24.
+     */
+    public static ByteBuffer encodeFilterExp(FloatBuffer _data, int _count, int _stride, int _bits) {
+        if(_stride <= 0 || _stride > MAX_VERTEX_SIZE || _stride % 4 != 0 || _bits < 1 || _bits > 24) {
+            String msg = String.format("Invalid exponential filter: stride=%d bits=%d", _stride, _bits);
+            throw new IllegalArgumentException(msg);
+        }
+
+        int _components = _stride / Float.BYTES;
+        ByteBuffer _result = newFilterBuffer(_count * _stride);
+        FloatBuffer _src = _data.duplicate();
+        float[] _v = new float[_components];
+        int _mantissaMask = (1 << 24) - 1;
+
+        for(int _i = 0; _i < _count; _i++) {
+            _src.get(_v);
+
+            // the maximum exponent guarantees the mantissas are in [-1, 1]
+            int _exp = -100;
+            for(float _f : _v) {
+                _exp = Math.max(_exp, frexpExponent(_f));
+            }
+
+            // scale the mantissa to a signed integer of the given bits
+            _exp -= (_bits - 1);
+
+            for(float _f : _v) {
+                int _m = (int)(Math.scalb((double)_f, -_exp) + (_f >= 0 ? 0.5 : -0.5));
+                _result.putInt((_m & _mantissaMask) | (_exp << 24));
+            }
+        }
+
+        _result.flip();
+        return _result;
+    }
+
+    /**
+     * Get the exponent of a float as returned by C frexp() where the mantissa is in [0.5, 1).
+     */
+    private static int frexpExponent(float _f) {
+        if(_f == 0f || !Float.isFinite(_f)) {
+            return 0;
+        }
+        return Math.getExponent((double)_f) + 1;
+    }
+
+    private static int quantizeSnorm(float _v, int _bits) {
+        float _scale = (float)((1 << (_bits - 1)) - 1);
+        float _round = (_v >= 0f) ? 0.5f : -0.5f;
+        _v = (_v >= -1f) ? _v : -1f;
+        _v = (_v <= 1f) ? _v : 1f;
+        return (int)(_v * _scale + _round);
+    }
+
+    private static ByteBuffer newFilterBuffer(int _length) {
+        return ByteBuffer.allocate(_length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,118 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Arena that encodes BufferViews concurrently. Space for each BufferView is reserved in the
+ * segments as the meshes are built so the offsets are the same as with a serial arena. The
+ * encoders run on a ForkJoinPool when the segments are needed for writing and each one writes
+ * to its own slice, so the output is identical to serial encoding. The buffers that were
+ * added must not be changed until the segments are requested.
+ * @author Chad Juliano
+ */
+public class ParallelArena extends BufferArena {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelArena.class);
+
+    /**
+     * Encoder waiting for its slice to be written.
+     */
+    private static class Pending {
+        final ByteBuffer _slice;
+        final Consumer<ByteBuffer> _encoder;
+
+        Pending(ByteBuffer slice, Consumer<ByteBuffer> encoder) {
+            this._slice = slice;
+            this._encoder = encoder;
+        }
+    }
+
+    /** Encoders that have not run yet. */
+    private final List<Pending> _pending = new ArrayList<>();
+
+    private final ForkJoinPool _pool;
+
+    /**
+     * Create an arena with 1 MB heap segments that encodes on the common pool.
+     */
+    public ParallelArena() {
+        this(DEFAULT_SEGMENT_SIZE, false, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param segmentSize Minimum size of each segment.
+     * @param isDirect Allocate segments with ByteBuffer.allocateDirect()
+     * @param pool Pool used to run the encoders.
+     */
+    public ParallelArena(int segmentSize, boolean isDirect, ForkJoinPool pool) {
+        super(segmentSize, isDirect);
+        this._pool = pool;
+    }
+
+    @Override
+    public long reserve(int length, Consumer<ByteBuffer> encoder) {
+        long offset = size();
+        ByteBuffer slice = allocate(length);
+        this._pending.add(new Pending(slice, encoder));
+        return offset;
+    }
+
+    @Override
+    protected BufferArena newArena() {
+        return new ParallelArena(getSegmentSize(), isDirect(), this._pool);
+    }
+
+    /**
+     * Run the pending encoders and wait for them to complete.
+     */
+    public void encode() {
+        if(this._pending.isEmpty()) {
+            return;
+        }
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(this._pending.size());
+        for(Pending pending : this._pending) {
+            tasks.add(this._pool.submit(() -> pending._encoder.accept(pending._slice)));
+        }
+
+        for(ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+
+        LOG.debug("Encoded in parallel: bufferViews=<{}> parallelism=<{}>",
+                tasks.size(), this._pool.getParallelism());
+        this._pending.clear();
+    }
+
+    @Override
+    public void release() {
+        this._pending.clear();
+        super.release();
+    }
+
+    @Override
+    public void reset() {
+        this._pending.clear();
+        super.reset();
+    }
+
+    @Override
+    public List<ByteBuffer> getSegments() {
+        encode();
+        return super.getSegments();
+    }
+}
@@ -0,0 +1,85 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Growable array of unsigned shorts. The bounds are updated as values are added and are 
+ * compared as unsigned values because the data is written to unsigned accessors.
+ * @author Chad Juliano
+ */
+class ShortStore {
+    
+    private static final int INITIAL_CAPACITY = 64;
+    
+    private short[] _data = new short[INITIAL_CAPACITY];
+    private int _size = 0;
+    private int _min = 0xFFFF;
+    private int _max = 0;
+    
+    int size() { return this._size; }
+    
+    void clear() {
+        this._size = 0;
+        this._min = 0xFFFF;
+        this._max = 0;
+    }
+    
+    void add(short _value) {
+        if(this._size == this._data.length) {
+            this._data = Arrays.copyOf(this._data, this._data.length * 2);
+        }
+        this._data[this._size++] = _value;
+        
+        int _unsigned = Short.toUnsignedInt(_value);
+        if(_unsigned < this._min) {
+            this._min = _unsigned;
+        }
+        if(_unsigned > this._max) {
+            this._max = _unsigned;
+        }
+    }
+    
+    short get(int _idx) {
+        Objects.checkIndex(_idx, this._size);
+        return this._data[_idx];
+    }
+    
+    /**
+     * Get the smallest value as an unsigned integer.
+     */
+    int getMin() {
+        checkNotEmpty();
+        return this._min;
+    }
+    
+    /**
+     * Get the largest value as an unsigned integer.
+     */
+    int getMax() {
+        checkNotEmpty();
+        return this._max;
+    }
+    
+    /**
+     * Write all the values with the byte order of the buffer.
+     */
+    void write(ByteBuffer _buffer) {
+        _buffer.asShortBuffer().put(this._data, 0, this._size);
+        _buffer.position(_buffer.position() + this._size * Short.BYTES);
+    }
+    
+    private void checkNotEmpty() {
+        if(this._size == 0) {
+            throw new NoSuchElementException("Buffer is empty");
+        }
+    }
+}
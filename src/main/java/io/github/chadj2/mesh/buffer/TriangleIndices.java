@@ -6,11 +6,8 @@
 
 package io.github.chadj2.mesh.buffer;
 
-import java.nio.ByteBuffer;
-
 import de.javagl.jgltf.impl.v2.Accessor;
 import de.javagl.jgltf.impl.v2.BufferView;
-import de.javagl.jgltf.impl.v2.GlTF;
 import de.javagl.jgltf.impl.v2.MeshPrimitive;
 import de.javagl.jgltf.model.GltfConstants;
 import io.github.chadj2.mesh.MeshGltfWriter;
@@ -32,6 +29,11 @@ public class TriangleIndices extends BufferShort {
         throw new UnsupportedOperationException("not implimented");
     }
     
+    @Override
+    public void add(short _primitive) {
+        throw new UnsupportedOperationException("not implimented");
+    }
+    
     public void add(int _v1, int _v2, int _v3) throws Exception {
         
         if(_v1 >= MAX_INDEX || _v2 >= MAX_INDEX || _v3 >= MAX_INDEX) {
@@ -39,26 +41,29 @@ public class TriangleIndices extends BufferShort {
             throw new Exception(msg);
         } 
         
-        this._list.add((short)_v1);
-        this._list.add((short)_v2);
-        this._list.add((short)_v3);
+        super.add((short)_v1);
+        super.add((short)_v2);
+        super.add((short)_v3);
     }
 
     public Accessor build(MeshGltfWriter _geoWriter, MeshPrimitive _meshPirimitive) {
-        Accessor _accessor = super.buildBuffer(_geoWriter);
+        Accessor _accessor = super.buildBuffer(_geoWriter, _meshPirimitive, null);
         if(_accessor == null) {
             return null;
         }
         
-        int _accessorIdx = _geoWriter.getGltf().getAccessors().indexOf(_accessor);
+        int _accessorIdx = _geoWriter.getAccessorIndex(_accessor);
         _meshPirimitive.setIndices(_accessorIdx);
         return _accessor;
     }
 
     @Override
-    protected BufferView addBufferView(GlTF _gltf, ByteBuffer _buffer) {
-        BufferView _bufferView = super.addBufferView(_gltf, _buffer);
+    protected BufferView addBufferView(MeshGltfWriter _geoWriter, ArenaBase _arena) {
+        BufferView _bufferView = super.addBufferView(_geoWriter, _arena);
         _bufferView.setTarget(GltfConstants.GL_ELEMENT_ARRAY_BUFFER);
         return _bufferView;
     }
+    
+    @Override
+    protected MeshoptEncoder.Mode getMeshoptMode() { return MeshoptEncoder.Mode.TRIANGLES; }
 }
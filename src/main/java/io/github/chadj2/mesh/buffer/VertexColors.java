@@ -6,11 +6,9 @@
 package io.github.chadj2.mesh.buffer;
 
 import java.nio.ByteBuffer;
-import java.util.Collections;
 
 import de.javagl.jgltf.impl.v2.Accessor;
 import de.javagl.jgltf.impl.v2.BufferView;
-import de.javagl.jgltf.impl.v2.GlTF;
 import de.javagl.jgltf.impl.v2.MeshPrimitive;
 import de.javagl.jgltf.model.GltfConstants;
 import io.github.chadj2.mesh.Color;
@@ -22,6 +20,9 @@ import io.github.chadj2.mesh.MeshGltfWriter;
  */
 public class VertexColors extends BufferVecBase<Byte> {
     
+    /** RGBA components of each color. */
+    private final ByteStore _store = new ByteStore();
+    
     public VertexColors(String _name) {
         super(_name, Byte.BYTES * 4);
     }
@@ -30,51 +31,77 @@ public class VertexColors extends BufferVecBase<Byte> {
         return buildAttrib(_geoWriter, _meshPirimitive, "COLOR_0");
     }
     
+    /**
+     * Get the bits of the smallest unsigned value.
+     */
     @Override
     public Byte getMin() { 
-        return Collections.min(this._list);
+        return (byte)this._store.getMin();
     }
     
+    /**
+     * Get the bits of the largest unsigned value.
+     */
     @Override
     public Byte getMax() {
-        return Collections.max(this._list);
+        return (byte)this._store.getMax();
     }
     
+    /**
+     * Add a single component of a color.
+     */
+    @Override
+    public void add(Byte _primitive) { this._store.add(_primitive); }
+    
+    /**
+     * Get a single component of a color.
+     */
+    @Override
+    public Byte get(int idx) { return this._store.get(idx); }
+    
+    @Override
+    public int size() { return this._store.size() / 4; }
+    
     @Override
-    public int size() { return this._list.size() / 4; }
+    public void clear() { this._store.clear(); }
     
     public void add(Color color) {
-        Integer _r = color.getRed();
-        Integer _g = color.getGreen();
-        Integer _b = color.getBlue();
-        Integer _a = color.getAlpha();
-        
-        add(_r.byteValue());
-        add(_g.byteValue());
-        add(_b.byteValue());
-        add(_a.byteValue());
+        add((byte)color.getRed(), (byte)color.getGreen(), (byte)color.getBlue(), (byte)color.getAlpha());
+    }
+    
+    /**
+     * Add a color with unsigned components.
+     */
+    public void add(byte _red, byte _green, byte _blue, byte _alpha) {
+        this._store.add(_red);
+        this._store.add(_green);
+        this._store.add(_blue);
+        this._store.add(_alpha);
     }
     
     @Override
-    protected Accessor addAccessor(GlTF _gltf, BufferView _bufferView) {
-        Accessor _accessor = super.addAccessor(_gltf, _bufferView);
+    protected Accessor addAccessor(MeshGltfWriter _geoWriter, BufferView _bufferView) {
+        Accessor _accessor = super.addAccessor(_geoWriter, _bufferView);
         _accessor.setComponentType(GltfConstants.GL_UNSIGNED_BYTE);
         _accessor.setType("VEC4");
         _accessor.setNormalized(true);
         
         _accessor.setMax(new Number[] { 
-                getMax() });
+                this._store.getMax() });
         
         _accessor.setMin(new Number[] { 
-                getMin() });
+                this._store.getMin() });
         
         return _accessor;
     }
 
+    @Override
+    protected int getByteLength() {
+        return this._store.size() * Byte.BYTES;
+    }
+    
     @Override
     protected void writeBuf(ByteBuffer _buffer) {
-        for(byte _b : this._list) {
-            _buffer.put(_b);
-        }
+        this._store.write(_buffer);
     }
 }
\ No newline at end of file
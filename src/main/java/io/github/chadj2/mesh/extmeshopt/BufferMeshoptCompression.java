@@ -0,0 +1,74 @@
+/*
+ * glTF EXT_meshopt_compression JSON model
+ * 
+ * Do not modify this class. It is automatically generated
+ * with JsonModelGen (https://github.com/javagl/JsonModelGen)
+ * Copyright (c) 2016-2021 Marco Hutter - http://www.javagl.de
+ */
+
+package io.github.chadj2.mesh.extmeshopt;
+
+import de.javagl.jgltf.impl.v2.GlTFProperty;
+
+
+/**
+ * Compressed data for buffer. 
+ * 
+ * Auto-generated for buffer.EXT_meshopt_compression.schema.json 
+ * 
+ */
+public class BufferMeshoptCompression
+    extends GlTFProperty
+{
+
+    /**
+     * Set to true to indicate that the buffer is only referenced by 
+     * bufferViews that have EXT_meshopt_compression extension and as such 
+     * doesn't need to be loaded. (optional)<br> 
+     * Default: false 
+     * 
+     */
+    private Boolean fallback;
+
+    /**
+     * Set to true to indicate that the buffer is only referenced by 
+     * bufferViews that have EXT_meshopt_compression extension and as such 
+     * doesn't need to be loaded. (optional)<br> 
+     * Default: false 
+     * 
+     * @param fallback The fallback to set
+     * 
+     */
+    public void setFallback(Boolean fallback) {
+        if (fallback == null) {
+            this.fallback = fallback;
+            return ;
+        }
+        this.fallback = fallback;
+    }
+
+    /**
+     * Set to true to indicate that the buffer is only referenced by 
+     * bufferViews that have EXT_meshopt_compression extension and as such 
+     * doesn't need to be loaded. (optional)<br> 
+     * Default: false 
+     * 
+     * @return The fallback
+     * 
+     */
+    public Boolean getFallback() {
+        return this.fallback;
+    }
+
+    /**
+     * Returns the default value of the fallback<br> 
+     * @see #getFallback 
+     * 
+     * @return The default fallback
+     * 
+     */
+    public Boolean defaultFallback() {
+        return false;
+    }
+
+}
@@ -0,0 +1,318 @@
+/*
+ * glTF EXT_meshopt_compression JSON model
+ * 
+ * Do not modify this class. It is automatically generated
+ * with JsonModelGen (https://github.com/javagl/JsonModelGen)
+ * Copyright (c) 2016-2021 Marco Hutter - http://www.javagl.de
+ */
+
+package io.github.chadj2.mesh.extmeshopt;
+
+import de.javagl.jgltf.impl.v2.GlTFProperty;
+
+
+/**
+ * Compressed data for bufferView. 
+ * 
+ * Auto-generated for bufferView.EXT_meshopt_compression.schema.json 
+ * 
+ */
+public class BufferViewMeshoptCompression
+    extends GlTFProperty
+{
+
+    /**
+     * The index of the buffer with compressed data. (required)<br> 
+     * Minimum: 0 (inclusive) 
+     * 
+     */
+    private Integer buffer;
+    /**
+     * The offset into the buffer in bytes. (optional)<br> 
+     * Minimum: 0 (inclusive)<br> 
+     * Default: 0 
+     * 
+     */
+    private Integer byteOffset;
+    /**
+     * The length of the compressed data in bytes. (required)<br> 
+     * Minimum: 1 (inclusive) 
+     * 
+     */
+    private Integer byteLength;
+    /**
+     * The stride, in bytes. (required)<br> 
+     * Minimum: 1 (inclusive)<br> 
+     * Maximum: 256 (inclusive) 
+     * 
+     */
+    private Integer byteStride;
+    /**
+     * The number of elements. (required)<br> 
+     * Minimum: 1 (inclusive) 
+     * 
+     */
+    private Integer count;
+    /**
+     * The compression mode. (required)<br> 
+     * Valid values: [ATTRIBUTES, TRIANGLES, INDICES] 
+     * 
+     */
+    private String mode;
+    /**
+     * The compression filter. (optional)<br> 
+     * Default: "NONE"<br> 
+     * Valid values: [NONE, OCTAHEDRAL, QUATERNION, EXPONENTIAL] 
+     * 
+     */
+    private String filter;
+
+    /**
+     * The index of the buffer with compressed data. (required)<br> 
+     * Minimum: 0 (inclusive) 
+     * 
+     * @param buffer The buffer to set
+     * @throws NullPointerException If the given value is <code>null</code>
+     * @throws IllegalArgumentException If the given value does not meet
+     * the given constraints
+     * 
+     */
+    public void setBuffer(Integer buffer) {
+        if (buffer == null) {
+            throw new NullPointerException((("Invalid value for buffer: "+ buffer)+", may not be null"));
+        }
+        if (buffer< 0) {
+            throw new IllegalArgumentException("buffer < 0");
+        }
+        this.buffer = buffer;
+    }
+
+    /**
+     * The index of the buffer with compressed data. (required)<br> 
+     * Minimum: 0 (inclusive) 
+     * 
+     * @return The buffer
+     * 
+     */
+    public Integer getBuffer() {
+        return this.buffer;
+    }
+
+    /**
+     * The offset into the buffer in bytes. (optional)<br> 
+     * Minimum: 0 (inclusive)<br> 
+     * Default: 0 
+     * 
+     * @param byteOffset The byteOffset to set
+     * @throws IllegalArgumentException If the given value does not meet
+     * the given constraints
+     * 
+     */
+    public void setByteOffset(Integer byteOffset) {
+        if (byteOffset == null) {
+            this.byteOffset = byteOffset;
+            return ;
+        }
+        if (byteOffset< 0) {
+            throw new IllegalArgumentException("byteOffset < 0");
+        }
+        this.byteOffset = byteOffset;
+    }
+
+    /**
+     * The offset into the buffer in bytes. (optional)<br> 
+     * Minimum: 0 (inclusive)<br> 
+     * Default: 0 
+     * 
+     * @return The byteOffset
+     * 
+     */
+    public Integer getByteOffset() {
+        return this.byteOffset;
+    }
+
+    /**
+     * Returns the default value of the byteOffset<br> 
+     * @see #getByteOffset 
+     * 
+     * @return The default byteOffset
+     * 
+     */
+    public Integer defaultByteOffset() {
+        return 0;
+    }
+
+    /**
+     * The length of the compressed data in bytes. (required)<br> 
+     * Minimum: 1 (inclusive) 
+     * 
+     * @param byteLength The byteLength to set
+     * @throws NullPointerException If the given value is <code>null</code>
+     * @throws IllegalArgumentException If the given value does not meet
+     * the given constraints
+     * 
+     */
+    public void setByteLength(Integer byteLength) {
+        if (byteLength == null) {
+            throw new NullPointerException((("Invalid value for byteLength: "+ byteLength)+", may not be null"));
+        }
+        if (byteLength< 1) {
+            throw new IllegalArgumentException("byteLength < 1");
+        }
+        this.byteLength = byteLength;
+    }
+
+    /**
+     * The length of the compressed data in bytes. (required)<br> 
+     * Minimum: 1 (inclusive) 
+     * 
+     * @return The byteLength
+     * 
+     */
+    public Integer getByteLength() {
+        return this.byteLength;
+    }
+
+    /**
+     * The stride, in bytes. (required)<br> 
+     * Minimum: 1 (inclusive)<br> 
+     * Maximum: 256 (inclusive) 
+     * 
+     * @param byteStride The byteStride to set
+     * @throws NullPointerException If the given value is <code>null</code>
+     * @throws IllegalArgumentException If the given value does not meet
+     * the given constraints
+     * 
+     */
+    public void setByteStride(Integer byteStride) {
+        if (byteStride == null) {
+            throw new NullPointerException((("Invalid value for byteStride: "+ byteStride)+", may not be null"));
+        }
+        if (byteStride< 1) {
+            throw new IllegalArgumentException("byteStride < 1");
+        }
+        if (byteStride> 256) {
+            throw new IllegalArgumentException("byteStride > 256");
+        }
+        this.byteStride = byteStride;
+    }
+
+    /**
+     * The stride, in bytes. (required)<br> 
+     * Minimum: 1 (inclusive)<br> 
+     * Maximum: 256 (inclusive) 
+     * 
+     * @return The byteStride
+     * 
+     */
+    public Integer getByteStride() {
+        return this.byteStride;
+    }
+
+    /**
+     * The number of elements. (required)<br> 
+     * Minimum: 1 (inclusive) 
+     * 
+     * @param count The count to set
+     * @throws NullPointerException If the given value is <code>null</code>
+     * @throws IllegalArgumentException If the given value does not meet
+     * the given constraints
+     * 
+     */
+    public void setCount(Integer count) {
+        if (count == null) {
+            throw new NullPointerException((("Invalid value for count: "+ count)+", may not be null"));
+        }
+        if (count< 1) {
+            throw new IllegalArgumentException("count < 1");
+        }
+        this.count = count;
+    }
+
+    /**
+     * The number of elements. (required)<br> 
+     * Minimum: 1 (inclusive) 
+     * 
+     * @return The count
+     * 
+     */
+    public Integer getCount() {
+        return this.count;
+    }
+
+    /**
+     * The compression mode. (required)<br> 
+     * Valid values: [ATTRIBUTES, TRIANGLES, INDICES] 
+     * 
+     * @param mode The mode to set
+     * @throws NullPointerException If the given value is <code>null</code>
+     * @throws IllegalArgumentException If the given value does not meet
+     * the given constraints
+     * 
+     */
+    public void setMode(String mode) {
+        if (mode == null) {
+            throw new NullPointerException((("Invalid value for mode: "+ mode)+", may not be null"));
+        }
+        if ((((!"ATTRIBUTES".equals(mode))&&(!"TRIANGLES".equals(mode)))&&(!"INDICES".equals(mode)))) {
+            throw new IllegalArgumentException((("Invalid value for mode: "+ mode)+", valid: [ATTRIBUTES, TRIANGLES, INDICES]"));
+        }
+        this.mode = mode;
+    }
+
+    /**
+     * The compression mode. (required)<br> 
+     * Valid values: [ATTRIBUTES, TRIANGLES, INDICES] 
+     * 
+     * @return The mode
+     * 
+     */
+    public String getMode() {
+        return this.mode;
+    }
+
+    /**
+     * The compression filter. (optional)<br> 
+     * Default: "NONE"<br> 
+     * Valid values: [NONE, OCTAHEDRAL, QUATERNION, EXPONENTIAL] 
+     * 
+     * @param filter The filter to set
+     * @throws IllegalArgumentException If the given value does not meet
+     * the given constraints
+     * 
+     */
+    public void setFilter(String filter) {
+        if (filter == null) {
+            this.filter = filter;
+            return ;
+        }
+        if (((((!"NONE".equals(filter))&&(!"OCTAHEDRAL".equals(filter)))&&(!"QUATERNION".equals(filter)))&&(!"EXPONENTIAL".equals(filter)))) {
+            throw new IllegalArgumentException((("Invalid value for filter: "+ filter)+", valid: [NONE, OCTAHEDRAL, QUATERNION, EXPONENTIAL]"));
+        }
+        this.filter = filter;
+    }
+
+    /**
+     * The compression filter. (optional)<br> 
+     * Default: "NONE"<br> 
+     * Valid values: [NONE, OCTAHEDRAL, QUATERNION, EXPONENTIAL] 
+     * 
+     * @return The filter
+     * 
+     */
+    public String getFilter() {
+        return this.filter;
+    }
+
+    /**
+     * Returns the default value of the filter<br> 
+     * @see #getFilter 
+     * 
+     * @return The default filter
+     * 
+     */
+    public String defaultFilter() {
+        return "NONE";
+    }
+
+}
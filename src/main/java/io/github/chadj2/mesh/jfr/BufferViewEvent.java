@@ -0,0 +1,43 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Emitted when BufferBase.addBufferView() reserves a BufferView in an arena.
+ * @author Chad Juliano
+ */
+@Name("io.github.chadj2.mesh.BufferView")
+@Label("BufferView")
+@Category({ "glTF Mesh", "Buffer" })
+@Description("Encoding of a buffer into a BufferView")
+public class BufferViewEvent extends Event {
+
+    @Label("BufferView Name")
+    public String viewName;
+
+    @Label("Elements")
+    public int count;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Stored Size")
+    @Description("Size in the arena after compression")
+    @DataAmount
+    public long storedBytes;
+
+    @Label("Buffer Index")
+    public int buffer;
+}
@@ -0,0 +1,40 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Emitted when TriangleBuilder.buildBuffers() serializes the vertices, normals, texture
+ * coordinates and indices of a triangle mesh.
+ * @author Chad Juliano
+ */
+@Name("io.github.chadj2.mesh.BuildBuffers")
+@Label("Triangle Buffers")
+@Category({ "glTF Mesh", "Builder" })
+@Description("Serialization of the buffers of a triangle mesh")
+public class BuildBuffersEvent extends Event {
+
+    @Label("Mesh Name")
+    public String meshName;
+
+    @Label("Vertices")
+    public int vertices;
+
+    @Label("Triangles")
+    public int triangles;
+
+    @Label("Texture Coordinates")
+    public boolean texCoords;
+
+    @Label("Draco Compressed")
+    public boolean draco;
+}
@@ -0,0 +1,36 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Emitted when IcosphereBuilder.addIcosphere() subdivides an icosahedron.
+ * @author Chad Juliano
+ */
+@Name("io.github.chadj2.mesh.Icosphere")
+@Label("Icosphere")
+@Category({ "glTF Mesh", "Builder" })
+@Description("Subdivision of an icosphere")
+public class IcosphereEvent extends Event {
+
+    @Label("Mesh Name")
+    public String meshName;
+
+    @Label("Level of Detail")
+    public int lod;
+
+    @Label("Vertices")
+    public int vertices;
+
+    @Label("Triangles")
+    public int triangles;
+}
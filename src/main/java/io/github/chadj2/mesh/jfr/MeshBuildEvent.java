@@ -0,0 +1,39 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Emitted when TopologyBuilder.buildMesh() adds a mesh to the writer.
+ * @author Chad Juliano
+ */
+@Name("io.github.chadj2.mesh.MeshBuild")
+@Label("Mesh Build")
+@Category({ "glTF Mesh", "Builder" })
+@Description("Build of a mesh and its buffers")
+public class MeshBuildEvent extends Event {
+
+    @Label("Mesh Name")
+    public String meshName;
+
+    @Label("Topology Mode")
+    public String mode;
+
+    @Label("Vertices")
+    public int vertices;
+
+    @Label("Indices")
+    public int indices;
+
+    @Label("Accessors")
+    public int accessors;
+}
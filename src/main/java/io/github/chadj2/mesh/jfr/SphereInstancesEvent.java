@@ -0,0 +1,33 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Emitted when SphereFactoryInst.build() writes the instancing buffers.
+ * @author Chad Juliano
+ */
+@Name("io.github.chadj2.mesh.SphereInstances")
+@Label("Sphere Instances")
+@Category({ "glTF Mesh", "Builder" })
+@Description("Build of the EXT_mesh_gpu_instancing nodes of a sphere factory")
+public class SphereInstancesEvent extends Event {
+
+    @Label("Factory Name")
+    public String factoryName;
+
+    @Label("Nodes")
+    public int nodes;
+
+    @Label("Instances")
+    public int instances;
+}
@@ -0,0 +1,49 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Emitted when MeshGltfWriter.writeGltf() writes a glTF.
+ * @author Chad Juliano
+ */
+@Name("io.github.chadj2.mesh.WriteGltf")
+@Label("Write glTF")
+@Category({ "glTF Mesh", "Writer" })
+@Description("Serialization of the JSON, buffers and images of a glTF")
+public class WriteGltfEvent extends Event {
+
+    @Label("Format")
+    public String format;
+
+    @Label("Path")
+    @Description("Output file or null if written to a stream")
+    public String path;
+
+    @Label("Meshes")
+    public int meshes;
+
+    @Label("Accessors")
+    public int accessors;
+
+    @Label("BufferViews")
+    public int bufferViews;
+
+    @Label("Buffers")
+    public int buffers;
+
+    @Label("Buffer Size")
+    @Description("Size of the primitives in the arenas")
+    @DataAmount
+    public long bufferBytes;
+}
@@ -0,0 +1,6 @@
+/**
+ * Java Flight Recorder events for building meshes and writing glTF
+ * 
+ * @author Chad Juliano
+ */
+package io.github.chadj2.mesh.jfr;
@@ -14,6 +14,7 @@ import javax.vecmath.Vector3f;
 import io.github.chadj2.mesh.Color;
 import io.github.chadj2.mesh.MeshVertex;
 import io.github.chadj2.mesh.TriangleBuilder;
+import io.github.chadj2.mesh.jfr.IcosphereEvent;
 
 /**
  * Generate 3d Icosphere.
@@ -100,6 +101,11 @@ public class IcosphereBuilder extends TriangleBuilder {
      * @throws Exception 
      */
     public void addIcosphere(int lod) throws Exception {
+        IcosphereEvent event = new IcosphereEvent();
+        event.begin();
+        int startVertices = getVertexCount();
+        int startIndices = getIndexCount();
+        
         // get the 12 vertices of the Icosahedron
         MeshVertex[] vertices = getIcosahedronVertices();
         
@@ -140,6 +146,15 @@ public class IcosphereBuilder extends TriangleBuilder {
         }
         
         this._midpointMap.clear();
+        
+        event.end();
+        if(event.shouldCommit()) {
+            event.meshName = getName();
+            event.lod = lod;
+            event.vertices = getVertexCount() - startVertices;
+            event.triangles = (getIndexCount() - startIndices) / 3;
+            event.commit();
+        }
     }
 
     /**
@@ -247,7 +262,7 @@ public class IcosphereBuilder extends TriangleBuilder {
         }
         
         Vector3f p3 = new Vector3f();
-        p3.add(v1.getVertex(), v2.getVertex());
+        p3.add(v1.getPosition(new Point3f()), v2.getPosition(new Point3f()));
 
         // new vertex must be resized, so the length is equal to the radius
         p3.normalize();
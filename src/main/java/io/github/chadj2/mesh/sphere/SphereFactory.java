@@ -6,8 +6,8 @@
 
 package io.github.chadj2.mesh.sphere;
 
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import javax.vecmath.Point3f;
@@ -78,7 +78,7 @@ public class SphereFactory extends SphereFactoryBase {
         node.setName(String.format("%s[%d]-node", getName(), nodeIdx));
 
         if(LOG.isDebugEnabled()) {
-            String colorStr = String.format("r=%d,g=%d,b=%d,a=%d", 
+            String colorStr = String.format("r=%.2f,g=%.2f,b=%.2f,a=%.2f", 
                     this.getColor().r,
                     this.getColor().g,
                     this.getColor().b,
@@ -92,9 +92,7 @@ public class SphereFactory extends SphereFactoryBase {
         node.setTranslation(translation);
         
         // add the eventId to the extras
-        final Map<String, Object> extras = new HashMap<>();
-        extras.put("eventId", eventId);
-        node.setExtras(extras);
+        node.setExtras(Collections.singletonMap("eventId", eventId));
         
         return node;
     }
@@ -147,12 +145,10 @@ public class SphereFactory extends SphereFactoryBase {
      * @return
      */
     private int copyMesh(int origMeshIdx, Color color) {
-        List<Mesh> meshList = this._writer.getGltf().getMeshes();
-        Mesh origMesh = meshList.get(origMeshIdx);
+        Mesh origMesh = this._writer.getMesh(origMeshIdx);
         
         Mesh newMesh = new Mesh();
-        meshList.add(newMesh);
-        int newMeshIdx = meshList.indexOf(newMesh);
+        int newMeshIdx = this._writer.addMesh(newMesh);
 
         LOG.debug("Copy Mesh: <{}> {} -> {}", origMesh.getName(), origMeshIdx, newMeshIdx);
         String name = String.format("%s[%d]", origMesh.getName(), newMeshIdx);
@@ -169,7 +165,7 @@ public class SphereFactory extends SphereFactoryBase {
         
         // create the new material
         Material material = newMaterial(color);
-        int materialIdx = this._writer.getGltf().getMaterials().indexOf(material);
+        int materialIdx = this._writer.getMaterialIndex(material);
         newMeshPr.setMaterial(materialIdx);
         
         return newMeshIdx;
@@ -184,11 +180,7 @@ public class SphereFactory extends SphereFactoryBase {
      */
     private int createMesh(Color color, int lod) throws Exception {
         // Get the next mesh ID.
-        int meshIdx = 0;
-        List<Mesh> meshList = this._writer.getGltf().getMeshes();
-        if(meshList != null) {
-            meshIdx = meshList.size();
-        }
+        int meshIdx = this._writer.getMeshCount();
 
         this._builder.addIcosphere(lod);
         
@@ -25,6 +25,7 @@ import io.github.chadj2.mesh.buffer.BufferVecFloat4;
 import io.github.chadj2.mesh.extinst.FeatureId;
 import io.github.chadj2.mesh.extinst.GlTFMeshGpuInstancing;
 import io.github.chadj2.mesh.extinst.NodeInstanceFeatures;
+import io.github.chadj2.mesh.jfr.SphereInstancesEvent;
 
 /**
  * Create a set of spheres using the EXT_mesh_gpu_instancing extension. This is necessary
@@ -69,6 +70,7 @@ public class SphereFactoryInst extends SphereFactory {
             GlTFMeshGpuInstancing meshInstancing = new GlTFMeshGpuInstancing();
             this._node.addExtensions(EXT_INSTANCING, meshInstancing);
             
+            writer.beginMesh();
             this._scale.buildAttrib(writer, meshInstancing, "SCALE");
             this._rotation.buildAttrib(writer, meshInstancing, "ROTATION");
             this._trans.buildAttrib(writer, meshInstancing, "TRANSLATION");
@@ -121,6 +123,9 @@ public class SphereFactoryInst extends SphereFactory {
     
     @Override
     public void build() {
+        SphereInstancesEvent event = new SphereInstancesEvent();
+        event.begin();
+        
         GlTF gltf = this._writer.getGltf();
         gltf.addExtensionsUsed(EXT_INSTANCING);
         gltf.addExtensionsRequired(EXT_INSTANCING);
@@ -135,5 +140,14 @@ public class SphereFactoryInst extends SphereFactory {
             iNode.build(this._writer);
             iNode.buildFeatures(this._metadata.getTableIdx());
         }
+        
+        event.end();
+        if(event.shouldCommit()) {
+            event.factoryName = getName();
+            event.nodes = this._meshToNodeIndex.size();
+            event.instances = this._meshToNodeIndex.values().stream()
+                    .mapToInt(InstancingNode::size).sum();
+            event.commit();
+        }
     }
 }
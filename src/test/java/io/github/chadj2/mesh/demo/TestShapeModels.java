@@ -301,11 +301,11 @@ public class TestShapeModels {
         }
         
         // add elevations at the edges and center.
-        _meshGrid[0][1].getVertex().y = 0.25f;
-        _meshGrid[1][0].getVertex().y = 0.25f;
-        _meshGrid[1][2].getVertex().y = 0.25f;
-        _meshGrid[2][1].getVertex().y = 0.25f;
-        _meshGrid[1][1].getVertex().y = 1f;
+        setElevation(_meshGrid[0][1], 0.25f);
+        setElevation(_meshGrid[1][0], 0.25f);
+        setElevation(_meshGrid[1][2], 0.25f);
+        setElevation(_meshGrid[2][1], 0.25f);
+        setElevation(_meshGrid[1][1], 1f);
         
         // render the vertices in the grid
         _meshBuilder.addPlane(_meshGrid, true);
@@ -318,6 +318,12 @@ public class TestShapeModels {
         LOG.info("Finished generating: {}", _outFile);
     }
     
+    private static void setElevation(MeshVertex _vertex, float _yPos) {
+        Point3f _point = _vertex.getPosition(new Point3f());
+        _point.y = _yPos;
+        _vertex.setVertex(_point);
+    }
+    
     @Test
     public void testBlend() throws Exception {
         // Set rendering for both sides of the plane
@@ -0,0 +1,61 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.github.chadj2.mesh.buffer.BufferArena;
+
+public class TestBufferArena {
+
+    /**
+     * Allocations should be aligned and grow into new segments.
+     */
+    @Test
+    public void testSegments() {
+        BufferArena arena = new BufferArena(16, false);
+
+        ByteBuffer buf1 = arena.allocate(6);
+        buf1.putShort((short)1).putShort((short)2).putShort((short)3);
+        assertEquals(8, arena.size());
+
+        // does not fit in the first segment
+        ByteBuffer buf2 = arena.allocate(12);
+        buf2.putInt(4).putInt(5).putInt(6);
+        assertEquals(20, arena.size());
+
+        // larger than a segment
+        ByteBuffer buf3 = arena.allocate(40);
+        for(int idx = 0; idx < 10; idx++) {
+            buf3.putFloat(idx);
+        }
+        assertEquals(60, arena.size());
+
+        List<ByteBuffer> segments = arena.getSegments();
+        assertEquals(3, segments.size());
+        assertEquals(8, segments.get(0).remaining());
+        assertEquals(12, segments.get(1).remaining());
+        assertEquals(40, segments.get(2).remaining());
+
+        ByteBuffer all = arena.toByteBuffer();
+        assertEquals(60, all.remaining());
+        assertEquals(3, all.getShort(4));
+        assertEquals(0, all.getShort(6));
+        assertEquals(4, all.getInt(8));
+        assertEquals(9f, all.getFloat(56), 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadSegmentSize() {
+        new BufferArena(10, false);
+    }
+}
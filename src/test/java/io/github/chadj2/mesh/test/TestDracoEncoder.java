@@ -0,0 +1,428 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.github.chadj2.mesh.buffer.DracoEncoder;
+import io.github.chadj2.mesh.buffer.DracoEncoder.AttributeType;
+import io.github.chadj2.mesh.buffer.DracoEncoder.DataType;
+
+/**
+ * Round trip the Draco encoder through a decoder written from the Draco bitstream
+ * specification.
+ */
+public class TestDracoEncoder {
+
+    @Test
+    public void testGrid() {
+        int size = 40;
+        int numPoints = size * size;
+        float[] positions = new float[numPoints * 3];
+        float[] normals = new float[numPoints * 3];
+        int[] colors = new int[numPoints * 4];
+        for(int y = 0; y < size; y++) {
+            for(int x = 0; x < size; x++) {
+                int v = y * size + x;
+                positions[v * 3] = x * 0.25f;
+                positions[v * 3 + 1] = y * 0.25f;
+                positions[v * 3 + 2] = (float)Math.sin(x * 0.3) * 2f;
+                normals[v * 3] = (float)-Math.cos(x * 0.3);
+                normals[v * 3 + 1] = 0f;
+                normals[v * 3 + 2] = 1f;
+                colors[v * 4] = x * 6;
+                colors[v * 4 + 1] = y * 6;
+                colors[v * 4 + 2] = 255;
+                colors[v * 4 + 3] = 128;
+            }
+        }
+
+        int[] indices = new int[(size - 1) * (size - 1) * 6];
+        int pos = 0;
+        for(int y = 0; y < size - 1; y++) {
+            for(int x = 0; x < size - 1; x++) {
+                int v = y * size + x;
+                indices[pos++] = v;
+                indices[pos++] = v + 1;
+                indices[pos++] = v + size;
+                indices[pos++] = v + size;
+                indices[pos++] = v + 1;
+                indices[pos++] = v + size + 1;
+            }
+        }
+
+        DracoEncoder encoder = new DracoEncoder();
+        assertEquals(0, encoder.addQuantizedAttribute(AttributeType.POSITION, positions, 3, 14));
+        assertEquals(1, encoder.addQuantizedAttribute(AttributeType.NORMAL, normals, 3, 10));
+        assertEquals(2, encoder.addIntegerAttribute(AttributeType.COLOR, DataType.UINT8, true, colors, 4));
+        byte[] encoded = encoder.encode(indices, numPoints);
+        assertArrayEquals(encoded, encoder.encode(indices, numPoints));
+
+        int rawSize = positions.length * 4 + normals.length * 4 + colors.length + indices.length * 2;
+        assertTrue(encoded.length * 4 < rawSize);
+
+        DracoMesh mesh = decode(encoded);
+        assertEquals(numPoints, mesh.numPoints);
+        assertArrayEquals(indices, mesh.indices);
+        assertEquals(3, mesh.attributes.size());
+
+        DracoAttribute position = mesh.attributes.get(0);
+        assertEquals(AttributeType.POSITION.ordinal(), position.type);
+        float tolerance = (positions[positions.length - 2] / ((1 << 14) - 1)) * 0.51f;
+        for(int idx = 0; idx < positions.length; idx++) {
+            assertEquals(positions[idx], position.floats[idx], tolerance);
+        }
+
+        DracoAttribute normal = mesh.attributes.get(1);
+        for(int idx = 0; idx < normals.length; idx++) {
+            assertEquals(normals[idx], normal.floats[idx], 2f / ((1 << 10) - 1));
+        }
+
+        DracoAttribute color = mesh.attributes.get(2);
+        assertEquals(2, color.dataType);
+        assertTrue(color.normalized);
+        assertArrayEquals(colors, color.ints);
+    }
+
+    @Test
+    public void testRandom() {
+        // scattered indices and values give a large sparse symbol table
+        Random random = new Random(5);
+        int numPoints = 60000;
+        int[] indices = new int[3000];
+        for(int idx = 0; idx < indices.length; idx++) {
+            indices[idx] = random.nextInt(numPoints);
+        }
+        int[] values = new int[numPoints * 2];
+        for(int idx = 0; idx < values.length; idx++) {
+            values[idx] = random.nextInt(65536) - 32768;
+        }
+
+        DracoEncoder encoder = new DracoEncoder();
+        encoder.addIntegerAttribute(AttributeType.GENERIC, DataType.INT16, false, values, 2);
+        DracoMesh mesh = decode(encoder.encode(indices, numPoints));
+
+        assertArrayEquals(indices, mesh.indices);
+        assertArrayEquals(values, mesh.attributes.get(0).ints);
+    }
+
+    @Test
+    public void testConstant() {
+        float[] positions = new float[3 * 3];
+        DracoEncoder encoder = new DracoEncoder();
+        encoder.addQuantizedAttribute(AttributeType.POSITION, positions, 3, 8);
+        DracoMesh mesh = decode(encoder.encode(new int[] { 0, 1, 2 }, 3));
+
+        assertArrayEquals(new int[] { 0, 1, 2 }, mesh.indices);
+        assertArrayEquals(positions, mesh.attributes.get(0).floats, 0f);
+    }
+
+    /**
+     * Separate encoders given the same input must give the same bytes.
+     */
+    @Test
+    public void testDeterministic() {
+        Random random = new Random(9);
+        int numPoints = 500;
+        float[] positions = new float[numPoints * 3];
+        for(int idx = 0; idx < positions.length; idx++) {
+            positions[idx] = random.nextFloat() * 100f - 50f;
+        }
+        int[] indices = new int[900];
+        for(int idx = 0; idx < indices.length; idx++) {
+            indices[idx] = random.nextInt(numPoints);
+        }
+
+        byte[][] encoded = new byte[2][];
+        for(int run = 0; run < encoded.length; run++) {
+            DracoEncoder encoder = new DracoEncoder();
+            encoder.addQuantizedAttribute(AttributeType.POSITION, positions.clone(), 3, 11);
+            encoded[run] = encoder.encode(indices.clone(), numPoints);
+        }
+        assertArrayEquals(encoded[0], encoded[1]);
+    }
+
+    /**
+     * Pin the bitstream of a single triangle. The bytes were worked out by hand from the
+     * Draco 2.2 specification so a change in the layout is caught even if the decoder in
+     * this test has the same misreading.
+     */
+    @Test
+    public void testGolden() {
+        DracoEncoder encoder = new DracoEncoder();
+        encoder.addQuantizedAttribute(AttributeType.POSITION,
+                new float[] { 0f, 0f, 0f, 1f, 0f, 0f, 0f, 1f, 0f }, 3, 8);
+        encoder.addIntegerAttribute(AttributeType.COLOR, DataType.UINT8, true,
+                new int[] { 255, 0, 0, 0, 255, 0, 0, 0, 255 }, 3);
+        byte[] encoded = encoder.encode(new int[] { 0, 1, 2 }, 3);
+
+        int[] expected = {
+                // "DRACO" v2.2, triangular mesh, sequential encoding, no flags
+                0x44, 0x52, 0x41, 0x43, 0x4f, 0x02, 0x02, 0x01, 0x00, 0x00, 0x00,
+                // 1 face, 3 points, compressed indices
+                0x01, 0x03, 0x00,
+                // index symbols 0,2,2: raw coding, 2 bits, probabilities 1365/0/2731 of 4096
+                0x01, 0x02, 0x03, 0x55, 0x15, 0x03, 0xad, 0x2a,
+                // rANS state 94212 in 3 bytes
+                0x03, 0x04, 0x70, 0x81,
+                // 1 decoder with 2 attributes: position float32 x3, color uint8 x3 normalized
+                0x01, 0x02, 0x00, 0x09, 0x03, 0x00, 0x00, 0x02, 0x02, 0x03, 0x01, 0x01,
+                // quantization and integer decoders
+                0x02, 0x01,
+                // position: difference prediction, wrap transform, compressed symbols
+                0x00, 0x01, 0x01, 0x01, 0x02, 0x03, 0xad, 0x2a, 0x39, 0x0e, 0x1d, 0x07,
+                0x04, 0xdf, 0xa3, 0xc0, 0x81,
+                // wrap range 0 to 255
+                0x00, 0x00, 0x00, 0x00, 0xff, 0x00, 0x00, 0x00,
+                // color: same prediction and wrap range
+                0x00, 0x01, 0x01, 0x01, 0x02, 0x03, 0x75, 0x1c, 0x55, 0x15, 0x39, 0x0e,
+                0x04, 0xf5, 0x4c, 0x99, 0x8e,
+                0x00, 0x00, 0x00, 0x00, 0xff, 0x00, 0x00, 0x00,
+                // position minimum (0,0,0), range 1.0 and 8 bits
+                0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+                0x00, 0x00, 0x80, 0x3f, 0x08
+        };
+        assertEquals(expected.length, encoded.length);
+        for(int idx = 0; idx < expected.length; idx++) {
+            assertEquals("byte " + idx, expected[idx], encoded[idx] & 0xff);
+        }
+
+        DracoMesh mesh = decode(encoded);
+        assertArrayEquals(new int[] { 0, 1, 2 }, mesh.indices);
+        assertArrayEquals(new int[] { 255, 0, 0, 0, 255, 0, 0, 0, 255 }, mesh.attributes.get(1).ints);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIndexRange() {
+        new DracoEncoder().encode(new int[] { 0, 1, 3 }, 3);
+    }
+
+    private static class DracoAttribute {
+        int type;
+        int dataType;
+        int components;
+        boolean normalized;
+        int decoderType;
+        int[] ints;
+        float[] floats;
+    }
+
+    private static class DracoMesh {
+        int numPoints;
+        int[] indices;
+        List<DracoAttribute> attributes = new ArrayList<>();
+    }
+
+    private static DracoMesh decode(byte[] data) {
+        ByteBuffer in = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] magic = new byte[5];
+        in.get(magic);
+        assertEquals("DRACO", new String(magic));
+        assertEquals(2, in.get());
+        assertEquals(2, in.get());
+        assertEquals("triangular mesh", 1, in.get());
+        assertEquals("sequential encoding", 0, in.get());
+        assertEquals(0, in.getShort());
+
+        DracoMesh mesh = new DracoMesh();
+        int numFaces = (int)readVarint(in);
+        mesh.numPoints = (int)readVarint(in);
+        assertEquals("compressed indices", 0, in.get());
+
+        int[] symbols = decodeSymbols(in, numFaces * 3);
+        mesh.indices = new int[numFaces * 3];
+        int last = 0;
+        for(int idx = 0; idx < symbols.length; idx++) {
+            int diff = symbols[idx] >>> 1;
+            if((symbols[idx] & 1) != 0) {
+                diff = -diff;
+            }
+            last += diff;
+            mesh.indices[idx] = last;
+        }
+
+        int numDecoders = in.get();
+        if(numDecoders == 0) {
+            return mesh;
+        }
+        assertEquals(1, numDecoders);
+
+        int numAttributes = (int)readVarint(in);
+        for(int idx = 0; idx < numAttributes; idx++) {
+            DracoAttribute attr = new DracoAttribute();
+            attr.type = in.get();
+            attr.dataType = in.get();
+            attr.components = in.get();
+            attr.normalized = in.get() != 0;
+            assertEquals(idx, readVarint(in));
+            mesh.attributes.add(attr);
+        }
+        for(DracoAttribute attr : mesh.attributes) {
+            attr.decoderType = in.get();
+        }
+
+        for(DracoAttribute attr : mesh.attributes) {
+            assertEquals("difference prediction", 0, in.get());
+            assertEquals("wrap transform", 1, in.get());
+            assertEquals("compressed", 1, in.get());
+
+            int numValues = mesh.numPoints * attr.components;
+            int[] corrections = decodeSymbols(in, numValues);
+            for(int idx = 0; idx < numValues; idx++) {
+                int val = corrections[idx];
+                corrections[idx] = (val & 1) == 0 ? (val >>> 1) : -(val >>> 1) - 1;
+            }
+
+            int min = in.getInt();
+            int max = in.getInt();
+            int maxDif = 1 + max - min;
+            attr.ints = new int[numValues];
+            for(int idx = 0; idx < numValues; idx++) {
+                int predicted = idx < attr.components ? 0 : attr.ints[idx - attr.components];
+                predicted = Math.max(min, Math.min(max, predicted));
+                int value = predicted + corrections[idx];
+                if(value > max) {
+                    value -= maxDif;
+                }
+                else if(value < min) {
+                    value += maxDif;
+                }
+                attr.ints[idx] = value;
+            }
+        }
+
+        for(DracoAttribute attr : mesh.attributes) {
+            if(attr.decoderType != 2) {
+                assertEquals("integer decoder", 1, attr.decoderType);
+                continue;
+            }
+
+            float[] minValues = new float[attr.components];
+            for(int comp = 0; comp < attr.components; comp++) {
+                minValues[comp] = in.getFloat();
+            }
+            float range = in.getFloat();
+            int bits = in.get();
+            float delta = range / ((1 << bits) - 1);
+
+            attr.floats = new float[attr.ints.length];
+            for(int idx = 0; idx < attr.ints.length; idx++) {
+                attr.floats[idx] = attr.ints[idx] * delta + minValues[idx % attr.components];
+            }
+        }
+
+        assertEquals(0, in.remaining());
+        return mesh;
+    }
+
+    private static int[] decodeSymbols(ByteBuffer in, int numValues) {
+        assertEquals("raw symbol coding", 1, in.get());
+        int bitLength = in.get();
+        int precisionBits = Math.max(12, Math.min(20, (3 * bitLength) / 2));
+        int precision = 1 << precisionBits;
+
+        int numSymbols = (int)readVarint(in);
+        int[] probs = new int[numSymbols];
+        for(int idx = 0; idx < numSymbols; idx++) {
+            int data = in.get() & 0xff;
+            int token = data & 3;
+            if(token == 3) {
+                // run of zero probabilities
+                idx += data >>> 2;
+                continue;
+            }
+            int prob = data >>> 2;
+            for(int b = 0; b < token; b++) {
+                prob |= (in.get() & 0xff) << (8 * (b + 1) - 2);
+            }
+            probs[idx] = prob;
+        }
+
+        int[] cumProbs = new int[numSymbols];
+        int[] lut = new int[precision];
+        int cum = 0;
+        for(int idx = 0; idx < numSymbols; idx++) {
+            cumProbs[idx] = cum;
+            for(int j = cum; j < cum + probs[idx]; j++) {
+                lut[j] = idx;
+            }
+            cum += probs[idx];
+        }
+        assertEquals(precision, cum);
+
+        int numBytes = (int)readVarint(in);
+        byte[] buf = new byte[numBytes];
+        in.get(buf);
+
+        int ransBase = 4 * precision;
+        int offset;
+        long state;
+        int last = buf[numBytes - 1] & 0xff;
+        switch(last >>> 6) {
+            case 0:
+                offset = numBytes - 1;
+                state = last & 0x3f;
+                break;
+            case 1:
+                offset = numBytes - 2;
+                state = readLE(buf, offset, 2) & 0x3fff;
+                break;
+            case 2:
+                offset = numBytes - 3;
+                state = readLE(buf, offset, 3) & 0x3fffff;
+                break;
+            default:
+                offset = numBytes - 4;
+                state = readLE(buf, offset, 4) & 0x3fffffff;
+                break;
+        }
+        state += ransBase;
+
+        int[] values = new int[numValues];
+        for(int idx = 0; idx < numValues; idx++) {
+            while(state < ransBase && offset > 0) {
+                state = state * 256 + (buf[--offset] & 0xff);
+            }
+            long quo = state / precision;
+            int rem = (int)(state % precision);
+            int symbol = lut[rem];
+            state = quo * probs[symbol] + rem - cumProbs[symbol];
+            values[idx] = symbol;
+        }
+        return values;
+    }
+
+    private static long readLE(byte[] buf, int offset, int size) {
+        long value = 0;
+        for(int b = 0; b < size; b++) {
+            value |= (long)(buf[offset + b] & 0xff) << (8 * b);
+        }
+        return value;
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.get() & 0xff;
+            value |= (long)(b & 127) << shift;
+            shift += 7;
+        } while((b & 128) != 0);
+        return value;
+    }
+}
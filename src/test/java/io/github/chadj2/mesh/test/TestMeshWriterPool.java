@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ *
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.vecmath.Point3f;
+
+import org.junit.Test;
+
+import io.github.chadj2.mesh.MeshGltfWriter;
+import io.github.chadj2.mesh.MeshVertex;
+import io.github.chadj2.mesh.MeshWriterPool;
+import io.github.chadj2.mesh.TriangleBuilder;
+import io.github.chadj2.mesh.buffer.BufferArena;
+import io.github.chadj2.mesh.test.TestGlbWriter.RecordingChannel;
+
+public class TestMeshWriterPool {
+
+    /**
+     * A released writer should be empty and returned by the next borrow.
+     */
+    @Test
+    public void testReuse() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        MeshWriterPool pool = new MeshWriterPool(2, () -> {
+            created.incrementAndGet();
+            return new MeshGltfWriter();
+        });
+
+        MeshGltfWriter writer = pool.borrow();
+        assertEquals(1, created.get());
+        addTriangle(writer, 1f);
+        assertTrue(pool.release(writer).isDone());
+        assertEquals(1, pool.getIdleCount());
+
+        assertSame(writer, pool.borrow());
+        assertEquals(1, created.get());
+        assertEquals(0, pool.getIdleCount());
+        assertNull(writer.getGltf().getNodes());
+        assertEquals(0, writer.getArena().size());
+    }
+
+    /**
+     * Writers returned to a full pool should be dropped.
+     */
+    @Test
+    public void testMaxIdle() throws Exception {
+        MeshWriterPool pool = new MeshWriterPool(2);
+        List<MeshGltfWriter> writers = Arrays.asList(pool.borrow(), pool.borrow(), pool.borrow());
+        assertNotSame(writers.get(0), writers.get(1));
+        assertNotSame(writers.get(1), writers.get(2));
+
+        for(MeshGltfWriter writer : writers) {
+            pool.release(writer).join();
+        }
+        assertEquals(2, pool.getIdleCount());
+
+        assertSame(writers.get(0), pool.borrow());
+        assertSame(writers.get(1), pool.borrow());
+        MeshGltfWriter created = pool.borrow();
+        assertNotSame(writers.get(2), created);
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    /**
+     * A writer released while its asynchronous write is running should not be reused until
+     * the write completes. A scene built in the meantime must not change the output.
+     */
+    @Test
+    public void testReleaseAsync() throws Exception {
+        MeshWriterPool pool = new MeshWriterPool(1, () -> new MeshGltfWriter(new BufferArena(16, false)));
+        MeshGltfWriter writer = pool.borrow();
+        addTriangle(writer, 1f);
+
+        CountDownLatch hold = new CountDownLatch(1);
+        RecordingChannel channel = new RecordingChannel(hold);
+        CompletableFuture<Void> write = writer.writeGltfAsync(channel);
+
+        CompletableFuture<Void> release = pool.release(writer);
+        assertFalse(release.isDone());
+        assertEquals(0, pool.getIdleCount());
+
+        MeshGltfWriter other = pool.borrow();
+        assertNotSame(writer, other);
+        addTriangle(other, 2f);
+        TestGlbWriter.writeGlb(other);
+
+        hold.countDown();
+        write.get(10, TimeUnit.SECONDS);
+        release.get(10, TimeUnit.SECONDS);
+        assertEquals(1, pool.getIdleCount());
+        assertSame(writer, pool.borrow());
+
+        MeshGltfWriter expected = new MeshGltfWriter(new BufferArena(16, false));
+        addTriangle(expected, 1f);
+        assertArrayEquals(TestGlbWriter.writeGlb(expected), channel.toByteArray());
+
+        // the arena was released by the write and is usable again after the reset
+        addTriangle(writer, 2f);
+        assertArrayEquals(TestGlbWriter.writeGlb(other), TestGlbWriter.writeGlb(writer));
+    }
+
+    /**
+     * reset() should wait for a running asynchronous write before the arena segments and
+     * the GlTF are discarded.
+     */
+    @Test
+    public void testResetWaitsForWrite() throws Exception {
+        MeshGltfWriter writer = new MeshGltfWriter(new BufferArena(16, false));
+        addTriangle(writer, 1f);
+
+        CountDownLatch hold = new CountDownLatch(1);
+        RecordingChannel channel = new RecordingChannel(hold);
+        CompletableFuture<Void> write = writer.writeGltfAsync(channel);
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            executor.schedule(hold::countDown, 100, TimeUnit.MILLISECONDS);
+            writer.reset();
+            assertTrue(write.isDone());
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        addTriangle(writer, 2f);
+        TestGlbWriter.writeGlb(writer);
+
+        MeshGltfWriter expected = new MeshGltfWriter(new BufferArena(16, false));
+        addTriangle(expected, 1f);
+        assertArrayEquals(TestGlbWriter.writeGlb(expected), channel.toByteArray());
+    }
+
+    private static void addTriangle(MeshGltfWriter writer, float size) throws Exception {
+        TriangleBuilder builder = new TriangleBuilder("triangle");
+        MeshVertex vtx0 = builder.newVertex(new Point3f(0f, 0f, 0f));
+        MeshVertex vtx1 = builder.newVertex(new Point3f(size, 0f, 0f));
+        MeshVertex vtx2 = builder.newVertex(new Point3f(0f, size, 0f));
+        builder.addTriangle(vtx0, vtx1, vtx2);
+        builder.build(writer);
+    }
+}
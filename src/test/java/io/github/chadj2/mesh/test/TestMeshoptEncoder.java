@@ -0,0 +1,487 @@
+/* 
+ * Copyright (c) 2022, Chad Juliano, Kinetica DB Inc.
+ * 
+ * SPDX-License-Identifier: MIT
+ */
+
+package io.github.chadj2.mesh.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.github.chadj2.mesh.buffer.MeshoptEncoder;
+
+/**
+ * Round trip the meshopt codecs through decoders written from the EXT_meshopt_compression
+ * bitstream specification. The golden tests compare the output with the fixtures of the 
+ * meshoptimizer test suite so they don't depend on the decoders in this file.
+ */
+public class TestMeshoptEncoder {
+
+    @Test
+    public void testVertexBuffer() {
+        Random random = new Random(7);
+        int count = 1000;
+        int stride = 12;
+        ByteBuffer vertices = ByteBuffer.allocate(count * stride).order(ByteOrder.LITTLE_ENDIAN);
+        for(int idx = 0; idx < count; idx++) {
+            vertices.putFloat(idx * 0.5f);
+            vertices.putFloat((float)Math.sin(idx * 0.01));
+            vertices.putFloat(random.nextInt(4));
+        }
+        vertices.flip();
+
+        byte[] encoded = MeshoptEncoder.encodeVertexBuffer(vertices, count, stride);
+        assertTrue(encoded.length < count * stride);
+        assertArrayEquals(vertices.array(), decodeVertexBuffer(encoded, count, stride));
+    }
+
+    @Test
+    public void testVertexBufferRandom() {
+        Random random = new Random(11);
+        int count = 300;
+        int stride = 16;
+        byte[] vertices = new byte[count * stride];
+        random.nextBytes(vertices);
+
+        byte[] encoded = MeshoptEncoder.encodeVertexBuffer(ByteBuffer.wrap(vertices), count, stride);
+        assertArrayEquals(vertices, decodeVertexBuffer(encoded, count, stride));
+    }
+
+    @Test
+    public void testIndexBuffer() {
+        // grid with strips, shared edges, a restart and some random triangles
+        int size = 20;
+        int[] indices = new int[(size - 1) * (size - 1) * 6 + 3 + 30];
+        int pos = 0;
+        for(int y = 0; y < size - 1; y++) {
+            for(int x = 0; x < size - 1; x++) {
+                int v = y * size + x;
+                indices[pos++] = v;
+                indices[pos++] = v + size;
+                indices[pos++] = v + 1;
+                indices[pos++] = v + 1;
+                indices[pos++] = v + size;
+                indices[pos++] = v + size + 1;
+            }
+        }
+        indices[pos++] = 0;
+        indices[pos++] = 1;
+        indices[pos++] = 2;
+        Random random = new Random(3);
+        while(pos < indices.length) {
+            indices[pos++] = random.nextInt(60000);
+        }
+
+        byte[] encoded = MeshoptEncoder.encodeIndexBuffer(indices);
+        assertTrue(encoded.length < indices.length * 2);
+        int[] decoded = decodeIndexBuffer(encoded, indices.length);
+
+        for(int tri = 0; tri < indices.length; tri += 3) {
+            assertArrayEquals(canonical(indices, tri), canonical(decoded, tri));
+        }
+    }
+
+    @Test
+    public void testIndexSequence() {
+        int[] indices = { 0, 1, 2, 3, 100, 101, 4, 5, 65000, 7, 7, 6 };
+        byte[] encoded = MeshoptEncoder.encodeIndexSequence(indices);
+        assertArrayEquals(indices, decodeIndexSequence(encoded, indices.length));
+    }
+
+    /**
+     * Vertex codec fixture from meshoptimizer (kVertexBuffer and kVertexDataV0).
+     */
+    @Test
+    public void testVertexBufferGolden() {
+        int[][] vertices = { 
+                { 0, 0, 0, 0, 0, 0, 0 }, 
+                { 300, 0, 0, 0, 0, 500, 0 }, 
+                { 0, 300, 0, 0, 0, 0, 500 }, 
+                { 300, 300, 0, 0, 0, 500, 500 } };
+        ByteBuffer data = ByteBuffer.allocate(4 * 12).order(ByteOrder.LITTLE_ENDIAN);
+        for(int[] v : vertices) {
+            data.putShort((short)v[0]).putShort((short)v[1]).putShort((short)v[2]);
+            data.put((byte)v[3]).put((byte)v[4]);
+            data.putShort((short)v[5]).putShort((short)v[6]);
+        }
+        data.flip();
+
+        byte[] expected = new byte[85];
+        byte[] head = toBytes(
+                0xa0, 0x01, 0x3f, 0x00, 0x00, 0x00, 0x58, 0x57, 0x58, 0x01, 0x26, 0x00, 0x00, 0x00, 0x01,
+                0x0c, 0x00, 0x00, 0x00, 0x58, 0x01, 0x08, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x01, 0x3f,
+                0x00, 0x00, 0x00, 0x17, 0x18, 0x17, 0x01, 0x26, 0x00, 0x00, 0x00, 0x01, 0x0c, 0x00, 0x00, 0x00,
+                0x17, 0x01, 0x08, 0x00, 0x00, 0x00);
+        // the rest is the padded first vertex which is all zeros
+        System.arraycopy(head, 0, expected, 0, head.length);
+
+        assertArrayEquals(expected, MeshoptEncoder.encodeVertexBuffer(data, 4, 12));
+    }
+
+    /**
+     * Triangle codec fixture from meshoptimizer (kIndexBufferTricky and kIndexDataV1). This 
+     * has a restart of 0, 1, 2 and indices encoded relative to the last index.
+     */
+    @Test
+    public void testIndexBufferGolden() {
+        int[] indices = { 0, 1, 2, 2, 1, 3, 0, 1, 2, 2, 1, 5, 2, 1, 4 };
+        byte[] expected = toBytes(
+                0xe1, 0xf0, 0x10, 0xfe, 0x1f, 0x3d, 0x00, 0x0a, 0x00, 0x76, 0x87, 0x56, 0x67, 0x78, 0xa9, 0x86,
+                0x65, 0x89, 0x68, 0x98, 0x01, 0x69, 0x00, 0x00);
+        assertArrayEquals(expected, MeshoptEncoder.encodeIndexBuffer(indices));
+    }
+
+    /**
+     * Index codec fixture from meshoptimizer (kIndexSequence and kIndexSequenceV1).
+     */
+    @Test
+    public void testIndexSequenceGolden() {
+        int[] indices = { 0, 1, 51, 2, 49, 1000 };
+        byte[] expected = toBytes(
+                0xd1, 0x00, 0x04, 0xcd, 0x01, 0x04, 0x07, 0x98, 0x1f, 0x00, 0x00, 0x00, 0x00);
+        assertArrayEquals(expected, MeshoptEncoder.encodeIndexSequence(indices));
+    }
+
+    /**
+     * Filter fixtures from meshoptimizer (encodeFilterOct8, encodeFilterOct12 and 
+     * encodeFilterExp).
+     */
+    @Test
+    public void testFilterGolden() {
+        float[] normals = { 
+                1, 0, 0, 0, 
+                0, -1, 0, 0, 
+                0.7071068f, 0, 0.707168f, 1, 
+                -0.7071068f, 0, -0.707168f, 1 };
+
+        ByteBuffer oct8 = MeshoptEncoder.encodeFilterOct(FloatBuffer.wrap(normals), 4, 4, 8);
+        byte[] expected8 = toBytes(
+                0x7f, 0, 0x7f, 0, 
+                0, 0x81, 0x7f, 0, 
+                0x3f, 0, 0x7f, 0x7f, 
+                0x81, 0x40, 0x7f, 0x7f);
+        assertArrayEquals(expected8, toArray(oct8));
+
+        ByteBuffer oct12 = MeshoptEncoder.encodeFilterOct(FloatBuffer.wrap(normals), 4, 8, 12);
+        short[] expected12 = { 
+                0x7ff, 0, 0x7ff, 0, 
+                0x0, (short)0xf801, 0x7ff, 0, 
+                0x3ff, 0, 0x7ff, 0x7fff, 
+                (short)0xf801, 0x400, 0x7ff, 0x7fff };
+        for(short value : expected12) {
+            assertEquals(value, oct12.getShort());
+        }
+
+        float[] values = { 1, -23.4f, -0.1f, 11.0f };
+        ByteBuffer exp = MeshoptEncoder.encodeFilterExp(FloatBuffer.wrap(values), 1, 16, 15);
+        int[] expectedExp = { 0xf7000200, 0xf7ffd133, 0xf7ffffcd, 0xf7001600 };
+        for(int value : expectedExp) {
+            assertEquals(value, exp.getInt());
+        }
+    }
+
+    @Test
+    public void testFilterExp() {
+        float[] values = { 1.5f, -0.001f, 1000.25f, 0f, 3.14159f, -2.5e-7f };
+        FloatBuffer data = FloatBuffer.wrap(values);
+        ByteBuffer filtered = MeshoptEncoder.encodeFilterExp(data, 2, 12, 24);
+
+        for(float expected : values) {
+            int encoded = filtered.getInt();
+            int mantissa = (encoded << 8) >> 8;
+            int exp = encoded >> 24;
+            float decoded = (float)Math.scalb((double)mantissa, exp);
+            assertEquals(expected, decoded, 1e-3f);
+        }
+    }
+
+    @Test
+    public void testFilterQuat() {
+        float[] quat = { 0.5f, -0.5f, 0.5f, -0.5f, 0f, 0.6f, 0f, 0.8f };
+        ByteBuffer filtered = MeshoptEncoder.encodeFilterQuat(FloatBuffer.wrap(quat), 2, 16);
+
+        for(int idx = 0; idx < 2; idx++) {
+            float[] decoded = decodeQuat(filtered);
+            float dot = 0;
+            for(int c = 0; c < 4; c++) {
+                dot += decoded[c] * quat[idx * 4 + c];
+            }
+            assertEquals(1f, Math.abs(dot), 1e-4f);
+        }
+    }
+
+    @Test
+    public void testFilterOct() {
+        float[] normals = { 0f, 0f, 1f, 1f, 0.6f, 0f, -0.8f, -1f };
+        ByteBuffer filtered = MeshoptEncoder.encodeFilterOct(FloatBuffer.wrap(normals), 2, 8, 16);
+
+        for(int idx = 0; idx < 2; idx++) {
+            float x = filtered.getShort();
+            float y = filtered.getShort();
+            float one = filtered.getShort();
+            float w = filtered.getShort() / 32767f;
+
+            float z = one - Math.abs(x) - Math.abs(y);
+            float t = Math.max(-z, 0);
+            x -= (x >= 0) ? t : -t;
+            y -= (y >= 0) ? t : -t;
+            float length = (float)Math.sqrt(x * x + y * y + z * z);
+
+            assertEquals(normals[idx * 4], x / length, 1e-3f);
+            assertEquals(normals[idx * 4 + 1], y / length, 1e-3f);
+            assertEquals(normals[idx * 4 + 2], z / length, 1e-3f);
+            assertEquals(normals[idx * 4 + 3], w, 1e-3f);
+        }
+    }
+
+    private static byte[] toBytes(int... values) {
+        byte[] result = new byte[values.length];
+        for(int idx = 0; idx < values.length; idx++) {
+            result[idx] = (byte)values[idx];
+        }
+        return result;
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] result = new byte[buffer.remaining()];
+        buffer.duplicate().get(result);
+        return result;
+    }
+
+    static float[] decodeQuat(ByteBuffer filtered) {
+        int[] data = { filtered.getShort(), filtered.getShort(), filtered.getShort(), filtered.getShort() };
+        float scale = (float)(1 / Math.sqrt(2)) / (data[3] | 3);
+        float x = data[0] * scale;
+        float y = data[1] * scale;
+        float z = data[2] * scale;
+        float w = (float)Math.sqrt(Math.max(0, 1 - x * x - y * y - z * z));
+
+        int qc = data[3] & 3;
+        float[] result = new float[4];
+        result[qc] = w;
+        result[(qc + 1) & 3] = x;
+        result[(qc + 2) & 3] = y;
+        result[(qc + 3) & 3] = z;
+        return result;
+    }
+
+    /**
+     * Rotate a triangle so the smallest index is first.
+     */
+    private static int[] canonical(int[] indices, int offset) {
+        int[] tri = { indices[offset], indices[offset + 1], indices[offset + 2] };
+        int rot = (tri[1] < tri[0] && tri[1] <= tri[2]) ? 1 : (tri[2] < tri[0] && tri[2] < tri[1]) ? 2 : 0;
+        return new int[] { tri[rot], tri[(rot + 1) % 3], tri[(rot + 2) % 3] };
+    }
+
+    static byte[] decodeVertexBuffer(byte[] data, int count, int stride) {
+        assertEquals(0xa0, data[0] & 0xff);
+        byte[] result = new byte[count * stride];
+        byte[] last = new byte[stride];
+        System.arraycopy(data, data.length - stride, last, 0, stride);
+
+        int blockSize = Math.min((8192 / stride) & ~15, 256);
+        int pos = 1;
+        byte[] deltas = new byte[256];
+
+        for(int start = 0; start < count; start += blockSize) {
+            int blockCount = Math.min(blockSize, count - start);
+            int groups = (blockCount + 15) / 16;
+
+            for(int k = 0; k < stride; k++) {
+                int header = pos;
+                pos += (groups + 3) / 4;
+
+                for(int group = 0; group < groups; group++) {
+                    int code = (data[header + group / 4] >> ((group % 4) * 2)) & 3;
+                    pos = decodeGroup(data, pos, code, deltas, group * 16);
+                }
+
+                int prev = last[k];
+                for(int idx = 0; idx < blockCount; idx++) {
+                    int v = deltas[idx] & 0xff;
+                    prev += (-(v & 1)) ^ (v >>> 1);
+                    result[(start + idx) * stride + k] = (byte)prev;
+                }
+            }
+
+            System.arraycopy(result, (start + blockCount - 1) * stride, last, 0, stride);
+        }
+
+        assertEquals(data.length - Math.max(32, stride), pos);
+        return result;
+    }
+
+    private static int decodeGroup(byte[] data, int pos, int code, byte[] out, int offset) {
+        if(code == 0) {
+            for(int idx = 0; idx < 16; idx++) {
+                out[offset + idx] = 0;
+            }
+            return pos;
+        }
+        if(code == 3) {
+            System.arraycopy(data, pos, out, offset, 16);
+            return pos + 16;
+        }
+
+        int bits = (code == 1) ? 2 : 4;
+        int sentinel = (1 << bits) - 1;
+        int extra = pos + 16 * bits / 8;
+        for(int idx = 0; idx < 16; idx++) {
+            int b = data[pos + idx * bits / 8] & 0xff;
+            int shift = 8 - bits - (idx * bits) % 8;
+            int value = (b >> shift) & sentinel;
+            out[offset + idx] = (byte)((value == sentinel) ? data[extra++] : value);
+        }
+        return extra;
+    }
+
+    private static int[] decodeIndexBuffer(byte[] data, int indexCount) {
+        assertEquals(0xe1, data[0] & 0xff);
+        int triCount = indexCount / 3;
+        int pos = 1 + triCount;
+        int table = data.length - 16;
+
+        int[][] edgeFifo = new int[16][2];
+        int[] vertexFifo = new int[16];
+        int edgeOffset = 0;
+        int vertexOffset = 0;
+        int next = 0;
+        int last = 0;
+        int[] result = new int[indexCount];
+        int[] cursor = { pos };
+
+        for(int tri = 0; tri < triCount; tri++) {
+            int codeTri = data[1 + tri] & 0xff;
+            int a, b, c;
+
+            if(codeTri < 0xf0) {
+                int fe = codeTri >> 4;
+                a = edgeFifo[(edgeOffset - 1 - fe) & 15][0];
+                b = edgeFifo[(edgeOffset - 1 - fe) & 15][1];
+
+                int fec = codeTri & 15;
+                if(fec < 13) {
+                    c = (fec == 0) ? next++ : vertexFifo[(vertexOffset - 1 - fec) & 15];
+                    if(fec == 0) {
+                        vertexFifo[vertexOffset] = c;
+                        vertexOffset = (vertexOffset + 1) & 15;
+                    }
+                }
+                else {
+                    c = (fec == 15) ? last + decodeDelta(data, cursor) : (fec == 13) ? last - 1 : last + 1;
+                    last = c;
+                    vertexFifo[vertexOffset] = c;
+                    vertexOffset = (vertexOffset + 1) & 15;
+                }
+
+                edgeFifo[edgeOffset] = new int[] { c, b };
+                edgeOffset = (edgeOffset + 1) & 15;
+                edgeFifo[edgeOffset] = new int[] { a, c };
+                edgeOffset = (edgeOffset + 1) & 15;
+            }
+            else {
+                int fea, feb, fec;
+                if(codeTri < 0xfe) {
+                    int codeAux = data[table + (codeTri & 15)] & 0xff;
+                    fea = 0;
+                    feb = codeAux >> 4;
+                    fec = codeAux & 15;
+                }
+                else {
+                    int codeAux = data[cursor[0]++] & 0xff;
+                    fea = (codeTri == 0xfe) ? 0 : 15;
+                    feb = codeAux >> 4;
+                    fec = codeAux & 15;
+                    if(codeAux == 0) {
+                        next = 0;
+                    }
+                }
+
+                a = (fea == 0) ? next++ : 0;
+                b = (feb == 0) ? next++ : vertexFifo[(vertexOffset - feb) & 15];
+                c = (fec == 0) ? next++ : vertexFifo[(vertexOffset - fec) & 15];
+
+                if(fea == 15) {
+                    last = a = last + decodeDelta(data, cursor);
+                }
+                if(feb == 15) {
+                    last = b = last + decodeDelta(data, cursor);
+                }
+                if(fec == 15) {
+                    last = c = last + decodeDelta(data, cursor);
+                }
+
+                vertexFifo[vertexOffset] = a;
+                vertexOffset = (vertexOffset + 1) & 15;
+                if(feb == 0 || feb == 15) {
+                    vertexFifo[vertexOffset] = b;
+                    vertexOffset = (vertexOffset + 1) & 15;
+                }
+                if(fec == 0 || fec == 15) {
+                    vertexFifo[vertexOffset] = c;
+                    vertexOffset = (vertexOffset + 1) & 15;
+                }
+
+                edgeFifo[edgeOffset] = new int[] { b, a };
+                edgeOffset = (edgeOffset + 1) & 15;
+                edgeFifo[edgeOffset] = new int[] { c, b };
+                edgeOffset = (edgeOffset + 1) & 15;
+                edgeFifo[edgeOffset] = new int[] { a, c };
+                edgeOffset = (edgeOffset + 1) & 15;
+            }
+
+            result[tri * 3] = a;
+            result[tri * 3 + 1] = b;
+            result[tri * 3 + 2] = c;
+        }
+
+        assertEquals(table, cursor[0]);
+        return result;
+    }
+
+    private static int[] decodeIndexSequence(byte[] data, int count) {
+        assertEquals(0xd1, data[0] & 0xff);
+        int[] last = new int[2];
+        int[] cursor = { 1 };
+        int[] result = new int[count];
+
+        for(int idx = 0; idx < count; idx++) {
+            int v = readVByte(data, cursor);
+            int current = v & 1;
+            v >>>= 1;
+            int d = (v >>> 1) ^ -(v & 1);
+            result[idx] = last[current] + d;
+            last[current] = result[idx];
+        }
+
+        assertEquals(data.length - 4, cursor[0]);
+        return result;
+    }
+
+    private static int decodeDelta(byte[] data, int[] cursor) {
+        int v = readVByte(data, cursor);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static int readVByte(byte[] data, int[] cursor) {
+        int result = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = data[cursor[0]++] & 0xff;
+            result |= (b & 127) << shift;
+            shift += 7;
+        } while((b & 128) != 0);
+        return result;
+    }
+}